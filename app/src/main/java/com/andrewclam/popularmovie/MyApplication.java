@@ -3,8 +3,14 @@ package com.andrewclam.popularmovie;
 import android.app.Application;
 import android.support.annotation.NonNull;
 
+import com.andrewclam.popularmovie.data.source.RepositoryLifecycle;
 import com.andrewclam.popularmovie.di.AppComponent;
 import com.andrewclam.popularmovie.di.DaggerAppComponent;
+import com.squareup.picasso.Picasso;
+
+import java.util.Set;
+
+import javax.inject.Inject;
 
 import dagger.android.AndroidInjector;
 import dagger.android.DaggerApplication;
@@ -16,11 +22,35 @@ import dagger.android.DaggerApplication;
  */
 public class MyApplication extends DaggerApplication {
 
+  @Inject
+  Set<RepositoryLifecycle> mRepositoryLifecycles;
+
+  @Inject
+  Picasso mPicasso;
+
   @NonNull
   @Override
   protected AndroidInjector<? extends DaggerApplication> applicationInjector() {
     AppComponent appComponent = DaggerAppComponent.builder().application(this).build();
     appComponent.inject(this);
+    // Picasso.get() returns the instance that shares the api's http client
+    Picasso.setSingletonInstance(mPicasso);
     return appComponent;
   }
+
+  /**
+   * Lets the repositories persist their in-memory state once the app UI is no longer visible,
+   * the process may be killed any time after this without further notice.
+   *
+   * @param level the context of the trim
+   */
+  @Override
+  public void onTrimMemory(int level) {
+    super.onTrimMemory(level);
+    if (level >= TRIM_MEMORY_UI_HIDDEN && mRepositoryLifecycles != null) {
+      for (RepositoryLifecycle repositoryLifecycle : mRepositoryLifecycles) {
+        repositoryLifecycle.onAppBackground();
+      }
+    }
+  }
 }
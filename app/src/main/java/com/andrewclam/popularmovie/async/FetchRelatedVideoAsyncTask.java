@@ -17,8 +17,6 @@ import com.andrewclam.popularmovie.data.model.MovieVideo;
 import com.andrewclam.popularmovie.util.NetworkUtil;
 import com.andrewclam.popularmovie.util.TMDBJsonParserUtil;
 
-import org.json.JSONException;
-
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -108,23 +106,14 @@ public class FetchRelatedVideoAsyncTask extends AsyncTask<Void, Void, ArrayList<
             // Check for null url
             if (url == null) return null;
 
-            // Get httpResponse using the url
-            String jsonResponse = NetworkUtil.getResponseFromHttpUrl(url);
-
-            // Check for null response
-            if (jsonResponse == null) return null;
-
-            // Got a JsonResponse from the web, parse the jsonResponse using the JsonUtils
-            entries = TMDBJsonParserUtil.getRelatedVideoFromJson(jsonResponse);
+            // Get httpResponse using the url, parsing it as it is read using the JsonUtils
+            entries = NetworkUtil.getResponseFromHttpUrl(url,
+                    TMDBJsonParserUtil::getRelatedVideoFromJson);
 
         } catch (IOException e) {
             Log.e(TAG, "FetchRelatedVideoAsyncTask - doInBackground - IO Error occurred while getting the jsonResponse from the url");
             e.printStackTrace();
             return null;
-        } catch (JSONException e) {
-            Log.e(TAG, "FetchRelatedVideoAsyncTask - doInBackground - JSONException occurred while parsing the jsonResponse into model class");
-            e.printStackTrace();
-            return null;
         }
 
         // return the entries
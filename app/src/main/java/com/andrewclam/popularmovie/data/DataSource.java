@@ -3,6 +3,7 @@ package com.andrewclam.popularmovie.data;
 import android.support.annotation.NonNull;
 
 import com.andrewclam.popularmovie.data.model.Entity;
+import com.andrewclam.popularmovie.data.model.Page;
 import com.google.common.base.Optional;
 
 import java.util.List;
@@ -29,6 +30,15 @@ public interface DataSource<E extends Entity> {
   @NonNull
   Flowable<List<E>> getItems();
 
+  /**
+   * interface to get a collection of items of the type from the model layer, emitting the
+   * items available right away first and then, only if they changed, the revalidated items
+   * (stale-while-revalidate)
+   * @return observable stream that returns one or two lists of items
+   */
+  @NonNull
+  Flowable<List<E>> getItemsAndRevalidate();
+
   /**
    * interface to get a collection of items of the type from the model layer
    * base on the supplied {@code options}
@@ -37,6 +47,16 @@ public interface DataSource<E extends Entity> {
   @NonNull
   Flowable<List<E>> getItems(@NonNull Map<String, String> options);
 
+  /**
+   * interface to get one page of a collection of items of the type from the model layer
+   * base on the supplied {@code options}, see {@link Pager} to page through all of them
+   * @param options query options, without the page number
+   * @param page number of the page, starting at {@link Page#FIRST_PAGE}
+   * @return observable stream that returns the page, or completes empty if it doesn't exist
+   */
+  @NonNull
+  Flowable<Page<E>> getPage(@NonNull Map<String, String> options, int page);
+
   /**
    * interface to get item data from the model layer
    * @param entityId unique id of the {@link Entity}
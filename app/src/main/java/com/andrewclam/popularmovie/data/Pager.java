@@ -0,0 +1,61 @@
+package com.andrewclam.popularmovie.data;
+
+import android.support.annotation.NonNull;
+
+import com.andrewclam.popularmovie.data.model.Entity;
+import com.andrewclam.popularmovie.data.model.Page;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+import io.reactivex.Flowable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Pages through a collection of items of a {@link DataSource}, one page at a time.
+ * <p>
+ * The stream is driven by downstream demand, a page is loaded only when the subscriber requests
+ * one more item, so a subscriber that calls {@code request(1)} whenever it needs more items never
+ * loads pages it doesn't show. Each page is loaded with
+ * {@link DataSource#getPage(Map, int)}, which lets the data source store and cache it on its own.
+ * The stream completes after the last page, or at the first empty page.
+ * <p>
+ * Pages are loaded synchronously on the thread that requests them, subscribe with
+ * {@code subscribeOn()} on a background scheduler, requests are then made on it as well.
+ */
+public final class Pager {
+
+  // Note: Utility class should never be instantiated
+  private Pager() {
+  }
+
+  /**
+   * Creates a stream of the pages of the collection
+   *
+   * @param dataSource the data source to load the pages from
+   * @param options    query options, without the page number
+   * @param <E>        type of {@link Entity} on the pages
+   * @return a stream that loads and emits one page per requested item, in order
+   */
+  @NonNull
+  public static <E extends Entity> Flowable<Page<E>> pages(@NonNull DataSource<E> dataSource,
+                                                           @NonNull Map<String, String> options) {
+    checkNotNull(dataSource);
+    final Map<String, String> query = ImmutableMap.copyOf(checkNotNull(options));
+
+    return Flowable.generate(() -> Page.FIRST_PAGE, (number, emitter) -> {
+      Page<E> page = dataSource.getPage(query, number).firstElement().blockingGet();
+      if (page == null || page.getItems().isEmpty()) {
+        emitter.onComplete();
+        return number;
+      }
+
+      emitter.onNext(page);
+      if (!page.hasNextPage()) {
+        emitter.onComplete();
+      }
+      return number + 1;
+    });
+  }
+}
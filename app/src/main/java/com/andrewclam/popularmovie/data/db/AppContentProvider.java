@@ -18,17 +18,26 @@
 package com.andrewclam.popularmovie.data.db;
 
 import android.content.ContentProvider;
-import android.content.ContentUris;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
-import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import com.google.common.base.Strings;
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 import static com.andrewclam.popularmovie.data.db.AppDbContract.CONTENT_AUTHORITY;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -46,6 +55,18 @@ public class AppContentProvider extends ContentProvider {
    * method to work with.
    */
   private AppDbHelper mAppDbHelper;
+
+  /*
+   * Uris changed by the batch applied on the current thread, null if no batch is being applied.
+   * Their change notifications are deferred until the batch is committed.
+   */
+  private final ThreadLocal<Set<Uri>> mBatchChangedUris = new ThreadLocal<>();
+
+  /*
+   * Upserts of the batch applied on the current thread, by table, null if no batch is being
+   * applied. The inserts of the batch share them, so each table's statements are compiled once.
+   */
+  private final ThreadLocal<Map<String, UpsertStatement>> mBatchUpserts = new ThreadLocal<>();
   
   /*
    * These constant will be used to match URIs with the data they are looking for. We will take
@@ -127,11 +148,13 @@ public class AppContentProvider extends ContentProvider {
   }
 
   /**
-   * Insert() implementation to handle single-row data insert into the client database
+   * Insert() implementation to handle single-row data insert into the client database. Like
+   * {@link #bulkInsert(Uri, ContentValues[])}, the row is upserted by its service id: a stored row
+   * is updated in place, and left alone if nothing changed, see {@link UpsertStatement}.
    *
    * @param uri           the content {@link Uri}
    * @param contentValues contentValues to be inserted into the data
-   * @return the newly inserted data row's Uri
+   * @return the Uri of the inserted or updated row, by its service id
    */
   @Nullable
   @Override
@@ -157,21 +180,40 @@ public class AppContentProvider extends ContentProvider {
     }
 
     /*
-     * Gets an instance of a writable database, then inserts a row into the matched database
-     * table (inTables), after insert then releases db resources.
+     * Gets the provider's database, then upserts the row into the matched database table
+     * (inTables), with the statements of the batch being applied on this thread if any
      */
-    final SQLiteDatabase db = checkNotNull(mAppDbHelper).getWritableDatabase();
-    final long id = db.insert(inTables, null, contentValues);
-    db.close();
-
-    // Notify the resolver if the uri has been changed, and return the newly inserted URI
-    if (id < 0) {
-      throw new SQLException("Failed to insert row into " + uri.toString());
+    final SQLiteDatabase db = getDatabase();
+    final boolean rowChanged;
+    final Map<String, UpsertStatement> batchUpserts = mBatchUpserts.get();
+    if (batchUpserts != null) {
+      UpsertStatement upsert = batchUpserts.get(inTables);
+      if (upsert == null) {
+        upsert = new UpsertStatement(db, inTables, AppDbContract.MovieEntry.COLUMN_MOVIE_TMDB_ID);
+        batchUpserts.put(inTables, upsert);
+      }
+      rowChanged = upsert.execute(contentValues);
     } else {
-      checkNotNull(getContext()).getContentResolver().notifyChange(uri, null);
-      return ContentUris.withAppendedId(uri, id);
+      final UpsertStatement upsert =
+          new UpsertStatement(db, inTables, AppDbContract.MovieEntry.COLUMN_MOVIE_TMDB_ID);
+      db.beginTransaction();
+      try {
+        rowChanged = upsert.execute(contentValues);
+        db.setTransactionSuccessful();
+      } finally {
+        upsert.close();
+        db.endTransaction();
+      }
     }
 
+    // Notify the resolver only if the row has been changed, and return the row's URI
+    if (rowChanged) {
+      notifyChange(uri);
+    }
+    return uri.buildUpon()
+        .appendPath(AppDbContract.PATH_UID)
+        .appendPath(contentValues.getAsString(AppDbContract.MovieEntry.COLUMN_MOVIE_TMDB_ID))
+        .build();
   }
 
   /**
@@ -186,7 +228,7 @@ public class AppContentProvider extends ContentProvider {
    * @param uri    The content:// URI of the insertion request.
    * @param values An array of sets of column_name/value pairs to add to the database.
    *               This must not be {@code null}.
-   * @return The number of values that were inserted.
+   * @return The number of values that were inserted or updated.
    */
   @Override
   public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
@@ -210,29 +252,34 @@ public class AppContentProvider extends ContentProvider {
     }
 
     /*
-     * Gets an instance of a writable database, then starts bulk insert as a single transaction
-     * into the matched database table (inTables), after transaction then releases db resources.
+     * Gets the provider's database, then starts bulk insert as a single transaction into the
+     * matched database table (inTables)
      */
-    final SQLiteDatabase db = checkNotNull(mAppDbHelper).getWritableDatabase();
-    final int rowInserted;
+    final SQLiteDatabase db = getDatabase();
+    final UpsertStatement upsert =
+        new UpsertStatement(db, inTables, AppDbContract.MovieEntry.COLUMN_MOVIE_TMDB_ID);
+    int rowsChanged = 0;
     db.beginTransaction();
     try {
+      // compiled once for the batch, updates the rows already stored in place and skips the ones
+      // that didn't change, instead of replacing every row on its unique tmdb id
       for (ContentValues value : values) {
-        long newID = db.insertOrThrow(inTables, null, value);
-        if (newID < 0) {
-          throw new SQLException("Failed to insert row into " + uri);
+        if (upsert.execute(value)) {
+          rowsChanged++;
         }
       }
       db.setTransactionSuccessful();
-      checkNotNull(getContext()).getContentResolver().notifyChange(uri, null);
-      rowInserted = values.length;
     } finally {
-      // release db resources
+      upsert.close();
       db.endTransaction();
-      db.close();
     }
 
-    return rowInserted;
+    // notify once for the whole batch, after the transaction is committed so observers that
+    // re-query right away see the new rows, and not at all if the batch changed nothing
+    if (rowsChanged > 0) {
+      notifyChange(uri);
+    }
+    return values.length;
   }
 
   /**
@@ -287,8 +334,8 @@ public class AppContentProvider extends ContentProvider {
         throw new UnsupportedOperationException("Unsupported Uri for query()");
     }
 
-    // Get the readable database using the dbHelper
-    final SQLiteDatabase db = mAppDbHelper.getReadableDatabase();
+    // Get the provider's database, with write-ahead logging queries don't wait on writes
+    final SQLiteDatabase db = getDatabase();
 
     // Init a cursor for return
     final Cursor cursor;
@@ -299,7 +346,8 @@ public class AppContentProvider extends ContentProvider {
         selectionArgs,
         null,
         null,
-        sortOrder
+        sortOrder,
+        getLimit(uri)
     );
 
     return cursor;
@@ -341,27 +389,104 @@ public class AppContentProvider extends ContentProvider {
     }
 
     /*
-     * Gets an instance of a writable database, then starts update with the provided
-     * into the matched database table (inTables), then release database source with close()
+     * Gets the provider's database, then starts update with the provided into the matched
+     * database table (inTables)
      */
-    final SQLiteDatabase db = mAppDbHelper.getWritableDatabase();
+    final SQLiteDatabase db = getDatabase();
     final int rowsUpdated = db.update(inTables, contentValues, selection, selectionArgs);
-    db.close();
 
     // Check if there are rows updated, notify the content resolver of change if so.
     if (rowsUpdated > 0) {
-      checkNotNull(getContext()).getContentResolver().notifyChange(uri, null);
+      notifyChange(uri);
     }
     // Return the number of rows updated, positive number indicate rows updated
     return rowsUpdated;
   }
 
   /**
-   * delete() is not supported in this app
+   * Delete() implementation to remove a movie row by its service id, or all the movie rows
+   *
+   * @param uri           the {@link Uri} of the movie row, or of all the movies
+   * @param selection     ignored, the rows are selected by the uri
+   * @param selectionArgs ignored, the rows are selected by the uri
+   * @return the number of rows deleted
    */
   @Override
   public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
-    throw new UnsupportedOperationException("Unsupported Uri for delete()");
+    // Gets match id that would determine which table and which row(s) to delete
+    final int match = sUriMatcher.match(uri);
+
+    // Stores the matched database table
+    final String inTables;
+
+    switch (match) {
+      case CODE_MOVIE:
+        inTables = AppDbContract.MovieEntry.TABLE_NAME;
+        // "1" as the where clause makes delete() count the deleted rows
+        selection = "1";
+        selectionArgs = null;
+        break;
+
+      case CODE_MOVIE_WITH_ID:
+        inTables = AppDbContract.MovieEntry.TABLE_NAME;
+        selection = AppDbContract.MovieEntry.COLUMN_MOVIE_TMDB_ID + "=?";
+        selectionArgs = new String[]{uri.getLastPathSegment()};
+        break;
+
+      default:
+        throw new UnsupportedOperationException("Unsupported Uri for delete()");
+    }
+
+    final SQLiteDatabase db = getDatabase();
+    final int rowsDeleted = db.delete(inTables, selection, selectionArgs);
+
+    // Check if there are rows deleted, notify the content resolver of change if so.
+    if (rowsDeleted > 0) {
+      notifyChange(uri);
+    }
+    return rowsDeleted;
+  }
+
+  /**
+   * Applies a batch of insert, update and delete operations as one transaction: either all of
+   * them are committed or, if one fails, none of them is. The inserts are upserted like in
+   * {@link #bulkInsert(Uri, ContentValues[])}, with statements compiled once per table for the
+   * whole batch. The change notifications of the operations are deferred until the transaction
+   * is committed, and sent once per changed {@link Uri}, instead of once per operation.
+   *
+   * @param operations the operations to apply
+   * @return the results of the operations, in the same order
+   * @throws OperationApplicationException if any of the operations failed, nothing was applied
+   */
+  @NonNull
+  @Override
+  public ContentProviderResult[] applyBatch(
+      @NonNull ArrayList<ContentProviderOperation> operations)
+      throws OperationApplicationException {
+    final SQLiteDatabase db = getDatabase();
+    final Set<Uri> changedUris = new LinkedHashSet<>();
+    final Map<String, UpsertStatement> upserts = new HashMap<>();
+    final ContentProviderResult[] results;
+    mBatchChangedUris.set(changedUris);
+    mBatchUpserts.set(upserts);
+    db.beginTransaction();
+    try {
+      results = super.applyBatch(operations);
+      db.setTransactionSuccessful();
+    } finally {
+      for (UpsertStatement upsert : upserts.values()) {
+        upsert.close();
+      }
+      db.endTransaction();
+      mBatchUpserts.remove();
+      mBatchChangedUris.remove();
+    }
+
+    // committed, observers that re-query right away see the whole batch
+    for (Uri uri : changedUris) {
+      notifyChange(uri);
+    }
+    return results;
   }
 
   @Nullable
@@ -370,6 +495,64 @@ public class AppContentProvider extends ContentProvider {
     return null;
   }
 
+  /**
+   * Gets the provider's database, opened on first use and then kept open for the lifetime of the
+   * process. The database is never closed after an operation: that would close it under a
+   * concurrent query still reading from it, and reopen it on the next write. The open helper
+   * returns the same instance for reads and writes.
+   *
+   * @return the open database
+   */
+  @NonNull
+  @VisibleForTesting
+  SQLiteDatabase getDatabase() {
+    return checkNotNull(mAppDbHelper).getWritableDatabase();
+  }
+
+  /**
+   * Gets the LIMIT clause of a query from the {@link AppDbContract#QUERY_PARAM_LIMIT} and
+   * {@link AppDbContract#QUERY_PARAM_OFFSET} parameters of its uri
+   *
+   * @param uri the query {@link Uri}
+   * @return the LIMIT clause, without the LIMIT keyword, or null to query all the rows
+   * @throws IllegalArgumentException if a parameter is not a non-negative number
+   */
+  @Nullable
+  private static String getLimit(@NonNull Uri uri) {
+    final String limit = uri.getQueryParameter(AppDbContract.QUERY_PARAM_LIMIT);
+    if (limit == null) {
+      return null;
+    }
+    final String offset = uri.getQueryParameter(AppDbContract.QUERY_PARAM_OFFSET);
+    // parsed, never concatenated as is into the sql
+    return offset == null
+        ? String.valueOf(parseNonNegative(limit))
+        : parseNonNegative(offset) + "," + parseNonNegative(limit);
+  }
+
+  private static int parseNonNegative(@NonNull String value) {
+    final Integer number = Ints.tryParse(value);
+    if (number == null || number < 0) {
+      throw new IllegalArgumentException("Invalid limit or offset: " + value);
+    }
+    return number;
+  }
+
+  /**
+   * Notifies the observers of the uri of a change, or defers the notification until the batch
+   * being applied on this thread is committed
+   *
+   * @param uri the changed {@link Uri}
+   */
+  private void notifyChange(@NonNull Uri uri) {
+    final Set<Uri> batchChangedUris = mBatchChangedUris.get();
+    if (batchChangedUris != null) {
+      batchChangedUris.add(uri);
+    } else {
+      checkNotNull(getContext()).getContentResolver().notifyChange(uri, null);
+    }
+  }
+
   /**
    * Helper method to check {@link #insert(Uri, ContentValues)} or
    * {@link #update(Uri, ContentValues, String, String[])}'s provided arg(s)
@@ -63,6 +63,16 @@ public final class AppDbContract {
   public static final String PATH_REVIEWS = "reviews";
   public static final String PATH_FAVORITES = "favorites";
 
+  /*
+   * Query parameters that limit a query to a window of its rows, for instance
+   *
+   *     content://com.andrewclam.popularmovie/movies?limit=20&offset=40
+   *
+   * queries the third page of 20 movies
+   */
+  public static final String QUERY_PARAM_LIMIT = "limit";
+  public static final String QUERY_PARAM_OFFSET = "offset";
+
   /**
    * Convenience method that provides a {@link Uri} that points to a specific
    * movie given its unique movie id
@@ -93,6 +103,11 @@ public final class AppDbContract {
     public static final String COLUMN_VOTE_COUNT = "vote_count";
     public static final String COLUMN_OVERVIEW = "overview";
     public static final String COLUMN_POPULARITY = "popularity";
+    public static final String COLUMN_ORIGINAL_TITLE = "original_title";
+    public static final String COLUMN_ORIGINAL_LANGUAGE = "original_language";
+    public static final String COLUMN_BACKDROP_PATH = "backdrop_path";
+    public static final String COLUMN_ADULT = "adult";
+    public static final String COLUMN_VIDEO = "video";
   }
 
   /**
@@ -169,5 +184,7 @@ public final class AppDbContract {
   static abstract class MaintainableColumn {
     // delete flag
     public static final String COLUMN_NAME_DELETE_FLAG = "delete_flag";
+    // time the row was fetched from the remote data source, in milliseconds since epoch
+    public static final String COLUMN_FETCHED_AT = "fetched_at";
   }
 }
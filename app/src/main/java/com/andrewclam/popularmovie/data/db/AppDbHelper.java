@@ -42,10 +42,33 @@ public class AppDbHelper extends SQLiteOpenHelper {
    * If you change the database schema, you must increment the database version or the onUpgrade
    * method will not be called.
    */
-  private static final int DATABASE_VERSION = 1;
+  private static final int DATABASE_VERSION = 4;
+
+  /*
+   * Size of SQLite's page cache for the connection, in KiB (a negative cache_size is in KiB),
+   * large enough to hold the hot pages of the movies table and its index
+   */
+  private static final int PAGE_CACHE_SIZE_KIB = 2048;
 
   AppDbHelper(Context context) {
     super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Write-ahead logging lets queries read the last committed state while a sync writes, instead
+    // of waiting on its lock, and commits append to the log instead of rewriting the database
+    setWriteAheadLoggingEnabled(true);
+  }
+
+  /**
+   * Called when the database connection is being configured, before it is created or upgraded.
+   *
+   * @param sqLiteDatabase The database.
+   */
+  @Override
+  public void onConfigure(SQLiteDatabase sqLiteDatabase) {
+    super.onConfigure(sqLiteDatabase);
+    sqLiteDatabase.execSQL("PRAGMA cache_size = -" + PAGE_CACHE_SIZE_KIB);
+    // with write-ahead logging, NORMAL only syncs at checkpoints, a crash can lose the last
+    // commits but never corrupts the database, which is only a cache of the service api anyway
+    sqLiteDatabase.execSQL("PRAGMA synchronous = NORMAL");
   }
 
 
@@ -75,10 +98,30 @@ public class AppDbHelper extends SQLiteOpenHelper {
           AppDbContract.MovieEntry.COLUMN_VOTE_COUNT + " INTEGER NOT NULL, " +
           AppDbContract.MovieEntry.COLUMN_OVERVIEW + " TEXT NOT NULL, " +
           AppDbContract.MovieEntry.COLUMN_POPULARITY + " REAL NOT NULL, " +
+          AppDbContract.MovieEntry.COLUMN_ORIGINAL_TITLE + " TEXT, " +
+          AppDbContract.MovieEntry.COLUMN_ORIGINAL_LANGUAGE + " TEXT, " +
+          AppDbContract.MovieEntry.COLUMN_BACKDROP_PATH + " TEXT, " +
+          AppDbContract.MovieEntry.COLUMN_ADULT + " INTEGER NOT NULL DEFAULT 0, " +
+          AppDbContract.MovieEntry.COLUMN_VIDEO + " INTEGER NOT NULL DEFAULT 0, " +
           AppDbContract.MovieEntry.COLUMN_NAME_DELETE_FLAG + " INTEGER NOT NULL, " +
+          AppDbContract.MovieEntry.COLUMN_FETCHED_AT + " INTEGER NOT NULL DEFAULT 0, " +
           " UNIQUE (" + MovieEntry.COLUMN_MOVIE_TMDB_ID + ") ON CONFLICT REPLACE)";
 
 
+  /**
+   * SQL Statements to create the indexes that serve the sort orders of the movies table, the
+   * movie id breaks ties so that paging through equal values stays stable. Lookups by
+   * {@link MovieEntry#COLUMN_MOVIE_TMDB_ID} are served by the index of its UNIQUE constraint.
+   */
+  private final static String SQL_CREATE_MOVIES_POPULARITY_INDEX =
+      "CREATE INDEX movies_popularity_index ON " + MovieEntry.TABLE_NAME + " (" +
+          MovieEntry.COLUMN_POPULARITY + ", " + MovieEntry.COLUMN_MOVIE_TMDB_ID + ")";
+
+  private final static String SQL_CREATE_MOVIES_VOTE_AVERAGE_INDEX =
+      "CREATE INDEX movies_vote_average_index ON " + MovieEntry.TABLE_NAME + " (" +
+          MovieEntry.COLUMN_VOTE_AVERAGE + ", " + MovieEntry.COLUMN_MOVIE_TMDB_ID + ")";
+
+
   /**
    * TODO SQL Statement to create a table for {@link MovieFavoriteEntry} rows
    */
@@ -94,6 +137,8 @@ public class AppDbHelper extends SQLiteOpenHelper {
   @Override
   public void onCreate(SQLiteDatabase sqLiteDatabase) {
     sqLiteDatabase.execSQL(SQL_CREATE_MOVIES_TABLE);
+    sqLiteDatabase.execSQL(SQL_CREATE_MOVIES_POPULARITY_INDEX);
+    sqLiteDatabase.execSQL(SQL_CREATE_MOVIES_VOTE_AVERAGE_INDEX);
 //    sqLiteDatabase.execSQL(SQL_CREATE_MOVIE_FAVORITES_TABLE);
   }
 
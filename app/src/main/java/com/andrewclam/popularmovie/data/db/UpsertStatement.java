@@ -0,0 +1,165 @@
+package com.andrewclam.popularmovie.data.db;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Compiled statements that insert or update rows of a table by a unique key column, for writing
+ * many rows in one transaction without compiling the SQL for each row.
+ * <p>
+ * An existing row is updated in place, so it keeps its {@code _ID} and its index entries, instead
+ * of being deleted and inserted again by an {@code ON CONFLICT REPLACE} clause. A row whose
+ * content didn't change is not written at all.
+ * <p>
+ * The statements are compiled for the columns of the first row and bound positionally, they are
+ * compiled again only if a row comes with different columns. Instances are not thread safe, use
+ * one per transaction and {@link #close()} it when done.
+ */
+final class UpsertStatement {
+
+  @NonNull
+  private final SQLiteDatabase mDb;
+
+  @NonNull
+  private final String mTable;
+
+  @NonNull
+  private final String mKeyColumn;
+
+  /**
+   * Columns the statements are compiled for, sorted, without the key column
+   */
+  @Nullable
+  private List<String> mColumns;
+
+  /**
+   * Updates a row by key, only if any of its columns has a different value
+   */
+  @Nullable
+  private SQLiteStatement mUpdate;
+
+  @Nullable
+  private SQLiteStatement mInsert;
+
+  @Nullable
+  private SQLiteStatement mExists;
+
+  UpsertStatement(@NonNull SQLiteDatabase db, @NonNull String table, @NonNull String keyColumn) {
+    mDb = checkNotNull(db);
+    mTable = checkNotNull(table);
+    mKeyColumn = checkNotNull(keyColumn);
+  }
+
+  /**
+   * Inserts the row, or updates the row with the same key if there is one
+   *
+   * @param values the column values of the row, must include the key column
+   * @return true if a row was inserted or changed, false if the row was already up to date
+   * @throws SQLException if the row could not be inserted
+   */
+  boolean execute(@NonNull ContentValues values) {
+    checkArgument(values.containsKey(mKeyColumn), "values must include " + mKeyColumn);
+    List<String> columns = getColumns(values);
+    checkArgument(!columns.isEmpty(), "values must include columns other than " + mKeyColumn);
+    if (!columns.equals(mColumns)) {
+      compile(columns);
+    }
+    Object key = values.get(mKeyColumn);
+
+    // SET c1 = ?, ... WHERE key = ? AND (c1 IS NOT ? OR ...)
+    SQLiteStatement update = checkNotNull(mUpdate);
+    update.clearBindings();
+    int index = 1;
+    for (String column : columns) {
+      DatabaseUtils.bindObjectToProgram(update, index++, values.get(column));
+    }
+    DatabaseUtils.bindObjectToProgram(update, index++, key);
+    for (String column : columns) {
+      DatabaseUtils.bindObjectToProgram(update, index++, values.get(column));
+    }
+    if (update.executeUpdateDelete() > 0) {
+      return true;
+    }
+
+    SQLiteStatement exists = checkNotNull(mExists);
+    exists.clearBindings();
+    DatabaseUtils.bindObjectToProgram(exists, 1, key);
+    if (exists.simpleQueryForLong() > 0) {
+      return false; // up to date
+    }
+
+    SQLiteStatement insert = checkNotNull(mInsert);
+    insert.clearBindings();
+    DatabaseUtils.bindObjectToProgram(insert, 1, key);
+    index = 2;
+    for (String column : columns) {
+      DatabaseUtils.bindObjectToProgram(insert, index++, values.get(column));
+    }
+    if (insert.executeInsert() < 0) {
+      throw new SQLException("Failed to insert row into " + mTable);
+    }
+    return true;
+  }
+
+  /**
+   * Releases the compiled statements
+   */
+  void close() {
+    if (mUpdate != null) {
+      mUpdate.close();
+      mInsert.close();
+      mExists.close();
+    }
+    mUpdate = null;
+    mInsert = null;
+    mExists = null;
+    mColumns = null;
+  }
+
+  @NonNull
+  private List<String> getColumns(@NonNull ContentValues values) {
+    List<String> columns = new ArrayList<>(values.keySet());
+    columns.remove(mKeyColumn);
+    Collections.sort(columns);
+    return columns;
+  }
+
+  private void compile(@NonNull List<String> columns) {
+    close();
+
+    StringBuilder set = new StringBuilder();
+    StringBuilder changed = new StringBuilder();
+    StringBuilder insertColumns = new StringBuilder(mKeyColumn);
+    StringBuilder insertValues = new StringBuilder("?");
+    for (String column : columns) {
+      if (set.length() > 0) {
+        set.append(", ");
+        changed.append(" OR ");
+      }
+      set.append(column).append(" = ?");
+      changed.append(column).append(" IS NOT ?");
+      insertColumns.append(", ").append(column);
+      insertValues.append(", ?");
+    }
+
+    mUpdate = mDb.compileStatement("UPDATE " + mTable + " SET " + set
+        + " WHERE " + mKeyColumn + " = ? AND (" + changed + ")");
+    mInsert = mDb.compileStatement(
+        "INSERT INTO " + mTable + " (" + insertColumns + ") VALUES (" + insertValues + ")");
+    mExists = mDb.compileStatement(
+        "SELECT COUNT(*) FROM " + mTable + " WHERE " + mKeyColumn + " = ?");
+    mColumns = columns;
+  }
+}
@@ -1,6 +1,9 @@
 package com.andrewclam.popularmovie.data.model;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.common.base.Objects;
 
 import java.util.UUID;
 
@@ -11,8 +14,19 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * Provides common methods and states for all subtypes of {@link Entity}
  */
 public class Entity {
+  /**
+   * Approximate heap overhead of an object header plus its reference fields, in bytes
+   */
+  private static final int OBJECT_OVERHEAD_BYTES = 16;
+
+  /**
+   * Approximate heap overhead of a {@link String} and its backing char array, in bytes
+   */
+  private static final int STRING_OVERHEAD_BYTES = 40;
+
   private String mUid;
   private boolean mSetDelete;
+  private long mFetchedAt;
 
   /**
    * Default constructor for the class
@@ -56,4 +70,64 @@ public class Entity {
   public final void setDelete(boolean setDelete) {
     mSetDelete = setDelete;
   }
+
+  /**
+   * @return the time this {@link Entity} was fetched from the remote data source, in
+   * milliseconds since epoch, or 0 if it is unknown
+   */
+  public final long getFetchedAt() {
+    return mFetchedAt;
+  }
+
+  /**
+   * Set the time this {@link Entity} was fetched from the remote data source, used to decide
+   * whether it is still fresh enough to be served without going to the network
+   *
+   * @param fetchedAt fetch time in milliseconds since epoch
+   */
+  public final void setFetchedAt(long fetchedAt) {
+    mFetchedAt = fetchedAt;
+  }
+
+  /**
+   * Estimates the retained heap size of this {@link Entity}, used by the in-memory cache to
+   * weigh entries against its byte budget. Sub-classes should add the size of their own fields
+   * to the value returned by this method.
+   *
+   * @return estimated size of this {@link Entity} in bytes
+   */
+  public int getEstimatedSize() {
+    return OBJECT_OVERHEAD_BYTES + sizeOf(mUid);
+  }
+
+  /**
+   * Compares the state of this {@link Entity} with another, sub-classes should compare their own
+   * fields in addition to calling this method. The fetch time is metadata and isn't compared, so
+   * the same data fetched twice is equal.
+   *
+   * @param o the other object
+   * @return whether {@code o} is an {@link Entity} of the same class with the same state
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    Entity entity = (Entity) o;
+    return mSetDelete == entity.mSetDelete && Objects.equal(mUid, entity.mUid);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(mUid, mSetDelete);
+  }
+
+  /**
+   * Estimates the retained heap size of a {@link String} field
+   *
+   * @param value the field value, may be null
+   * @return estimated size of the {@code value} in bytes, 0 if it is null
+   */
+  protected static int sizeOf(@Nullable String value) {
+    return value == null ? 0 : STRING_OVERHEAD_BYTES + 2 * value.length();
+  }
 }
@@ -3,6 +3,7 @@ package com.andrewclam.popularmovie.data.model;
 
 import android.net.Uri;
 
+import com.google.common.base.Objects;
 import com.google.gson.annotations.SerializedName;
 
 /**
@@ -60,7 +61,9 @@ public class Movie extends Entity{
   }
 
   public String getPosterPath() {
-    posterPath = posterPath.replace("/","");
+    if (posterPath != null) {
+      posterPath = posterPath.replace("/","");
+    }
     return posterPath;
   }
 
@@ -167,7 +170,41 @@ public class Movie extends Entity{
     this.voteAverage = voteAverage;
   }
 
-
-
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) return false;
+    Movie movie = (Movie) o;
+    return adult == movie.adult &&
+        video == movie.video &&
+        Objects.equal(movieId, movie.movieId) &&
+        Objects.equal(posterPath, movie.posterPath) &&
+        Objects.equal(overview, movie.overview) &&
+        Objects.equal(releaseDate, movie.releaseDate) &&
+        Objects.equal(originalTitle, movie.originalTitle) &&
+        Objects.equal(originalLanguage, movie.originalLanguage) &&
+        Objects.equal(title, movie.title) &&
+        Objects.equal(backdropPath, movie.backdropPath) &&
+        Objects.equal(popularity, movie.popularity) &&
+        Objects.equal(voteCount, movie.voteCount) &&
+        Objects.equal(voteAverage, movie.voteAverage);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(super.hashCode(), movieId, posterPath, title, popularity, voteCount,
+        voteAverage);
+  }
+
+  @Override
+  public int getEstimatedSize() {
+    // Boxed movieId, popularity, voteCount and voteAverage fields, 16 bytes each
+    return super.getEstimatedSize() + 4 * 16
+        + sizeOf(posterPath)
+        + sizeOf(overview)
+        + sizeOf(releaseDate)
+        + sizeOf(originalTitle)
+        + sizeOf(originalLanguage)
+        + sizeOf(title)
+        + sizeOf(backdropPath);
+  }
 }
-
@@ -0,0 +1,46 @@
+package com.andrewclam.popularmovie.data.model;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Model class to store the serialized response data of a {@link Movie} query that appends the
+ * movie's {@link MovieVideo}s and {@link MovieReview}s to the response, so that a movie's details
+ * are fetched in a single request.
+ */
+public class MovieDetails {
+
+  /**
+   * The movie itself, its fields are at the root of the response
+   */
+  private transient Movie movie;
+
+  @SerializedName("videos")
+  private MovieResponse<MovieVideo> videos;
+
+  @SerializedName("reviews")
+  private MovieResponse<MovieReview> reviews;
+
+  public Movie getMovie() {
+    return movie;
+  }
+
+  public void setMovie(Movie movie) {
+    this.movie = movie;
+  }
+
+  public MovieResponse<MovieVideo> getVideos() {
+    return videos;
+  }
+
+  public void setVideos(MovieResponse<MovieVideo> videos) {
+    this.videos = videos;
+  }
+
+  public MovieResponse<MovieReview> getReviews() {
+    return reviews;
+  }
+
+  public void setReviews(MovieResponse<MovieReview> reviews) {
+    this.reviews = reviews;
+  }
+}
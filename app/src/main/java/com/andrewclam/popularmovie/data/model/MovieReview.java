@@ -10,6 +10,7 @@
 
 package com.andrewclam.popularmovie.data.model;
 
+import com.google.common.base.Objects;
 import com.google.gson.annotations.SerializedName;
 
 /**
@@ -36,6 +37,9 @@ public class MovieReview extends Entity{
   }
 
   public void setUserReviewId(String userReviewId) {
+    if (userReviewId != null) {
+      super.setUid(userReviewId);
+    }
     this.userReviewId = userReviewId;
   }
 
@@ -63,4 +67,28 @@ public class MovieReview extends Entity{
     this.url = url;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) return false;
+    MovieReview that = (MovieReview) o;
+    return Objects.equal(userReviewId, that.userReviewId) &&
+        Objects.equal(author, that.author) &&
+        Objects.equal(content, that.content) &&
+        Objects.equal(url, that.url);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(super.hashCode(), userReviewId, author);
+  }
+
+  @Override
+  public int getEstimatedSize() {
+    return super.getEstimatedSize()
+        + sizeOf(userReviewId)
+        + sizeOf(author)
+        + sizeOf(content)
+        + sizeOf(url);
+  }
+
 }
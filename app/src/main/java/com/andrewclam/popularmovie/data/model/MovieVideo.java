@@ -10,21 +10,11 @@
 
 package com.andrewclam.popularmovie.data.model;
 
-import android.support.annotation.NonNull;
-
+import com.google.common.base.Objects;
 import com.google.gson.annotations.SerializedName;
 
 import java.util.List;
 
-import io.reactivex.Flowable;
-import retrofit2.http.GET;
-import retrofit2.http.Path;
-import retrofit2.http.Query;
-
-import static com.andrewclam.popularmovie.data.model.MovieVideo.QueryConstants.ARG_MOVIE_ID;
-import static com.andrewclam.popularmovie.data.modelapi.BaseContract.Paths.PATH_MOVIE;
-import static com.andrewclam.popularmovie.data.modelapi.BaseContract.QUERY_API_KEY;
-
 /**
  * Model class to store a particular movies' associated video data
  */
@@ -69,6 +59,9 @@ public final class MovieVideo extends Entity {
   }
 
   public void setMovieVideoId(String movieVideoId) {
+    if (movieVideoId != null) {
+      super.setUid(movieVideoId);
+    }
     this.movieVideoId = movieVideoId;
   }
 
@@ -112,6 +105,34 @@ public final class MovieVideo extends Entity {
     this.type = type;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) return false;
+    MovieVideo that = (MovieVideo) o;
+    return movieId == that.movieId &&
+        size == that.size &&
+        Objects.equal(movieVideoId, that.movieVideoId) &&
+        Objects.equal(key, that.key) &&
+        Objects.equal(name, that.name) &&
+        Objects.equal(site, that.site) &&
+        Objects.equal(type, that.type);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(super.hashCode(), movieId, movieVideoId, key);
+  }
+
+  @Override
+  public int getEstimatedSize() {
+    return super.getEstimatedSize()
+        + sizeOf(movieVideoId)
+        + sizeOf(key)
+        + sizeOf(name)
+        + sizeOf(site)
+        + sizeOf(type);
+  }
+
   /**
    * Model class to store the serialized response data and holds a
    * list of returned {@link MovieVideo}s.
@@ -119,7 +140,7 @@ public final class MovieVideo extends Entity {
    * Example request:
    * https://api.themoviedb.org/3/movie/{movie_id}/videos?api_key=<<api_key>>&language=en-US
    */
-  public class Response {
+  public static class Response {
     @SerializedName("id")
     private int movieVideoResponseId;
 
@@ -153,25 +174,5 @@ public final class MovieVideo extends Entity {
     // query keys
     public final static String QUERY_KEY_LANGUAGE = "language";
   }
-
-  /**
-   * Retrofit interface for generating an {@link MovieVideo} api client
-   */
-  public interface ServiceApi {
-    /**
-     * Query service api using the provided arguments and gets a json {@link MovieVideo.Response},
-     * which contains a list of {@link MovieVideo}.
-     *
-     * @param apiKey  developer api key
-     * @param movieId the unique id of the {@link Movie} to query a list of its {@link MovieVideo}s
-     * @return an observable that when subscribed to, will return a {@link MovieVideo.Response}
-     * if the call was successful.
-     */
-    @NonNull
-    @GET(PATH_MOVIE + "/" + "{" + ARG_MOVIE_ID + "}")
-    Flowable<MovieVideo.Response> getMovieVideos(@Query(QUERY_API_KEY) @NonNull String apiKey,
-                                                 @Path(ARG_MOVIE_ID) int movieId);
-  }
-
 }
 
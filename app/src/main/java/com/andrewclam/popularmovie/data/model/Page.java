@@ -0,0 +1,67 @@
+package com.andrewclam.popularmovie.data.model;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Model class to store one page of a paged query, together with its position among all pages.
+ *
+ * @param <T> type of the items on the page
+ */
+public final class Page<T> {
+
+  /**
+   * Number of the first page, pages are numbered from one like the TMDB api does
+   */
+  public static final int FIRST_PAGE = 1;
+
+  /**
+   * Total number of results of a page whose source doesn't know how many results the query has
+   */
+  public static final int UNKNOWN_TOTAL_RESULTS = -1;
+
+  private final int mNumber;
+
+  private final int mTotalPages;
+
+  private final int mTotalResults;
+
+  @NonNull
+  private final List<T> mItems;
+
+  public Page(int number, int totalPages, int totalResults, @NonNull List<T> items) {
+    checkArgument(number >= FIRST_PAGE, "number must be at least " + FIRST_PAGE);
+    mNumber = number;
+    mTotalPages = totalPages;
+    mTotalResults = totalResults;
+    mItems = checkNotNull(items);
+  }
+
+  public int getNumber() {
+    return mNumber;
+  }
+
+  public int getTotalPages() {
+    return mTotalPages;
+  }
+
+  public int getTotalResults() {
+    return mTotalResults;
+  }
+
+  @NonNull
+  public List<T> getItems() {
+    return mItems;
+  }
+
+  /**
+   * @return whether there are more pages after this one
+   */
+  public boolean hasNextPage() {
+    return mNumber < mTotalPages;
+  }
+}
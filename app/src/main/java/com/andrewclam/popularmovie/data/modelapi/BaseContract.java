@@ -31,4 +31,5 @@ public final class BaseContract {
 
   // Query parameters
   public static final String QUERY_API_KEY = "api_key";
+  public static final String QUERY_APPEND_TO_RESPONSE = "append_to_response";
 }
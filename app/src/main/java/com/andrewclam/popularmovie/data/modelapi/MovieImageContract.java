@@ -24,9 +24,15 @@ public final class MovieImageContract {
   private static final String PATH_T = "t";
   private static final String PATH_P = "p";
   private static final String PATH_IMAGE_SIZE_W500 = "w500";
+  private static final String PATH_IMAGE_SIZE_ORIGINAL = "original";
+
+  // Poster size buckets served by the api, from smallest to largest, and their widths in pixels
+  private static final String[] POSTER_SIZES = {"w92", "w154", "w185", "w342", "w500"};
+  private static final int[] POSTER_SIZE_WIDTHS = {92, 154, 185, 342, 500};
 
   /**
-   * Builds a request string base on the request template
+   * Builds a request string base on the request template, for a w500 poster as shown on the
+   * detail screen
    *
    * @param posterPath the path to the poster image
    * @return a String url
@@ -35,6 +41,45 @@ public final class MovieImageContract {
   @NonNull
   public static String getImageUrl(@NonNull String posterPath)
       throws IllegalArgumentException {
+    return getImageUrl(posterPath, PATH_IMAGE_SIZE_W500);
+  }
+
+  /**
+   * Builds a request string base on the request template, for the smallest poster that is at
+   * least as wide as the view it is shown in, so that no more pixels are downloaded and decoded
+   * than are shown
+   *
+   * @param posterPath the path to the poster image
+   * @param widthPx    the width of the view the poster is shown in, in pixels
+   * @return a String url
+   * @throws IllegalArgumentException when {@code posterPath} is not supplied
+   */
+  @NonNull
+  public static String getImageUrl(@NonNull String posterPath, int widthPx)
+      throws IllegalArgumentException {
+    return getImageUrl(posterPath, getPosterSize(widthPx));
+  }
+
+  /**
+   * Picks the smallest poster size bucket that covers the width
+   *
+   * @param widthPx the width of the view the poster is shown in, in pixels
+   * @return the size path segment, e.g. {@code "w185"}, or {@code "original"} if the view is
+   * wider than the largest bucket
+   */
+  @NonNull
+  static String getPosterSize(int widthPx) {
+    for (int i = 0; i < POSTER_SIZE_WIDTHS.length; i++) {
+      if (widthPx <= POSTER_SIZE_WIDTHS[i]) {
+        return POSTER_SIZES[i];
+      }
+    }
+    return PATH_IMAGE_SIZE_ORIGINAL;
+  }
+
+  @NonNull
+  private static String getImageUrl(@NonNull String posterPath, @NonNull String size)
+      throws IllegalArgumentException {
     if (Strings.isNullOrEmpty(posterPath)) {
       throw new IllegalArgumentException("posterPath can't be empty or null");
     }
@@ -42,7 +87,7 @@ public final class MovieImageContract {
     Uri.Builder builder = BASE_TMDB_IMAGE_REQUEST_URI.buildUpon();
     builder.appendPath(PATH_T)
         .appendPath(PATH_P)
-        .appendPath(PATH_IMAGE_SIZE_W500)
+        .appendPath(size)
         .appendPath(posterPath);
 
     return builder.build().toString();
@@ -4,11 +4,22 @@ import android.content.Context;
 import android.support.annotation.NonNull;
 
 import com.andrewclam.popularmovie.R;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
 
 import dagger.Module;
 import dagger.Provides;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import retrofit2.converter.gson.GsonConverterFactory;
@@ -22,6 +33,60 @@ import static com.andrewclam.popularmovie.data.modelapi.BaseContract.BASE_TMDB_R
 @Module
 public abstract class ApiModule {
 
+  /**
+   * Size of the on-disk http cache, shared by api responses and poster images
+   */
+  private static final long HTTP_CACHE_SIZE_BYTES = 50 * 1024 * 1024;
+
+  /**
+   * Time a response is served from the http cache when the server doesn't set a max age. It must
+   * not be longer than the freshness ttl of the repositories: a repository revalidates its items
+   * once they are older than the ttl, and the response they came from is then expired too, so the
+   * revalidation reaches the network. A refresh skips the cached responses with the
+   * {@link CacheRefreshInterceptor}.
+   */
+  private static final long HTTP_CACHE_FORCED_MAX_AGE_MINUTES = 10;
+
+  /**
+   * Idle connections kept alive, enough for the api host and the image host
+   */
+  private static final int MAX_IDLE_CONNECTIONS = 5;
+
+  private static final long KEEP_ALIVE_MINUTES = 5;
+
+  /**
+   * Concurrent requests in total, and to a single host, e.g. posters loaded while scrolling
+   */
+  private static final int MAX_REQUESTS = 32;
+
+  private static final int MAX_REQUESTS_PER_HOST = 8;
+
+  /**
+   * Api requests made at once, and per second after that. The api allows 40 requests per 10
+   * seconds, a full burst plus 10 seconds of refill stays within it
+   */
+  private static final int RATE_LIMIT_BURST = 10;
+
+  private static final double RATE_LIMIT_PERMITS_PER_SECOND = 3;
+
+  /**
+   * Retries of a request failed with a transient error, and the bounds of their random delays,
+   * the delay bound doubles from the base with each retry
+   */
+  private static final int MAX_RETRIES = 3;
+
+  private static final long RETRY_BASE_DELAY_MILLIS = 500;
+
+  private static final long RETRY_MAX_DELAY_MILLIS = 8000;
+
+  /**
+   * Consecutive requests failed with a transient error, each after all its retries, that open the
+   * circuit of an endpoint, and how long it stays open before a trial request
+   */
+  private static final int CIRCUIT_FAILURE_THRESHOLD = 3;
+
+  private static final long CIRCUIT_OPEN_SECONDS = 30;
+
   @Provides
   @NonNull
   @ApiKey
@@ -32,10 +97,66 @@ public abstract class ApiModule {
   @Provides
   @NonNull
   @Singleton
-  static Retrofit providesRetrofit(){
+  static OkHttpClient providesOkHttpClient(@NonNull Context context) {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(MAX_REQUESTS);
+    dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+    // The cache revalidates expired responses with If-None-Match / If-Modified-Since
+    return new OkHttpClient.Builder()
+        .cache(new Cache(new File(context.getCacheDir(), "http"), HTTP_CACHE_SIZE_BYTES))
+        .addNetworkInterceptor(new CacheControlInterceptor(HTTP_CACHE_FORCED_MAX_AGE_MINUTES,
+            TimeUnit.MINUTES))
+        .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES,
+            TimeUnit.MINUTES))
+        .dispatcher(dispatcher)
+        .build();
+  }
+
+  @Provides
+  @NonNull
+  @Singleton
+  static RateLimiter providesRateLimiter() {
+    return new RateLimiter(RATE_LIMIT_BURST, RATE_LIMIT_PERMITS_PER_SECOND,
+        Schedulers.computation());
+  }
+
+  @Provides
+  @NonNull
+  @Singleton
+  static RetryWithBackoff providesRetryWithBackoff() {
+    return new RetryWithBackoff(MAX_RETRIES, RETRY_BASE_DELAY_MILLIS, RETRY_MAX_DELAY_MILLIS,
+        new Random(), Schedulers.computation());
+  }
+
+  @Provides
+  @NonNull
+  @Singleton
+  static CircuitBreakers providesCircuitBreakers() {
+    return new CircuitBreakers(CIRCUIT_FAILURE_THRESHOLD,
+        TimeUnit.SECONDS.toMillis(CIRCUIT_OPEN_SECONDS), Schedulers.computation());
+  }
+
+  @Provides
+  @NonNull
+  @Singleton
+  static Retrofit providesRetrofit(@NonNull OkHttpClient okHttpClient,
+                                   @NonNull RateLimiter rateLimiter,
+                                   @NonNull CacheRefreshInterceptor cacheRefreshInterceptor) {
+    // decodes the payloads with streaming adapters instead of reflection
+    Gson gson = new GsonBuilder()
+        .registerTypeAdapterFactory(new EntityTypeAdapterFactory())
+        .create();
+
     return new Retrofit.Builder()
         .baseUrl(BASE_TMDB_REQUEST_URL.concat("/"))
-        .addConverterFactory(GsonConverterFactory.create())
+        // shares the connections and cache, only api responses pause the rate limiter, and only
+        // api requests skip the responses cached before a refresh, posters don't change
+        .client(okHttpClient.newBuilder()
+            .addInterceptor(cacheRefreshInterceptor)
+            .addInterceptor(new RetryAfterInterceptor(rateLimiter))
+            .build())
+        .addConverterFactory(GsonConverterFactory.create(gson))
         .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
         .build();
   }
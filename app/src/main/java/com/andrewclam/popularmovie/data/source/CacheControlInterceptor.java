@@ -0,0 +1,48 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Network {@link Interceptor} that makes successful GET responses cacheable for a fixed time when
+ * the server doesn't say for how long, so the http cache serves repeated requests without going
+ * to the network. Responses that carry their own {@code Cache-Control} header are left as they
+ * are, and a cached response with an {@code ETag} or {@code Last-Modified} header is revalidated
+ * with a conditional request once it expires.
+ */
+final class CacheControlInterceptor implements Interceptor {
+
+  private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+  @NonNull
+  private final String mForcedCacheControl;
+
+  /**
+   * @param maxAge time a response without its own {@code Cache-Control} header is fresh for
+   * @param unit   unit of the max age
+   */
+  CacheControlInterceptor(long maxAge, @NonNull TimeUnit unit) {
+    checkArgument(maxAge > 0, "maxAge must be positive");
+    mForcedCacheControl = "public, max-age=" + unit.toSeconds(maxAge);
+  }
+
+  @Override
+  public Response intercept(@NonNull Chain chain) throws IOException {
+    Response response = chain.proceed(chain.request());
+    boolean cacheable = "GET".equals(chain.request().method()) && response.isSuccessful();
+    if (!cacheable || response.header(HEADER_CACHE_CONTROL) != null) {
+      return response;
+    }
+    return response.newBuilder()
+        .header(HEADER_CACHE_CONTROL, mForcedCacheControl)
+        .removeHeader("Pragma")
+        .build();
+  }
+}
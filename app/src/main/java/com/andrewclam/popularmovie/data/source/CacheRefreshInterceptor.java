@@ -0,0 +1,72 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Application {@link Interceptor} that keeps the http cache from answering api requests with
+ * responses it stored before the data was last refreshed, e.g. by the user pulling to refresh.
+ * <p>
+ * After {@link #refresh()}, every api request asks for a response no older than the time since
+ * the refresh with a {@code Cache-Control: max-age} request header. Responses stored before the
+ * refresh are revalidated with the server, while the ones fetched after it are still served from
+ * the cache. Requests that set their own {@code Cache-Control} header are left as they are.
+ * <p>
+ * This class is safe to use from multiple threads.
+ */
+@Singleton
+final class CacheRefreshInterceptor implements Interceptor {
+
+  private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+  @NonNull
+  private final Clock mClock;
+
+  /**
+   * Time of the last refresh in milliseconds since epoch, or 0 if there was none
+   */
+  private volatile long mRefreshedAtMillis;
+
+  @Inject
+  CacheRefreshInterceptor() {
+    this(Clock.SYSTEM);
+  }
+
+  @VisibleForTesting
+  CacheRefreshInterceptor(@NonNull Clock clock) {
+    mClock = checkNotNull(clock);
+  }
+
+  /**
+   * Stops the http cache from serving the responses stored until now
+   */
+  void refresh() {
+    mRefreshedAtMillis = mClock.currentTimeMillis();
+  }
+
+  @Override
+  public Response intercept(@NonNull Chain chain) throws IOException {
+    Request request = chain.request();
+    long refreshedAtMillis = mRefreshedAtMillis;
+    if (refreshedAtMillis == 0 || request.header(HEADER_CACHE_CONTROL) != null) {
+      return chain.proceed(request);
+    }
+    // rounded down, a response stored before the refresh is never served, at worst one stored
+    // within a second after it is revalidated once more
+    long maxAgeSeconds = Math.max(0, (mClock.currentTimeMillis() - refreshedAtMillis) / 1000);
+    return chain.proceed(request.newBuilder()
+        .header(HEADER_CACHE_CONTROL, "max-age=" + maxAgeSeconds)
+        .build());
+  }
+}
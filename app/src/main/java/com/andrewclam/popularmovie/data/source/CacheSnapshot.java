@@ -0,0 +1,166 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.andrewclam.popularmovie.data.model.Entity;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Binary snapshot of the items held in a {@link Repository<E>}'s in-memory cache, persisted to a
+ * file so that the cache can be restored on a cold start without querying the local data source.
+ * <p>
+ * The file starts with a fixed size header: a magic number, the version of this format, the
+ * version of the {@link EntityCodec<E>} that encoded the items, the number of items, the length
+ * of the payload and a CRC32 checksum of the payload. A snapshot whose header or checksum doesn't
+ * match is treated as missing, so that the repository falls back to its data sources.
+ * <p>
+ * Snapshots are written to a temporary file that is renamed over the previous one, a reader never
+ * sees a partially written snapshot.
+ *
+ * @param <E> type of {@link Entity} the snapshot holds
+ */
+final class CacheSnapshot<E extends Entity> {
+
+  private static final int MAGIC = 0x504d4353; // "PMCS"
+
+  @VisibleForTesting
+  static final int FORMAT_VERSION = 1;
+
+  /**
+   * Size of the header, magic, format version, codec version, count, payload length and checksum
+   */
+  @VisibleForTesting
+  static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 4 + 8;
+
+  @NonNull
+  private final File mFile;
+
+  @NonNull
+  private final EntityCodec<E> mCodec;
+
+  CacheSnapshot(@NonNull File file, @NonNull EntityCodec<E> codec) {
+    mFile = checkNotNull(file);
+    mCodec = checkNotNull(codec);
+  }
+
+  /**
+   * Replaces the snapshot with the items
+   *
+   * @param items the items to persist, in order
+   * @throws IOException if the snapshot can't be written, the previous snapshot is left intact
+   */
+  void write(@NonNull List<E> items) throws IOException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    DataOutputStream payloadOut = new DataOutputStream(payload);
+    for (E item : items) {
+      mCodec.write(item, payloadOut);
+    }
+    payloadOut.flush();
+    byte[] payloadBytes = payload.toByteArray();
+
+    CRC32 crc = new CRC32();
+    crc.update(payloadBytes);
+
+    File tmpFile = new File(mFile.getPath() + ".tmp");
+    FileOutputStream fileOut = new FileOutputStream(tmpFile);
+    try {
+      DataOutputStream out = new DataOutputStream(fileOut);
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(mCodec.getVersion());
+      out.writeInt(items.size());
+      out.writeInt(payloadBytes.length);
+      out.writeLong(crc.getValue());
+      out.write(payloadBytes);
+      out.flush();
+      fileOut.getFD().sync();
+    } finally {
+      fileOut.close();
+    }
+
+    if (!tmpFile.renameTo(mFile)) {
+      //noinspection ResultOfMethodCallIgnored
+      tmpFile.delete();
+      throw new IOException("Unable to replace snapshot " + mFile);
+    }
+  }
+
+  /**
+   * Reads the snapshot back, the items are decoded as the file is streamed and the checksum of
+   * their payload is verified once all were read
+   *
+   * @return the persisted items in the order they were written, or null if there is no snapshot,
+   * or it was written by another version or is corrupt
+   */
+  @Nullable
+  List<E> read() {
+    if (!mFile.isFile() || mFile.length() < HEADER_BYTES) {
+      return null;
+    }
+
+    InputStream file = null;
+    try {
+      file = new BufferedInputStream(new FileInputStream(mFile));
+      DataInputStream header = new DataInputStream(file);
+      if (header.readInt() != MAGIC
+          || header.readInt() != FORMAT_VERSION
+          || header.readInt() != mCodec.getVersion()) {
+        return null;
+      }
+      int count = header.readInt();
+      int payloadLength = header.readInt();
+      long checksum = header.readLong();
+      // an item takes at least a byte, a corrupt count can't size the list beyond the payload
+      if (count < 0 || count > payloadLength || payloadLength != mFile.length() - HEADER_BYTES) {
+        return null;
+      }
+
+      CRC32 crc = new CRC32();
+      DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+      List<E> items = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        items.add(mCodec.read(in));
+      }
+      return in.read() == -1 && crc.getValue() == checksum ? items : null;
+    } catch (IOException | IllegalArgumentException e) {
+      return null;
+    } finally {
+      closeQuietly(file);
+    }
+  }
+
+  /**
+   * Removes the snapshot, for example after the cached items were invalidated
+   */
+  void delete() {
+    //noinspection ResultOfMethodCallIgnored
+    mFile.delete();
+  }
+
+  private static void closeQuietly(@Nullable InputStream file) {
+    if (file == null) {
+      return;
+    }
+    try {
+      file.close();
+    } catch (IOException ignored) {
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import retrofit2.HttpException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Circuit breaker of a single remote endpoint, it stops making requests to an endpoint that keeps
+ * failing, so that callers fall back to local data right away instead of waiting on requests that
+ * are bound to fail, and the struggling backend gets time to recover.
+ * <p>
+ * The circuit is closed while requests succeed. After a number of consecutive transient failures
+ * it opens, and requests fail with a {@link CircuitOpenException} without being made. Once the
+ * open period passed, a single trial request is let through: the circuit closes if the endpoint
+ * answers it, and opens again if it fails. Requests the client didn't make, such as the ones shed
+ * by the {@link RateLimiter}, neither count as failures nor close the circuit.
+ * <p>
+ * This class is safe to use from multiple threads.
+ */
+final class CircuitBreaker {
+
+  enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  @NonNull
+  private final String mEndpoint;
+
+  private final int mFailureThreshold;
+
+  private final long mOpenMillis;
+
+  @NonNull
+  private final Scheduler mScheduler;
+
+  @NonNull
+  private State mState = State.CLOSED;
+
+  private int mConsecutiveFailures;
+
+  private long mOpenedAtMillis;
+
+  private boolean mTrialInFlight;
+
+  /**
+   * @param endpoint         name of the endpoint, for error messages
+   * @param failureThreshold consecutive transient failures that open the circuit
+   * @param openMillis       time the circuit stays open before a trial request
+   * @param scheduler        source of the current time
+   */
+  CircuitBreaker(@NonNull String endpoint, int failureThreshold, long openMillis,
+                 @NonNull Scheduler scheduler) {
+    checkArgument(failureThreshold > 0, "failureThreshold must be positive");
+    checkArgument(openMillis > 0, "openMillis must be positive");
+    mEndpoint = checkNotNull(endpoint);
+    mFailureThreshold = failureThreshold;
+    mOpenMillis = openMillis;
+    mScheduler = checkNotNull(scheduler);
+  }
+
+  /**
+   * Guards a request to the endpoint, the request is only made on subscription if the circuit
+   * lets it through, and its outcome is recorded.
+   *
+   * @param request the request to the endpoint
+   * @param <T>     type of the response
+   * @return the guarded request, errors with a {@link CircuitOpenException} if not let through
+   */
+  @NonNull
+  <T> Flowable<T> guard(@NonNull Flowable<T> request) {
+    checkNotNull(request);
+    return Flowable.defer(() -> {
+      if (!tryAcquire()) {
+        return Flowable.<T>error(new CircuitOpenException(mEndpoint));
+      }
+      return request
+          .doOnNext(response -> onSuccess())
+          .doOnComplete(this::onSuccess)
+          .doOnError(this::onError)
+          .doOnCancel(this::onCancel);
+    });
+  }
+
+  @NonNull
+  synchronized State getState() {
+    if (mState == State.OPEN && now() - mOpenedAtMillis >= mOpenMillis) {
+      mState = State.HALF_OPEN;
+    }
+    return mState;
+  }
+
+  private synchronized boolean tryAcquire() {
+    switch (getState()) {
+      case CLOSED:
+        return true;
+      case HALF_OPEN:
+        if (mTrialInFlight) {
+          return false;
+        }
+        mTrialInFlight = true;
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private synchronized void onSuccess() {
+    mConsecutiveFailures = 0;
+    mTrialInFlight = false;
+    mState = State.CLOSED;
+  }
+
+  private synchronized void onError(@NonNull Throwable error) {
+    mTrialInFlight = false;
+    if (!RetryWithBackoff.isTransient(error)) {
+      // e.g. 404 Not Found, the endpoint answered and is working; a request the client chose not
+      // to make, shed by the rate limiter or short-circuited, says nothing about the endpoint
+      if (error instanceof HttpException && mState == State.HALF_OPEN) {
+        mState = State.CLOSED;
+        mConsecutiveFailures = 0;
+      }
+      return;
+    }
+    mConsecutiveFailures++;
+    if (mState == State.HALF_OPEN || mConsecutiveFailures >= mFailureThreshold) {
+      mState = State.OPEN;
+      mOpenedAtMillis = now();
+    }
+  }
+
+  private synchronized void onCancel() {
+    // a cancelled trial leaves its outcome unknown, the next request tries again
+    mTrialInFlight = false;
+  }
+
+  private long now() {
+    return mScheduler.now(TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,61 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.reactivex.Scheduler;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The {@link CircuitBreaker}s of the remote endpoints, one per endpoint, so that a failing
+ * endpoint doesn't stop the requests to the others. This class is safe to use from multiple
+ * threads.
+ */
+final class CircuitBreakers {
+
+  private final int mFailureThreshold;
+
+  private final long mOpenMillis;
+
+  @NonNull
+  private final Scheduler mScheduler;
+
+  @NonNull
+  private final ConcurrentMap<String, CircuitBreaker> mCircuitBreakers = new ConcurrentHashMap<>();
+
+  /**
+   * @param failureThreshold consecutive transient failures that open the circuit of an endpoint
+   * @param openMillis       time a circuit stays open before a trial request
+   * @param scheduler        source of the current time
+   */
+  CircuitBreakers(int failureThreshold, long openMillis, @NonNull Scheduler scheduler) {
+    checkArgument(failureThreshold > 0, "failureThreshold must be positive");
+    checkArgument(openMillis > 0, "openMillis must be positive");
+    mFailureThreshold = failureThreshold;
+    mOpenMillis = openMillis;
+    mScheduler = checkNotNull(scheduler);
+  }
+
+  /**
+   * @param endpoint name of the endpoint
+   * @return the circuit breaker of the endpoint, created closed on first use
+   */
+  @NonNull
+  CircuitBreaker get(@NonNull String endpoint) {
+    checkNotNull(endpoint);
+    CircuitBreaker circuitBreaker = mCircuitBreakers.get(endpoint);
+    if (circuitBreaker == null) {
+      CircuitBreaker created =
+          new CircuitBreaker(endpoint, mFailureThreshold, mOpenMillis, mScheduler);
+      circuitBreaker = mCircuitBreakers.putIfAbsent(endpoint, created);
+      if (circuitBreaker == null) {
+        circuitBreaker = created;
+      }
+    }
+    return circuitBreaker;
+  }
+}
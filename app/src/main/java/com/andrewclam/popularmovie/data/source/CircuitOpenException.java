@@ -0,0 +1,14 @@
+package com.andrewclam.popularmovie.data.source;
+
+import java.io.IOException;
+
+/**
+ * Signals that a remote request was not made because the {@link CircuitBreaker} of its endpoint
+ * is open, the endpoint failed repeatedly and is given time to recover.
+ */
+public final class CircuitOpenException extends IOException {
+
+  CircuitOpenException(String endpoint) {
+    super("Circuit open for endpoint " + endpoint);
+  }
+}
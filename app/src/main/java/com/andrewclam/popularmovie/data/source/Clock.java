@@ -0,0 +1,18 @@
+package com.andrewclam.popularmovie.data.source;
+
+/**
+ * Source of the current wall clock time, used to stamp and age persisted data. Unlike a
+ * {@link com.google.common.base.Ticker} its readings are comparable across app restarts.
+ */
+interface Clock {
+
+  /**
+   * {@link Clock} backed by {@link System#currentTimeMillis()}
+   */
+  Clock SYSTEM = System::currentTimeMillis;
+
+  /**
+   * @return the current time in milliseconds since epoch
+   */
+  long currentTimeMillis();
+}
@@ -1,16 +1,19 @@
 package com.andrewclam.popularmovie.data.source;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.util.Log;
 
 import com.andrewclam.popularmovie.BuildConfig;
 import com.andrewclam.popularmovie.data.DataSource;
 import com.andrewclam.popularmovie.data.model.Entity;
+import com.andrewclam.popularmovie.data.model.Page;
 import com.google.common.base.Optional;
 import com.squareup.sqlbrite3.BriteContentResolver;
 
@@ -57,11 +60,25 @@ abstract class DataSourceLocal<E extends Entity> implements DataSource<E> {
     mMapperFunction = this::mapToItem;
   }
 
-  // TODO implement local data query base on options
+  /**
+   * Gets the items that match the query options, the options are translated into the selection,
+   * sort order and limit of the query by {@link #toQuery(Map)}, so that only the rows asked for
+   * are read and mapped
+   */
   @NonNull
   @Override
   public Flowable<List<E>> getItems(@NonNull Map<String, String> options) {
-    return getItems();
+    checkNotNull(options);
+    checkNotNull(mBriteContentResolver, "mBriteContentResolver cannot be null!");
+    Query query = toQuery(options);
+    return mBriteContentResolver.createQuery(query.mUri,
+        null,
+        query.mSelection,
+        query.mSelectionArgs,
+        query.mSortOrder,
+        true)
+        .mapToList(mMapperFunction)
+        .toFlowable(BackpressureStrategy.BUFFER);
   }
 
   @NonNull
@@ -78,6 +95,45 @@ abstract class DataSourceLocal<E extends Entity> implements DataSource<E> {
         .toFlowable(BackpressureStrategy.BUFFER);
   }
 
+  /**
+   * Local data is always current with itself, there is nothing to revalidate against
+   */
+  @NonNull
+  @Override
+  public Flowable<List<E>> getItemsAndRevalidate() {
+    return getItems();
+  }
+
+  /**
+   * Gets a page of the stored items that match the query options, the page is translated into the
+   * limit and offset of the query by {@link #toPageQuery(Map, int)}. Completes empty if the
+   * sub-class doesn't page its items.
+   * <p>
+   * The local data source doesn't know how many results the query has at the service api, so a
+   * non-empty page is counted as followed by one more, the repository loads it from the remote
+   * data source once the stored items run out.
+   */
+  @NonNull
+  @Override
+  public Flowable<Page<E>> getPage(@NonNull Map<String, String> options, int page) {
+    checkNotNull(options);
+    checkNotNull(mBriteContentResolver, "mBriteContentResolver cannot be null!");
+    Query query = toPageQuery(options, page);
+    if (query == null) {
+      return Flowable.empty();
+    }
+    return mBriteContentResolver.createQuery(query.mUri,
+        null,
+        query.mSelection,
+        query.mSelectionArgs,
+        query.mSortOrder,
+        true)
+        .mapToList(mMapperFunction)
+        .map(items -> new Page<>(page, items.isEmpty() ? page : page + 1,
+            Page.UNKNOWN_TOTAL_RESULTS, items))
+        .toFlowable(BackpressureStrategy.BUFFER);
+  }
+
   @NonNull
   @Override
   public Flowable<Optional<E>> getItem(@NonNull String entityId) {
@@ -119,12 +175,15 @@ abstract class DataSourceLocal<E extends Entity> implements DataSource<E> {
   @Override
   public Completable addAll(@NonNull List<E> items) {
     return Completable.create(emitter -> {
-      List<ContentValues> cvList = new ArrayList<>();
-      for (E item : items) {
-        ContentValues cv = from(item);
-        cvList.add(cv);
+      if (items.isEmpty()) {
+        emitter.onComplete();
+        return;
+      }
+      // one bulk insert is one transaction and one change notification for the whole batch
+      ContentValues[] cvArray = new ContentValues[items.size()];
+      for (int i = 0; i < cvArray.length; i++) {
+        cvArray[i] = from(items.get(i));
       }
-      ContentValues[] cvArray = (ContentValues[]) cvList.toArray();
       int numInserted = mContentResolver.bulkInsert(mContentUri, cvArray);
       if (numInserted > 0) {
         if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Bulk insert item success.");
@@ -187,6 +246,69 @@ abstract class DataSourceLocal<E extends Entity> implements DataSource<E> {
     });
   }
 
+  /**
+   * Saves and removes a batch of items in one provider call, applied as one transaction with one
+   * change notification per changed uri, see
+   * {@link com.andrewclam.popularmovie.data.db.AppContentProvider#applyBatch(ArrayList)}
+   *
+   * @param saves items to insert, or update in place if already stored
+   * @param removals uids of the items to remove
+   * @return a completable that completes when the whole batch was applied, or errors if any of
+   * it failed, in which case none of it was applied
+   */
+  @NonNull
+  Completable applyBatch(@NonNull List<E> saves, @NonNull List<String> removals) {
+    checkNotNull(saves);
+    checkNotNull(removals);
+    return Completable.create(emitter -> {
+      ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+      for (E item : saves) {
+        operations.add(ContentProviderOperation.newInsert(mContentUri)
+            .withValues(from(item))
+            .build());
+      }
+      for (String entityId : removals) {
+        operations.add(ContentProviderOperation.newDelete(mContentUri.buildUpon()
+            .appendPath(PATH_UID)
+            .appendPath(entityId)
+            .build())
+            .build());
+      }
+      if (!operations.isEmpty()) {
+        mContentResolver.applyBatch(checkNotNull(mContentUri.getAuthority()), operations);
+        if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Apply batch success. size: " + operations.size());
+      }
+      emitter.onComplete();
+    });
+  }
+
+  /**
+   * method that sub-class may override to translate the query options it supports into a
+   * {@link Query}, by default the options are ignored and all the items are queried
+   *
+   * @param options query options, as passed to {@link #getItems(Map)}
+   * @return the query of the items that match the options
+   */
+  @VisibleForTesting
+  @NonNull
+  Query toQuery(@NonNull Map<String, String> options) {
+    return new Query(mContentUri, null, null, null);
+  }
+
+  /**
+   * method that sub-class may override to translate a page of a query into a {@link Query}, by
+   * default items are not paged and their pages are only loaded from the remote data source
+   *
+   * @param options query options, without the page number, as passed to {@link #getPage(Map, int)}
+   * @param page    number of the page, starting at {@link Page#FIRST_PAGE}
+   * @return the query of the items on the page, or null if the items are not paged
+   */
+  @VisibleForTesting
+  @Nullable
+  Query toPageQuery(@NonNull Map<String, String> options, int page) {
+    return null;
+  }
+
   /**
    * abstract method that sub-class must implement to correctly map
    * the content values from an item
@@ -219,4 +341,35 @@ abstract class DataSourceLocal<E extends Entity> implements DataSource<E> {
   @NonNull
   abstract Uri setContentUri();
 
+  /**
+   * Query of the content provider, translated from the query options of {@link #getItems(Map)}
+   */
+  static final class Query {
+
+    @NonNull
+    final Uri mUri;
+
+    @Nullable
+    final String mSelection;
+
+    @Nullable
+    final String[] mSelectionArgs;
+
+    @Nullable
+    final String mSortOrder;
+
+    /**
+     * @param uri           the content uri, with its limit query parameters if any
+     * @param selection     the where clause, with ? for its arguments, or null for all the rows
+     * @param selectionArgs the arguments of the selection
+     * @param sortOrder     the order by clause, or null for the order of the table
+     */
+    Query(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs,
+          @Nullable String sortOrder) {
+      mUri = checkNotNull(uri);
+      mSelection = selection;
+      mSelectionArgs = selectionArgs;
+      mSortOrder = sortOrder;
+    }
+  }
 }
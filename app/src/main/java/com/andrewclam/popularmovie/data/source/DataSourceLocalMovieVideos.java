@@ -23,6 +23,10 @@ import static com.andrewclam.popularmovie.data.db.AppDbContract.MovieEntry.CONTE
  * <p>
  * from() object mapping to ContentValues for saving item to local storage
  * mapToItem() parsing from a Cursor object to an item for retrieving an item from local storage.
+ * <p>
+ * Note: videos have no table of their own yet, the content uri is still the movies one, so query
+ * options such as {@link MovieVideo.QueryConstants#ARG_MOVIE_ID} can't be translated into a
+ * selection of the {@link AppDbContract.MovieVideoEntry} columns until that table is added.
  */
 
 @Singleton
@@ -45,6 +49,7 @@ class DataSourceLocalMovieVideos extends DataSourceLocal<MovieVideo> {
     values.put(AppDbContract.MovieVideoEntry.COLUMN_SIZE,item.getSize());
     values.put(AppDbContract.MovieVideoEntry.COLUMN_TYPE,item.getType());
     values.put(AppDbContract.MovieVideoEntry.COLUMN_NAME_DELETE_FLAG,item.isSetDelete()? 1:0);
+    values.put(AppDbContract.MovieVideoEntry.COLUMN_FETCHED_AT,item.getFetchedAt());
     return values;
   }
 
@@ -60,6 +65,7 @@ class DataSourceLocalMovieVideos extends DataSourceLocal<MovieVideo> {
     int size = c.getInt(c.getColumnIndexOrThrow(AppDbContract.MovieVideoEntry.COLUMN_SIZE));
     String type = c.getString(c.getColumnIndexOrThrow(AppDbContract.MovieVideoEntry.COLUMN_TYPE));
     boolean setDelete = c.getInt(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_NAME_DELETE_FLAG)) == 1;
+    long fetchedAt = c.getLong(c.getColumnIndexOrThrow(AppDbContract.MovieVideoEntry.COLUMN_FETCHED_AT));
 
     MovieVideo item = new MovieVideo();
     item.setMovieId(movieId);
@@ -70,6 +76,7 @@ class DataSourceLocalMovieVideos extends DataSourceLocal<MovieVideo> {
     item.setSize(size);
     item.setType(type);
     item.setDelete(setDelete);
+    item.setFetchedAt(fetchedAt);
     return item;
   }
 
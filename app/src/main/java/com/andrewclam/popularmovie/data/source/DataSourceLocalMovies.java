@@ -4,10 +4,18 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
 import com.andrewclam.popularmovie.data.db.AppDbContract;
 import com.andrewclam.popularmovie.data.model.Movie;
+import com.andrewclam.popularmovie.data.model.Page;
+import com.andrewclam.popularmovie.data.modelapi.MovieContract.DiscoverMoviesParam;
+import com.andrewclam.popularmovie.data.modelapi.MovieContract.SortByArg;
+import com.google.common.primitives.Ints;
+
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -28,10 +36,85 @@ import static com.andrewclam.popularmovie.data.db.AppDbContract.MovieEntry.CONTE
 @Singleton
 class DataSourceLocalMovies extends DataSourceLocal<Movie> {
 
+  /**
+   * Number of movies in a page, as in the pages of the discover api
+   */
+  @VisibleForTesting
+  static final int PAGE_SIZE = 20;
+
   @Inject
   @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
   DataSourceLocalMovies() {}
 
+  /**
+   * Translates the {@link DiscoverMoviesParam} options: the sort order into an ORDER BY served by
+   * the indexes of the movies table, and the page into a LIMIT and OFFSET of {@link #PAGE_SIZE}
+   * movies. A query without a page gets all the movies, in the sort order.
+   */
+  @VisibleForTesting
+  @NonNull
+  @Override
+  Query toQuery(@NonNull Map<String, String> options) {
+    Uri uri = setContentUri();
+    String pageOption = options.get(DiscoverMoviesParam.QUERY_PAGE_KEY);
+    if (pageOption != null) {
+      Integer page = Ints.tryParse(pageOption);
+      int offset = (page == null || page < Page.FIRST_PAGE ? 0 : page - Page.FIRST_PAGE)
+          * PAGE_SIZE;
+      uri = uri.buildUpon()
+          .appendQueryParameter(AppDbContract.QUERY_PARAM_LIMIT, String.valueOf(PAGE_SIZE))
+          .appendQueryParameter(AppDbContract.QUERY_PARAM_OFFSET, String.valueOf(offset))
+          .build();
+    }
+    return new Query(uri, null, null,
+        toSortOrder(options.get(DiscoverMoviesParam.QUERY_SORT_BY_KEY)));
+  }
+
+  /**
+   * Translates a page of the {@link DiscoverMoviesParam} options like {@link #toQuery(Map)} does
+   * with the page option set
+   */
+  @VisibleForTesting
+  @NonNull
+  @Override
+  Query toPageQuery(@NonNull Map<String, String> options, int page) {
+    Map<String, String> pageOptions = new HashMap<>(options);
+    pageOptions.put(DiscoverMoviesParam.QUERY_PAGE_KEY, String.valueOf(page));
+    return toQuery(pageOptions);
+  }
+
+  /**
+   * @param sortBy a {@link SortByArg}, the default sort order if null or not supported
+   * @return the ORDER BY clause of the sort order, with the movie id as the tie breaker so that
+   * the pages of a sort order don't overlap
+   */
+  @VisibleForTesting
+  @NonNull
+  static String toSortOrder(@Nullable String sortBy) {
+    final String column;
+    final String direction;
+    switch (sortBy == null ? SortByArg.DEFAULT : sortBy) {
+      case SortByArg.POPULARITY_ASC:
+        column = AppDbContract.MovieEntry.COLUMN_POPULARITY;
+        direction = " ASC";
+        break;
+      case SortByArg.VOTE_AVERAGE_DESC:
+        column = AppDbContract.MovieEntry.COLUMN_VOTE_AVERAGE;
+        direction = " DESC";
+        break;
+      case SortByArg.VOTE_AVERAGE_ASC:
+        column = AppDbContract.MovieEntry.COLUMN_VOTE_AVERAGE;
+        direction = " ASC";
+        break;
+      case SortByArg.POPULARITY_DESC:
+      default:
+        column = AppDbContract.MovieEntry.COLUMN_POPULARITY;
+        direction = " DESC";
+        break;
+    }
+    return column + direction + ", " + AppDbContract.MovieEntry.COLUMN_MOVIE_TMDB_ID + direction;
+  }
+
   @VisibleForTesting
   @NonNull
   @Override
@@ -45,7 +128,13 @@ class DataSourceLocalMovies extends DataSourceLocal<Movie> {
     values.put(AppDbContract.MovieEntry.COLUMN_VOTE_COUNT, item.getVoteCount());
     values.put(AppDbContract.MovieEntry.COLUMN_POPULARITY, item.getPopularity());
     values.put(AppDbContract.MovieEntry.COLUMN_OVERVIEW, item.getOverview());
+    values.put(AppDbContract.MovieEntry.COLUMN_ORIGINAL_TITLE, item.getOriginalTitle());
+    values.put(AppDbContract.MovieEntry.COLUMN_ORIGINAL_LANGUAGE, item.getOriginalLanguage());
+    values.put(AppDbContract.MovieEntry.COLUMN_BACKDROP_PATH, item.getBackdropPath());
+    values.put(AppDbContract.MovieEntry.COLUMN_ADULT, item.isAdult() ? 1 : 0);
+    values.put(AppDbContract.MovieEntry.COLUMN_VIDEO, item.isVideo() ? 1 : 0);
     values.put(AppDbContract.MovieEntry.COLUMN_NAME_DELETE_FLAG, item.isSetDelete() ? 1 : 0);
+    values.put(AppDbContract.MovieEntry.COLUMN_FETCHED_AT, item.getFetchedAt());
     return values;
   }
 
@@ -61,7 +150,13 @@ class DataSourceLocalMovies extends DataSourceLocal<Movie> {
     long voteCount = c.getInt(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_VOTE_COUNT));
     double popularity = c.getDouble(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_POPULARITY));
     String overview = c.getString(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_OVERVIEW));
+    String originalTitle = c.getString(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_ORIGINAL_TITLE));
+    String originalLanguage = c.getString(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_ORIGINAL_LANGUAGE));
+    String backdropPath = c.getString(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_BACKDROP_PATH));
+    boolean adult = c.getInt(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_ADULT)) == 1;
+    boolean video = c.getInt(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_VIDEO)) == 1;
     boolean setDelete = c.getInt(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_NAME_DELETE_FLAG)) == 1;
+    long fetchedAt = c.getLong(c.getColumnIndexOrThrow(AppDbContract.MovieEntry.COLUMN_FETCHED_AT));
 
     Movie item = new Movie();
     item.setMovieId(id);
@@ -72,7 +167,13 @@ class DataSourceLocalMovies extends DataSourceLocal<Movie> {
     item.setVoteCount(voteCount);
     item.setPopularity(popularity);
     item.setOverview(overview);
+    item.setOriginalTitle(originalTitle);
+    item.setOriginalLanguage(originalLanguage);
+    item.setBackdropPath(backdropPath);
+    item.setAdult(adult);
+    item.setVideo(video);
     item.setDelete(setDelete);
+    item.setFetchedAt(fetchedAt);
     return item;
   }
 
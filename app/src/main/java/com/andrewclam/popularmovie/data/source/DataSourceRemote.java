@@ -5,6 +5,7 @@ import android.support.annotation.NonNull;
 import com.andrewclam.popularmovie.data.DataSource;
 import com.andrewclam.popularmovie.data.model.MovieResponse;
 import com.andrewclam.popularmovie.data.model.Entity;
+import com.andrewclam.popularmovie.data.model.Page;
 import com.google.common.base.Optional;
 
 import java.util.List;
@@ -28,11 +29,48 @@ abstract class DataSourceRemote<E extends Entity> implements DataSource<E> {
   @ApiKey
   String mApiKey;
 
+  @Inject
+  RateLimiter mRateLimiter;
+
+  @Inject
+  CircuitBreakers mCircuitBreakers;
+
+  @Inject
+  RetryWithBackoff mRetryWithBackoff;
+
+  @Inject
+  CacheRefreshInterceptor mCacheRefreshInterceptor;
+
   DataSourceRemote() { }
 
+  /**
+   * Makes an api request through the {@link CircuitBreaker} of its endpoint, once the
+   * {@link RateLimiter} grants it a permit, and retries it with backoff if it fails with a
+   * transient error. Every request of this GET-only api is idempotent and safe to retry.
+   * <p>
+   * The retries are made within the circuit, so a request only counts as a single failure once
+   * all its attempts failed, and each attempt waits for its own permit.
+   *
+   * @param endpoint name of the api endpoint, requests to the same endpoint share its circuit
+   * @param priority priority class of the request
+   * @param request  the api request, made on subscription
+   * @param <T>      type of the response
+   * @return the guarded request
+   */
+  @NonNull
+  final <T> Flowable<T> call(@NonNull String endpoint, @NonNull RateLimiter.Priority priority,
+                             @NonNull Flowable<T> request) {
+    return mCircuitBreakers.get(endpoint)
+        .guard(mRateLimiter.acquire(priority).andThen(request).retryWhen(mRetryWithBackoff));
+  }
+
+  /**
+   * The repository handles data refresh, the http cache is only kept from serving the responses
+   * it stored before the refresh
+   */
   @Override
   public final void refresh() {
-    // No implementation, repository handles data refresh
+    mCacheRefreshInterceptor.refresh();
   }
 
   @NonNull
@@ -43,6 +81,19 @@ abstract class DataSourceRemote<E extends Entity> implements DataSource<E> {
   @Override
   public abstract Flowable<List<E>> getItems();
 
+  /**
+   * Remote data is the source of truth, there is nothing to revalidate against
+   */
+  @NonNull
+  @Override
+  public final Flowable<List<E>> getItemsAndRevalidate() {
+    return getItems();
+  }
+
+  @NonNull
+  @Override
+  public abstract Flowable<Page<E>> getPage(@NonNull Map<String, String> options, int page);
+
   @NonNull
   @Override
   public abstract Flowable<Optional<E>> getItem(@NonNull String entityId);
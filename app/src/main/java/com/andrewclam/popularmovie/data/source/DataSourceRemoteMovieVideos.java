@@ -4,10 +4,14 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.andrewclam.popularmovie.data.model.Movie;
+import com.andrewclam.popularmovie.data.model.MovieDetails;
+import com.andrewclam.popularmovie.data.model.MovieResponse;
 import com.andrewclam.popularmovie.data.model.MovieVideo;
+import com.andrewclam.popularmovie.data.model.Page;
 import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -22,12 +26,15 @@ import io.reactivex.Flowable;
 @Singleton
 class DataSourceRemoteMovieVideos extends DataSourceRemote<MovieVideo> {
 
+  /**
+   * Makes the combined request for a movie's details, which appends the movie's videos
+   */
   @NonNull
-  private final MovieVideo.ServiceApi mApiService;
+  private final DataSourceRemoteMovies mMoviesDataSource;
 
   @Inject
-  DataSourceRemoteMovieVideos(@NonNull MovieVideo.ServiceApi apiService) {
-    mApiService = apiService;
+  DataSourceRemoteMovieVideos(@NonNull DataSourceRemoteMovies moviesDataSource) {
+    mMoviesDataSource = moviesDataSource;
   }
 
   @NonNull
@@ -39,11 +46,51 @@ class DataSourceRemoteMovieVideos extends DataSourceRemote<MovieVideo> {
     if (Strings.isNullOrEmpty(movieId)){
       return Flowable.error(new IllegalArgumentException("must supply a non-null movie-id argument"));
     }else {
-      return mApiService.getMovieVideos(super.mApiKey, Integer.parseInt(movieId))
-          .flatMap(response -> Flowable.just(response.getResults()));
+      // videos are only shown on the detail screen of the movie, they come with the movie's
+      // details, in one request for both
+      return mMoviesDataSource.getMovieDetails(movieId)
+          .map(details -> withIds(getVideos(details), Long.parseLong(movieId)));
     }
   }
 
+  /**
+   * @return a copy of the videos appended to the details, which are shared through the
+   * {@link MovieDetailsCache}
+   */
+  @NonNull
+  private static List<MovieVideo> getVideos(@NonNull MovieDetails details) {
+    MovieResponse<MovieVideo> videos = details.getVideos();
+    return videos == null || videos.getResults() == null
+        ? new ArrayList<>()
+        : new ArrayList<>(videos.getResults());
+  }
+
+  /**
+   * Assigns each deserialized {@link MovieVideo} its uid and the id of the {@link Movie} it
+   * belongs to, neither is populated by the converter.
+   */
+  @NonNull
+  private static List<MovieVideo> withIds(@NonNull List<MovieVideo> videos, long movieId) {
+    for (MovieVideo video : videos) {
+      video.setMovieVideoId(video.getMovieVideoId());
+      video.setMovieId(movieId);
+    }
+    return videos;
+  }
+
+  /**
+   * The api returns all the videos of a movie at once, they are served as a single page
+   */
+  @NonNull
+  @Override
+  public Flowable<Page<MovieVideo>> getPage(@NonNull Map<String, String> options, int page) {
+    if (page != Page.FIRST_PAGE) {
+      return Flowable.empty();
+    }
+    return getItems(options)
+        .map(videos -> new Page<>(Page.FIRST_PAGE, 1, videos.size(), videos));
+  }
+
   @NonNull
   @Override
   public Flowable<List<MovieVideo>> getItems() {
@@ -4,8 +4,12 @@ import android.support.annotation.NonNull;
 
 import com.andrewclam.popularmovie.data.model.MovieResponse;
 import com.andrewclam.popularmovie.data.model.Movie;
+import com.andrewclam.popularmovie.data.model.MovieDetails;
+import com.andrewclam.popularmovie.data.model.Page;
+import com.andrewclam.popularmovie.data.modelapi.MovieContract.DiscoverMoviesParam;
 import com.google.common.base.Optional;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -21,7 +25,10 @@ import retrofit2.http.QueryMap;
 
 import static com.andrewclam.popularmovie.data.modelapi.BaseContract.Paths.PATH_DISCOVER;
 import static com.andrewclam.popularmovie.data.modelapi.BaseContract.Paths.PATH_MOVIE;
+import static com.andrewclam.popularmovie.data.modelapi.BaseContract.Paths.PATH_REVIEWS;
+import static com.andrewclam.popularmovie.data.modelapi.BaseContract.Paths.PATH_VIDEO;
 import static com.andrewclam.popularmovie.data.modelapi.BaseContract.QUERY_API_KEY;
+import static com.andrewclam.popularmovie.data.modelapi.BaseContract.QUERY_APPEND_TO_RESPONSE;
 
 /**
  * Concrete Implementation of get-only of {@link DataSourceRemote<Movie>}
@@ -43,37 +50,102 @@ class DataSourceRemoteMovies extends DataSourceRemote<Movie> {
 
     @NonNull
     @GET(PATH_MOVIE + "/{movie-id}")
-    Flowable<Movie> getMovie(@Path("movie-id") @NonNull String movieId,
-                             @Query(QUERY_API_KEY) @NonNull String apiKey);
+    Flowable<MovieDetails> getMovieDetails(@Path("movie-id") @NonNull String movieId,
+                                           @Query(QUERY_API_KEY) @NonNull String apiKey,
+                                           @Query(QUERY_APPEND_TO_RESPONSE) @NonNull String append);
   }
 
+  private static final String ENDPOINT_DISCOVER = PATH_DISCOVER + "/" + PATH_MOVIE;
+
+  private static final String ENDPOINT_MOVIE = PATH_MOVIE;
+
+  /**
+   * Responses appended to a movie's details, everything the detail screen shows
+   */
+  private static final String APPEND_DETAILS = PATH_VIDEO + "," + PATH_REVIEWS;
+
   @NonNull
   private final ApiServiceMovies mApiService;
 
+  @NonNull
+  private final MovieDetailsCache mDetailsCache;
+
   @Inject
-  DataSourceRemoteMovies(@NonNull ApiServiceMovies apiService) {
+  DataSourceRemoteMovies(@NonNull ApiServiceMovies apiService,
+                         @NonNull MovieDetailsCache detailsCache) {
     mApiService = apiService;
+    mDetailsCache = detailsCache;
   }
 
   @NonNull
   @Override
   public Flowable<List<Movie>> getItems(@NonNull Map<String, String> options) {
-    return mApiService.getMovies(super.mApiKey,options)
-        .flatMap(movieResponse -> Flowable.just(movieResponse.getResults()));
+    return call(ENDPOINT_DISCOVER, RateLimiter.Priority.PAGE,
+        mApiService.getMovies(super.mApiKey, options))
+        .flatMap(movieResponse -> Flowable.just(withUids(movieResponse.getResults())));
   }
 
   @NonNull
   @Override
   public Flowable<List<Movie>> getItems() {
-    return mApiService.getMovies(super.mApiKey)
-        .flatMap(movieResponse -> Flowable.just(movieResponse.getResults()));
+    return call(ENDPOINT_DISCOVER, RateLimiter.Priority.PAGE,
+        mApiService.getMovies(super.mApiKey))
+        .flatMap(movieResponse -> Flowable.just(withUids(movieResponse.getResults())));
   }
 
-  // TODO implement get item by id from remote api
+  @NonNull
+  @Override
+  public Flowable<Page<Movie>> getPage(@NonNull Map<String, String> options, int page) {
+    Map<String, String> query = new HashMap<>(options);
+    query.put(DiscoverMoviesParam.QUERY_PAGE_KEY, String.valueOf(page));
+    // the pages past the first are loaded ahead of the user as the grid scrolls
+    RateLimiter.Priority priority = page == Page.FIRST_PAGE
+        ? RateLimiter.Priority.PAGE
+        : RateLimiter.Priority.PREFETCH;
+    return call(ENDPOINT_DISCOVER, priority, mApiService.getMovies(super.mApiKey, query))
+        .map(movieResponse -> new Page<>(page, movieResponse.getTotalPages(),
+            movieResponse.getTotalResults(), withUids(movieResponse.getResults())));
+  }
+
+  /**
+   * Gets the movie with its videos and reviews appended in a single request, the remote video
+   * source is served the videos from the {@link MovieDetailsCache} instead of its own request
+   */
   @NonNull
   @Override
   public Flowable<Optional<Movie>> getItem(@NonNull String entityId) {
-    return mApiService.getMovie(entityId,super.mApiKey).flatMap(movie ->
-        Flowable.just(Optional.of(movie)));
+    return getMovieDetails(entityId)
+        .map(details -> Optional.of(withUid(details.getMovie())));
+  }
+
+  /**
+   * Gets the details of a movie, its videos and reviews appended, from the
+   * {@link MovieDetailsCache} or in a single request
+   *
+   * @param movieId id of the movie
+   * @return the details of the movie
+   */
+  @NonNull
+  Flowable<MovieDetails> getMovieDetails(@NonNull String movieId) {
+    return mDetailsCache.get(movieId, call(ENDPOINT_MOVIE, RateLimiter.Priority.DETAIL,
+        mApiService.getMovieDetails(movieId, super.mApiKey, APPEND_DETAILS)));
+  }
+
+  /**
+   * Assigns each deserialized {@link Movie} its uid, the converter populates fields directly
+   * and bypasses {@link Movie#setMovieId(Long)}, which would otherwise set it.
+   */
+  @NonNull
+  private static List<Movie> withUids(@NonNull List<Movie> movies) {
+    for (Movie movie : movies) {
+      withUid(movie);
+    }
+    return movies;
+  }
+
+  @NonNull
+  private static Movie withUid(@NonNull Movie movie) {
+    movie.setMovieId(movie.getMovieId());
+    return movie;
   }
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.andrewclam.popularmovie.data.model.Entity;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes and decodes {@link E}s to and from a compact binary form, used to persist a
+ * {@link CacheSnapshot<E>} of the in-memory cache.
+ * <p>
+ * Sub-classes must bump their {@link #getVersion()} whenever they change the fields they write,
+ * so that snapshots written by an older version are discarded instead of being misread.
+ *
+ * @param <E> type of {@link Entity} to encode
+ */
+abstract class EntityCodec<E extends Entity> {
+
+  /**
+   * @return the version of the encoding written by this codec
+   */
+  abstract int getVersion();
+
+  /**
+   * Writes the item, its {@link Entity} fields followed by the fields written by
+   * {@link #writeFields(Entity, DataOutput)}
+   *
+   * @param item the item to encode
+   * @param out  the output to write to
+   * @throws IOException if the output can't be written
+   */
+  final void write(@NonNull E item, @NonNull DataOutput out) throws IOException {
+    out.writeUTF(item.getUid());
+    out.writeBoolean(item.isSetDelete());
+    out.writeLong(item.getFetchedAt());
+    writeFields(item, out);
+  }
+
+  /**
+   * Reads an item written by {@link #write(Entity, DataOutput)}
+   *
+   * @param in the input to read from
+   * @return the decoded item
+   * @throws IOException if the input can't be read or ends early
+   */
+  @NonNull
+  final E read(@NonNull DataInput in) throws IOException {
+    String uid = in.readUTF();
+    boolean setDelete = in.readBoolean();
+    long fetchedAt = in.readLong();
+    E item = readFields(in);
+    // set last, the setters of some fields derive the uid from them
+    item.setUid(uid);
+    item.setDelete(setDelete);
+    item.setFetchedAt(fetchedAt);
+    return item;
+  }
+
+  /**
+   * Writes the fields of the sub-class of {@link Entity}
+   */
+  abstract void writeFields(@NonNull E item, @NonNull DataOutput out) throws IOException;
+
+  /**
+   * Reads the fields written by {@link #writeFields(Entity, DataOutput)} into a new item
+   */
+  @NonNull
+  abstract E readFields(@NonNull DataInput in) throws IOException;
+
+  static void writeString(@Nullable String value, @NonNull DataOutput out) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  @Nullable
+  static String readString(@NonNull DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  static void writeLong(@Nullable Long value, @NonNull DataOutput out) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeLong(value);
+    }
+  }
+
+  @Nullable
+  static Long readLong(@NonNull DataInput in) throws IOException {
+    return in.readBoolean() ? in.readLong() : null;
+  }
+
+  static void writeDouble(@Nullable Double value, @NonNull DataOutput out) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeDouble(value);
+    }
+  }
+
+  @Nullable
+  static Double readDouble(@NonNull DataInput in) throws IOException {
+    return in.readBoolean() ? in.readDouble() : null;
+  }
+}
@@ -0,0 +1,54 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+
+import com.andrewclam.popularmovie.data.model.MovieVideo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * {@link EntityCodec} for {@link MovieVideo}s
+ */
+@Singleton
+class EntityCodecMovieVideos extends EntityCodec<MovieVideo> {
+
+  private static final int VERSION = 1;
+
+  @Inject
+  EntityCodecMovieVideos() {}
+
+  @Override
+  int getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  void writeFields(@NonNull MovieVideo item, @NonNull DataOutput out) throws IOException {
+    out.writeLong(item.getMovieId());
+    writeString(item.getMovieVideoId(), out);
+    writeString(item.getKey(), out);
+    writeString(item.getName(), out);
+    writeString(item.getSite(), out);
+    out.writeInt(item.getSize());
+    writeString(item.getType(), out);
+  }
+
+  @NonNull
+  @Override
+  MovieVideo readFields(@NonNull DataInput in) throws IOException {
+    MovieVideo item = new MovieVideo();
+    item.setMovieId(in.readLong());
+    item.setMovieVideoId(readString(in));
+    item.setKey(readString(in));
+    item.setName(readString(in));
+    item.setSite(readString(in));
+    item.setSize(in.readInt());
+    item.setType(readString(in));
+    return item;
+  }
+}
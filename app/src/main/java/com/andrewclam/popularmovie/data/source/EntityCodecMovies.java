@@ -0,0 +1,66 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+
+import com.andrewclam.popularmovie.data.model.Movie;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * {@link EntityCodec} for {@link Movie}s
+ */
+@Singleton
+class EntityCodecMovies extends EntityCodec<Movie> {
+
+  private static final int VERSION = 1;
+
+  @Inject
+  EntityCodecMovies() {}
+
+  @Override
+  int getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  void writeFields(@NonNull Movie item, @NonNull DataOutput out) throws IOException {
+    writeLong(item.getMovieId(), out);
+    writeString(item.getPosterPath(), out);
+    out.writeBoolean(item.isAdult());
+    writeString(item.getOverview(), out);
+    writeString(item.getReleaseDate(), out);
+    writeString(item.getOriginalTitle(), out);
+    writeString(item.getOriginalLanguage(), out);
+    writeString(item.getTitle(), out);
+    writeString(item.getBackdropPath(), out);
+    writeDouble(item.getPopularity(), out);
+    writeLong(item.getVoteCount(), out);
+    out.writeBoolean(item.isVideo());
+    writeDouble(item.getVoteAverage(), out);
+  }
+
+  @NonNull
+  @Override
+  Movie readFields(@NonNull DataInput in) throws IOException {
+    Movie item = new Movie();
+    item.setMovieId(readLong(in));
+    item.setPosterPath(readString(in));
+    item.setAdult(in.readBoolean());
+    item.setOverview(readString(in));
+    item.setReleaseDate(readString(in));
+    item.setOriginalTitle(readString(in));
+    item.setOriginalLanguage(readString(in));
+    item.setTitle(readString(in));
+    item.setBackdropPath(readString(in));
+    item.setPopularity(readDouble(in));
+    item.setVoteCount(readLong(in));
+    item.setVideo(in.readBoolean());
+    item.setVoteAverage(readDouble(in));
+    return item;
+  }
+}
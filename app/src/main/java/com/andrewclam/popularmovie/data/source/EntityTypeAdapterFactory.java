@@ -0,0 +1,425 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.andrewclam.popularmovie.data.model.Entity;
+import com.andrewclam.popularmovie.data.model.Movie;
+import com.andrewclam.popularmovie.data.model.MovieDetails;
+import com.andrewclam.popularmovie.data.model.MovieResponse;
+import com.andrewclam.popularmovie.data.model.MovieReview;
+import com.andrewclam.popularmovie.data.model.MovieVideo;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link TypeAdapterFactory} of hand-written streaming adapters for the remote payloads, which
+ * decode straight from the response body into {@link Entity}s without reflection. Only the
+ * fields of the models are read, any other field is skipped without being materialized. Each
+ * entity is assigned its uid as it is decoded.
+ * <p>
+ * Only decoding is streamed, encoding is delegated to the reflective adapters.
+ */
+final class EntityTypeAdapterFactory implements TypeAdapterFactory {
+
+  @Nullable
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> TypeAdapter<T> create(@NonNull Gson gson, @NonNull TypeToken<T> type) {
+    Class<? super T> rawType = type.getRawType();
+    TypeAdapter<?> adapter;
+    if (rawType == Movie.class) {
+      adapter = new MovieAdapter(gson.getDelegateAdapter(this, TypeToken.get(Movie.class)));
+    } else if (rawType == MovieVideo.class) {
+      adapter = new MovieVideoAdapter(
+          gson.getDelegateAdapter(this, TypeToken.get(MovieVideo.class)));
+    } else if (rawType == MovieResponse.class) {
+      TypeAdapter<?> delegate = gson.getDelegateAdapter(this, type);
+      TypeAdapter<?> resultAdapter = gson.getAdapter(TypeToken.get(getResultsType(type.getType())));
+      adapter = new MovieResponseAdapter<>((TypeAdapter<MovieResponse<Entity>>) delegate,
+          (TypeAdapter<Entity>) resultAdapter);
+    } else if (rawType == MovieReview.class) {
+      adapter = new MovieReviewAdapter(
+          gson.getDelegateAdapter(this, TypeToken.get(MovieReview.class)));
+    } else if (rawType == MovieDetails.class) {
+      adapter = new MovieDetailsAdapter(
+          gson.getDelegateAdapter(this, TypeToken.get(MovieDetails.class)),
+          gson.getAdapter(new TypeToken<MovieResponse<MovieVideo>>() {}),
+          gson.getAdapter(new TypeToken<MovieResponse<MovieReview>>() {}));
+    } else if (rawType == MovieVideo.Response.class) {
+      adapter = new MovieVideoResponseAdapter(
+          gson.getDelegateAdapter(this, TypeToken.get(MovieVideo.Response.class)),
+          gson.getAdapter(MovieVideo.class));
+    } else {
+      return null;
+    }
+    return (TypeAdapter<T>) adapter.nullSafe();
+  }
+
+  @NonNull
+  private static Type getResultsType(@NonNull Type responseType) {
+    if (responseType instanceof ParameterizedType) {
+      Type resultsType = ((ParameterizedType) responseType).getActualTypeArguments()[0];
+      if (resultsType instanceof Class) {
+        return resultsType;
+      }
+    }
+    return Entity.class;
+  }
+
+  @Nullable
+  private static String nextStringOrNull(@NonNull JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextString();
+  }
+
+  @Nullable
+  private static Double nextDoubleOrNull(@NonNull JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextDouble();
+  }
+
+  @Nullable
+  private static Long nextLongOrNull(@NonNull JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextLong();
+  }
+
+  private static boolean nextBooleanOrFalse(@NonNull JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return false;
+    }
+    return in.nextBoolean();
+  }
+
+  private static int nextIntOrZero(@NonNull JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return 0;
+    }
+    return in.nextInt();
+  }
+
+  /**
+   * Reads a json array of entities one at a time, straight into the list
+   */
+  @NonNull
+  private static <E extends Entity> List<E> readResults(@NonNull JsonReader in,
+                                                        @NonNull TypeAdapter<E> adapter)
+      throws IOException {
+    List<E> results = new ArrayList<>();
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return results;
+    }
+    in.beginArray();
+    while (in.hasNext()) {
+      E item = adapter.read(in);
+      if (item != null) {
+        results.add(item);
+      }
+    }
+    in.endArray();
+    return results;
+  }
+
+  /**
+   * Base of the streaming adapters, delegates encoding to the reflective adapter
+   */
+  private abstract static class StreamingAdapter<T> extends TypeAdapter<T> {
+
+    @NonNull
+    private final TypeAdapter<T> mDelegate;
+
+    StreamingAdapter(@NonNull TypeAdapter<T> delegate) {
+      mDelegate = delegate;
+    }
+
+    @Override
+    public final void write(JsonWriter out, T value) throws IOException {
+      mDelegate.write(out, value);
+    }
+  }
+
+  private static final class MovieAdapter extends StreamingAdapter<Movie> {
+
+    MovieAdapter(@NonNull TypeAdapter<Movie> delegate) {
+      super(delegate);
+    }
+
+    @Override
+    public Movie read(JsonReader in) throws IOException {
+      Movie movie = new Movie();
+      in.beginObject();
+      while (in.hasNext()) {
+        readField(in, in.nextName(), movie);
+      }
+      in.endObject();
+      return movie;
+    }
+
+    /**
+     * Reads the value of a field of a movie object, skips it if the field is not part of the model
+     */
+    static void readField(@NonNull JsonReader in, @NonNull String name, @NonNull Movie movie)
+        throws IOException {
+      switch (name) {
+        case "id":
+          // also sets the uid
+          movie.setMovieId(nextLongOrNull(in));
+          break;
+        case "poster_path":
+          movie.setPosterPath(nextStringOrNull(in));
+          break;
+        case "adult":
+          movie.setAdult(nextBooleanOrFalse(in));
+          break;
+        case "overview":
+          movie.setOverview(nextStringOrNull(in));
+          break;
+        case "release_date":
+          movie.setReleaseDate(nextStringOrNull(in));
+          break;
+        case "original_title":
+          movie.setOriginalTitle(nextStringOrNull(in));
+          break;
+        case "original_language":
+          movie.setOriginalLanguage(nextStringOrNull(in));
+          break;
+        case "title":
+          movie.setTitle(nextStringOrNull(in));
+          break;
+        case "backdrop_path":
+          movie.setBackdropPath(nextStringOrNull(in));
+          break;
+        case "popularity":
+          movie.setPopularity(nextDoubleOrNull(in));
+          break;
+        case "vote_count":
+          movie.setVoteCount(nextLongOrNull(in));
+          break;
+        case "video":
+          movie.setVideo(nextBooleanOrFalse(in));
+          break;
+        case "vote_average":
+          movie.setVoteAverage(nextDoubleOrNull(in));
+          break;
+        default:
+          // e.g. genre_ids, not part of the model
+          in.skipValue();
+      }
+    }
+  }
+
+  private static final class MovieVideoAdapter extends StreamingAdapter<MovieVideo> {
+
+    MovieVideoAdapter(@NonNull TypeAdapter<MovieVideo> delegate) {
+      super(delegate);
+    }
+
+    @Override
+    public MovieVideo read(JsonReader in) throws IOException {
+      MovieVideo video = new MovieVideo();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "id":
+            // also sets the uid
+            video.setMovieVideoId(nextStringOrNull(in));
+            break;
+          case "key":
+            video.setKey(nextStringOrNull(in));
+            break;
+          case "name":
+            video.setName(nextStringOrNull(in));
+            break;
+          case "site":
+            video.setSite(nextStringOrNull(in));
+            break;
+          case "size":
+            video.setSize(nextIntOrZero(in));
+            break;
+          case "type":
+            video.setType(nextStringOrNull(in));
+            break;
+          default:
+            // e.g. iso_639_1 and iso_3166_1, not part of the model
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return video;
+    }
+  }
+
+  private static final class MovieReviewAdapter extends StreamingAdapter<MovieReview> {
+
+    MovieReviewAdapter(@NonNull TypeAdapter<MovieReview> delegate) {
+      super(delegate);
+    }
+
+    @Override
+    public MovieReview read(JsonReader in) throws IOException {
+      MovieReview review = new MovieReview();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "id":
+            // also sets the uid
+            review.setUserReviewId(nextStringOrNull(in));
+            break;
+          case "author":
+            review.setAuthor(nextStringOrNull(in));
+            break;
+          case "content":
+            review.setContent(nextStringOrNull(in));
+            break;
+          case "url":
+            review.setUrl(nextStringOrNull(in));
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return review;
+    }
+  }
+
+  /**
+   * Reads the movie fields at the root of the response into its {@link Movie}, and the appended
+   * responses into their lists
+   */
+  private static final class MovieDetailsAdapter extends StreamingAdapter<MovieDetails> {
+
+    @NonNull
+    private final TypeAdapter<MovieResponse<MovieVideo>> mVideosAdapter;
+
+    @NonNull
+    private final TypeAdapter<MovieResponse<MovieReview>> mReviewsAdapter;
+
+    MovieDetailsAdapter(@NonNull TypeAdapter<MovieDetails> delegate,
+                        @NonNull TypeAdapter<MovieResponse<MovieVideo>> videosAdapter,
+                        @NonNull TypeAdapter<MovieResponse<MovieReview>> reviewsAdapter) {
+      super(delegate);
+      mVideosAdapter = videosAdapter;
+      mReviewsAdapter = reviewsAdapter;
+    }
+
+    @Override
+    public MovieDetails read(JsonReader in) throws IOException {
+      MovieDetails details = new MovieDetails();
+      Movie movie = new Movie();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        switch (name) {
+          case "videos":
+            details.setVideos(mVideosAdapter.read(in));
+            break;
+          case "reviews":
+            details.setReviews(mReviewsAdapter.read(in));
+            break;
+          default:
+            MovieAdapter.readField(in, name, movie);
+        }
+      }
+      in.endObject();
+      details.setMovie(movie);
+      return details;
+    }
+  }
+
+  private static final class MovieResponseAdapter<E extends Entity>
+      extends StreamingAdapter<MovieResponse<E>> {
+
+    @NonNull
+    private final TypeAdapter<E> mResultAdapter;
+
+    MovieResponseAdapter(@NonNull TypeAdapter<MovieResponse<E>> delegate,
+                         @NonNull TypeAdapter<E> resultAdapter) {
+      super(delegate);
+      mResultAdapter = resultAdapter;
+    }
+
+    @Override
+    public MovieResponse<E> read(JsonReader in) throws IOException {
+      MovieResponse<E> response = new MovieResponse<>();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "page":
+            response.setPage(nextIntOrZero(in));
+            break;
+          case "total_results":
+            response.setTotalResults(nextIntOrZero(in));
+            break;
+          case "total_pages":
+            response.setTotalPages(nextIntOrZero(in));
+            break;
+          case "results":
+            response.setResults(readResults(in, mResultAdapter));
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return response;
+    }
+  }
+
+  private static final class MovieVideoResponseAdapter
+      extends StreamingAdapter<MovieVideo.Response> {
+
+    @NonNull
+    private final TypeAdapter<MovieVideo> mResultAdapter;
+
+    MovieVideoResponseAdapter(@NonNull TypeAdapter<MovieVideo.Response> delegate,
+                              @NonNull TypeAdapter<MovieVideo> resultAdapter) {
+      super(delegate);
+      mResultAdapter = resultAdapter;
+    }
+
+    @Override
+    public MovieVideo.Response read(JsonReader in) throws IOException {
+      MovieVideo.Response response = new MovieVideo.Response();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "id":
+            response.setMovieVideoResponseId(nextIntOrZero(in));
+            break;
+          case "results":
+            response.setResults(readResults(in, mResultAdapter));
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return response;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import com.andrewclam.popularmovie.data.model.MovieDetails;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.reactivex.Flowable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Short-lived cache of the combined {@link MovieDetails} responses, which carry a movie together
+ * with its videos and reviews. Opening a movie asks the remote movie and video sources for their
+ * part of it at about the same time, the first to ask makes the single combined request, and the
+ * other is served its response from here, or joins it while it is in flight.
+ * <p>
+ * Responses are only kept for a minute, long enough to hand them over to the sibling sources of
+ * the same screen, the repositories cache the entities themselves.
+ * <p>
+ * This class is safe to use from multiple threads.
+ */
+@Singleton
+final class MovieDetailsCache {
+
+  private static final long EXPIRE_AFTER_WRITE_SECONDS = 60;
+
+  private static final long MAX_SIZE = 20;
+
+  @NonNull
+  private final Cache<String, MovieDetails> mDetails;
+
+  @NonNull
+  private final SingleFlight<MovieDetails> mRequests = new SingleFlight<>();
+
+  @Inject
+  MovieDetailsCache() {
+    this(Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  MovieDetailsCache(@NonNull Ticker ticker) {
+    mDetails = CacheBuilder.newBuilder()
+        .ticker(checkNotNull(ticker))
+        .expireAfterWrite(EXPIRE_AFTER_WRITE_SECONDS, TimeUnit.SECONDS)
+        .maximumSize(MAX_SIZE)
+        .build();
+  }
+
+  /**
+   * Gets the details of a movie from the cache, joins the request in flight for them, or makes
+   * the request and caches its response
+   *
+   * @param movieId id of the movie
+   * @param request the combined request for the movie's details, made on subscription if needed
+   * @return the details of the movie
+   */
+  @NonNull
+  Flowable<MovieDetails> get(@NonNull String movieId, @NonNull Flowable<MovieDetails> request) {
+    checkNotNull(movieId);
+    checkNotNull(request);
+    return Flowable.defer(() -> {
+      MovieDetails cached = mDetails.getIfPresent(movieId);
+      if (cached != null) {
+        return Flowable.just(cached);
+      }
+      return mRequests.share(movieId,
+          () -> request.doOnNext(details -> mDetails.put(movieId, details)));
+    });
+  }
+}
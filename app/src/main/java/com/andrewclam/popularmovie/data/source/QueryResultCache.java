@@ -0,0 +1,170 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.andrewclam.popularmovie.data.model.Entity;
+import com.andrewclam.popularmovie.data.model.Page;
+import com.google.common.base.Joiner;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * In-memory cache of query results, maps a set of query options to the ordered uids of the
+ * {@link E}s the query returned, or for paged queries, the options and page number to the
+ * {@link Page} of ordered uids. The items themselves are kept in the {@link Repository<E>}'s
+ * entity cache, so each item is held only once no matter how many queries returned it.
+ * <p>
+ * Each result expires on its own, a fixed time after it was stored. This class is safe to use
+ * from multiple threads.
+ *
+ * @param <E> type of {@link Entity} the queries return
+ */
+final class QueryResultCache<E extends Entity> {
+
+  private static final Joiner.MapJoiner OPTIONS_JOINER =
+      Joiner.on('&').useForNull("").withKeyValueSeparator("=");
+
+  @NonNull
+  private final Cache<String, List<String>> mResults;
+
+  @NonNull
+  private final Cache<String, Page<String>> mPages;
+
+  QueryResultCache(long maxEntries, long ttl, @NonNull TimeUnit ttlUnit, @NonNull Ticker ticker) {
+    mResults = CacheBuilder.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterWrite(ttl, checkNotNull(ttlUnit))
+        .ticker(checkNotNull(ticker))
+        .build();
+    mPages = CacheBuilder.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterWrite(ttl, ttlUnit)
+        .ticker(ticker)
+        .build();
+  }
+
+  /**
+   * Gets the uids of the items last returned for the query options
+   *
+   * @param options query options, in any order
+   * @return the ordered uids, or null if the query was not cached or its result expired
+   */
+  @Nullable
+  List<String> get(@NonNull Map<String, String> options) {
+    return mResults.getIfPresent(toKey(options));
+  }
+
+  /**
+   * Stores the result of a query, replaces any previous result for the same options
+   *
+   * @param options query options, in any order
+   * @param items   the items the query returned, in order
+   */
+  void put(@NonNull Map<String, String> options, @NonNull List<E> items) {
+    mResults.put(toKey(options), toUids(items));
+  }
+
+  /**
+   * Gets the page of uids of the items last returned for the page of the query options
+   *
+   * @param options query options, in any order
+   * @param number  page number
+   * @return the page of ordered uids, or null if the page was not cached or it expired
+   */
+  @Nullable
+  Page<String> getPage(@NonNull Map<String, String> options, int number) {
+    return mPages.getIfPresent(toPageKey(options, number));
+  }
+
+  /**
+   * Stores a page of the result of a query, replaces any previous page with the same number
+   *
+   * @param options query options, in any order
+   * @param page    the page the query returned
+   */
+  void putPage(@NonNull Map<String, String> options, @NonNull Page<E> page) {
+    mPages.put(toPageKey(options, page.getNumber()), new Page<>(page.getNumber(),
+        page.getTotalPages(), page.getTotalResults(), toUids(page.getItems())));
+  }
+
+  /**
+   * Removes a page of the result of a query
+   *
+   * @param options query options, in any order
+   * @param number  page number
+   */
+  void invalidatePage(@NonNull Map<String, String> options, int number) {
+    mPages.invalidate(toPageKey(options, number));
+  }
+
+  /**
+   * Removes the result of a query, for example when one of its items is no longer cached
+   *
+   * @param options query options, in any order
+   */
+  void invalidate(@NonNull Map<String, String> options) {
+    mResults.invalidate(toKey(options));
+  }
+
+  /**
+   * Removes all the cached query results
+   */
+  void invalidateAll() {
+    mResults.invalidateAll();
+    mPages.invalidateAll();
+  }
+
+  /**
+   * @return the number of query results and pages currently held, including any not yet
+   * cleaned up
+   */
+  @VisibleForTesting
+  long size() {
+    return mResults.size() + mPages.size();
+  }
+
+  @NonNull
+  private List<String> toUids(@NonNull List<E> items) {
+    ImmutableList.Builder<String> uids = ImmutableList.builder();
+    for (E item : items) {
+      uids.add(item.getUid());
+    }
+    return uids.build();
+  }
+
+  /**
+   * Normalizes the query options into a key that doesn't depend on their iteration order,
+   * e.g. both {@code {sort_by=popular, page=1}} and {@code {page=1, sort_by=popular}} map to
+   * {@code "page=1&sort_by=popular"}
+   *
+   * @param options query options, in any order
+   * @return the normalized key
+   */
+  @NonNull
+  static String toKey(@NonNull Map<String, String> options) {
+    return OPTIONS_JOINER.join(new TreeMap<>(checkNotNull(options)));
+  }
+
+  /**
+   * Normalizes the query options and page number into a key, e.g. {@code "sort_by=popular#2"}
+   *
+   * @param options query options, in any order
+   * @param number  page number
+   * @return the normalized key
+   */
+  @NonNull
+  static String toPageKey(@NonNull Map<String, String> options, int number) {
+    return toKey(options) + "#" + number;
+  }
+}
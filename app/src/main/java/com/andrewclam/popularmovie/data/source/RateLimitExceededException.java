@@ -0,0 +1,14 @@
+package com.andrewclam.popularmovie.data.source;
+
+import java.io.IOException;
+
+/**
+ * Signals that a remote request was shed by the client side rate limiter instead of being made,
+ * callers may simply ask again later, e.g. when the user scrolls on.
+ */
+public final class RateLimitExceededException extends IOException {
+
+  RateLimitExceededException() {
+    super("Request shed by the rate limiter");
+  }
+}
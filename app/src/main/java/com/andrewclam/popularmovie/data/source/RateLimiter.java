@@ -0,0 +1,312 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Token bucket that paces the requests to the remote api below its rate limit, so that prefetching
+ * and paging don't run the api key into 429 responses.
+ * <p>
+ * The bucket holds up to a burst of permits and refills at a steady rate. A request that finds
+ * the bucket empty waits in the queue of its {@link Priority}, queued requests are granted permits
+ * in priority order, and first come first served within a priority. Prefetch requests are shed
+ * with a {@link RateLimitExceededException} instead of queueing behind more than a few others.
+ * When the api answers with a {@code Retry-After}, no permits are granted until it passed.
+ * <p>
+ * This class is safe to use from multiple threads.
+ */
+final class RateLimiter {
+
+  /**
+   * Priority classes of remote requests, in the order they are granted permits
+   */
+  enum Priority {
+    /**
+     * Content of the screen the user is looking at, e.g. a movie's details
+     */
+    DETAIL,
+    /**
+     * Pages of the movie grid the user asked for
+     */
+    PAGE,
+    /**
+     * Pages loaded ahead of the user, the first to be shed
+     */
+    PREFETCH
+  }
+
+  /**
+   * Prefetch requests queued at most, further prefetches are shed while the bucket is empty
+   */
+  private static final int MAX_QUEUED_PREFETCHES = 2;
+
+  private final int mBurst;
+
+  private final double mPermitsPerMilli;
+
+  @NonNull
+  private final Scheduler mScheduler;
+
+  /**
+   * Waiting requests, one queue per {@link Priority}, guarded by this
+   */
+  @NonNull
+  private final List<ArrayDeque<Waiter>> mQueues = new ArrayList<>();
+
+  private double mPermits;
+
+  private long mLastRefillMillis;
+
+  /**
+   * Time until which no permits are granted, as asked by the api with a {@code Retry-After}
+   */
+  private long mPausedUntilMillis;
+
+  /**
+   * Delayed grant scheduled for the waiting requests, guarded by this
+   */
+  @Nullable
+  private Disposable mScheduledGrant;
+
+  private long mGrantedCount;
+
+  private long mShedCount;
+
+  private long mTotalWaitMillis;
+
+  private long mMaxWaitMillis;
+
+  /**
+   * @param burst            permits the bucket holds at most, requests made at once without waiting
+   * @param permitsPerSecond steady rate the bucket refills at
+   * @param scheduler        source of the current time, and runs the delayed grants
+   */
+  RateLimiter(int burst, double permitsPerSecond, @NonNull Scheduler scheduler) {
+    checkArgument(burst > 0, "burst must be positive");
+    checkArgument(permitsPerSecond > 0, "permitsPerSecond must be positive");
+    mBurst = burst;
+    mPermitsPerMilli = permitsPerSecond / 1000;
+    mScheduler = checkNotNull(scheduler);
+    mPermits = burst;
+    mLastRefillMillis = now();
+    for (int i = 0; i < Priority.values().length; i++) {
+      mQueues.add(new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * Gets a {@link Completable} that completes once a permit is granted to the subscriber, the
+   * request should be made after it completes. Disposing it before then leaves the queue.
+   *
+   * @param priority priority class of the request
+   * @return a completable that completes when the request may be made, or errors with a
+   * {@link RateLimitExceededException} if the request was shed
+   */
+  @NonNull
+  Completable acquire(@NonNull Priority priority) {
+    checkNotNull(priority);
+    return Completable.create(emitter -> {
+      Waiter waiter = new Waiter(emitter, now());
+      boolean shed;
+      synchronized (this) {
+        ArrayDeque<Waiter> queue = mQueues.get(priority.ordinal());
+        shed = priority == Priority.PREFETCH && queue.size() >= MAX_QUEUED_PREFETCHES;
+        if (shed) {
+          mShedCount++;
+        } else {
+          queue.add(waiter);
+        }
+      }
+      if (shed) {
+        emitter.onError(new RateLimitExceededException());
+        return;
+      }
+      emitter.setCancellable(() -> leave(priority, waiter));
+      grant();
+    });
+  }
+
+  /**
+   * Stops granting permits for a while, e.g. as asked by the api with a {@code Retry-After}
+   *
+   * @param delay time to stop granting permits for
+   * @param unit  unit of the delay
+   */
+  void pause(long delay, @NonNull TimeUnit unit) {
+    synchronized (this) {
+      mPausedUntilMillis = Math.max(mPausedUntilMillis, now() + unit.toMillis(delay));
+      // the bucket holds a single permit and only refills from the end of the pause, so one
+      // request goes out when the pause ends and the others follow at the refill rate
+      mPermits = 1;
+      mLastRefillMillis = mPausedUntilMillis;
+      cancelScheduledGrant();
+    }
+    grant();
+  }
+
+  /**
+   * @return the number of requests waiting for a permit, in all priority classes
+   */
+  synchronized int getQueueDepth() {
+    int depth = 0;
+    for (ArrayDeque<Waiter> queue : mQueues) {
+      depth += queue.size();
+    }
+    return depth;
+  }
+
+  /**
+   * @param priority priority class of the requests
+   * @return the number of requests of the priority class waiting for a permit
+   */
+  synchronized int getQueueDepth(@NonNull Priority priority) {
+    return mQueues.get(priority.ordinal()).size();
+  }
+
+  /**
+   * @return the number of requests granted a permit
+   */
+  synchronized long getGrantedCount() {
+    return mGrantedCount;
+  }
+
+  /**
+   * @return the number of prefetch requests shed instead of queued
+   */
+  synchronized long getShedCount() {
+    return mShedCount;
+  }
+
+  /**
+   * @return the average time a granted request waited for its permit, in milliseconds
+   */
+  synchronized double getAverageWaitMillis() {
+    return mGrantedCount == 0 ? 0 : (double) mTotalWaitMillis / mGrantedCount;
+  }
+
+  /**
+   * @return the longest time a granted request waited for its permit, in milliseconds
+   */
+  synchronized long getMaxWaitMillis() {
+    return mMaxWaitMillis;
+  }
+
+  /**
+   * Grants the available permits to the waiting requests in priority order, and schedules another
+   * grant for when the next permit is available if requests are left waiting
+   */
+  private void grant() {
+    List<Waiter> granted = new ArrayList<>();
+    synchronized (this) {
+      long now = now();
+      refill(now);
+      Waiter waiter;
+      while (now >= mPausedUntilMillis && mPermits >= 1 && (waiter = poll()) != null) {
+        mPermits--;
+        long waitMillis = now - waiter.mQueuedAtMillis;
+        mGrantedCount++;
+        mTotalWaitMillis += waitMillis;
+        mMaxWaitMillis = Math.max(mMaxWaitMillis, waitMillis);
+        granted.add(waiter);
+      }
+
+      if (mScheduledGrant == null && hasWaiters()) {
+        long delayMillis = Math.max(mPausedUntilMillis - now,
+            (long) Math.ceil((1 - mPermits) / mPermitsPerMilli));
+        mScheduledGrant = mScheduler.scheduleDirect(() -> {
+          synchronized (this) {
+            mScheduledGrant = null;
+          }
+          grant();
+        }, Math.max(delayMillis, 1), TimeUnit.MILLISECONDS);
+      }
+    }
+
+    // completes outside the lock, subscribers make their request right away
+    for (Waiter waiter : granted) {
+      waiter.mEmitter.onComplete();
+    }
+  }
+
+  private void refill(long now) {
+    // nothing accrues before the last refill, which lies ahead while paused
+    if (now > mLastRefillMillis) {
+      mPermits = Math.min(mBurst, mPermits + (now - mLastRefillMillis) * mPermitsPerMilli);
+      mLastRefillMillis = now;
+    }
+  }
+
+  @Nullable
+  private Waiter poll() {
+    for (ArrayDeque<Waiter> queue : mQueues) {
+      Waiter waiter = queue.poll();
+      if (waiter != null) {
+        return waiter;
+      }
+    }
+    return null;
+  }
+
+  private boolean hasWaiters() {
+    for (ArrayDeque<Waiter> queue : mQueues) {
+      if (!queue.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private synchronized void leave(@NonNull Priority priority, @NonNull Waiter waiter) {
+    Iterator<Waiter> waiters = mQueues.get(priority.ordinal()).iterator();
+    while (waiters.hasNext()) {
+      if (waiters.next() == waiter) {
+        waiters.remove();
+        break;
+      }
+    }
+    if (!hasWaiters()) {
+      cancelScheduledGrant();
+    }
+  }
+
+  private void cancelScheduledGrant() {
+    if (mScheduledGrant != null) {
+      mScheduledGrant.dispose();
+      mScheduledGrant = null;
+    }
+  }
+
+  private long now() {
+    return mScheduler.now(TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * A request waiting for a permit
+   */
+  private static final class Waiter {
+
+    @NonNull
+    final CompletableEmitter mEmitter;
+
+    final long mQueuedAtMillis;
+
+    Waiter(@NonNull CompletableEmitter emitter, long queuedAtMillis) {
+      mEmitter = emitter;
+      mQueuedAtMillis = queuedAtMillis;
+    }
+  }
+}
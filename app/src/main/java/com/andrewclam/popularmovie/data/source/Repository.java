@@ -6,17 +6,29 @@ import android.support.annotation.VisibleForTesting;
 
 import com.andrewclam.popularmovie.data.DataSource;
 import com.andrewclam.popularmovie.data.model.Entity;
+import com.andrewclam.popularmovie.data.model.Page;
+import com.andrewclam.popularmovie.util.schedulers.BaseSchedulerProvider;
+import com.andrewclam.popularmovie.util.schedulers.ImmediateSchedulerProvider;
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import io.reactivex.Completable;
 import io.reactivex.Flowable;
+import retrofit2.HttpException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -34,10 +46,36 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * For simplicity, this implements a synchronization between locally persisted data and data
  * obtained from the remote server(s), by using the remote data source(s) only if the data from the
  * local data source doesn't exist or is empty. Results are cached in memory for even faster
- * retrieval during usage.
+ * retrieval during usage, the in-memory cache is bounded by the budget set in the
+ * {@link RepositoryConfig<E>} and evicts the least recently used items first. Results of queries
+ * with options are cached as well, as ordered uids pointing into the same in-memory cache, and so
+ * is each page of a paged query, which is loaded page by page from the local data source first
+ * and revalidated against the remote data source like {@link #getItemsAndRevalidate()}.
+ * Identical requests made while one is already loading share its result instead of loading again.
+ * <p>
+ * Items fetched from the remote data source are stamped with their fetch time. Cached or local
+ * items are served without going to the network for as long as they are fresh, as set by the
+ * freshness ttl of the {@link RepositoryConfig<E>}, or until {@link #refresh()} is called.
+ * <p>
+ * Mutations are written through to the local and remote data sources, or if write-behind is
+ * enabled in the {@link RepositoryConfig<E>}, applied in memory right away and written behind in
+ * batches. Pending mutations are flushed when the app moves to the background.
+ * <p>
+ * If a {@link CacheSnapshot<E>} is set in the {@link RepositoryConfig<E>}, the in-memory cache is
+ * persisted to it when the app moves to the background, and restored from it by the first load
+ * after a cold start, before the local data source is queried.
+ * <p>
+ * This class is safe to use from multiple threads, the in-memory cache is lock-striped and the
+ * remaining shared state is either guarded by its own lock or published through volatile fields.
  */
 @Singleton
-class Repository<E extends Entity> implements DataSource<E> {
+class Repository<E extends Entity> implements DataSource<E>, RepositoryLifecycle {
+
+  /**
+   * Number of lock-striped segments of the in-memory cache, sized for the io and computation
+   * threads that load items in parallel.
+   */
+  private static final int CACHE_CONCURRENCY_LEVEL = 4;
 
   @NonNull
   private final DataSource<E> mRemoteDataSource;
@@ -45,21 +83,114 @@ class Repository<E extends Entity> implements DataSource<E> {
   @NonNull
   private final DataSource<E> mLocalDataSource;
 
+  @NonNull
+  private final BaseSchedulerProvider mSchedulerProvider;
+
   /**
+   * Bounded in-memory cache of items keyed by their uid, records hit, miss and eviction counts.
    * This variable has package local visibility so it can be accessed from tests.
    */
   @VisibleForTesting
   @NonNull
+  final Cache<String, E> mCache;
+
+  /**
+   * Live {@link Map} view of the {@link #mCache}, reads through this view are not recorded in the
+   * cache stats. This variable has package local visibility so it can be accessed from tests.
+   */
+  @VisibleForTesting
+  @NonNull
   final Map<String, E> mCachedItems;
 
+  /**
+   * Uids of the complete collection of items, in the order they were loaded. The {@link #mCache}
+   * doesn't keep insertion order and may evict any of these items to stay within its budget.
+   * Guarded by itself.
+   */
+  @NonNull
+  private final Set<String> mCachedUids;
+
+  /**
+   * Negative cache of uids that were missing from both the local and remote data sources, the
+   * value is unused. Records hit and miss counts. Its entries expire on their own and are kept
+   * across {@link #refresh()}, an id the api didn't know a moment ago is not looked up again.
+   */
+  @NonNull
+  private final Cache<String, Boolean> mMissingItems;
+
+  /**
+   * Results of {@link #getItems(Map)} and {@link #getPage(Map, int)}, keyed by their normalized
+   * options and page number
+   */
+  @NonNull
+  private final QueryResultCache<E> mQueryResults;
+
+  /**
+   * In-flight loads of item lists, keyed by the request and the refresh state it was made in
+   */
+  @NonNull
+  private final SingleFlight<List<E>> mItemsRequests = new SingleFlight<>();
+
+  /**
+   * In-flight loads of single items, keyed by the item uid
+   */
+  @NonNull
+  private final SingleFlight<Optional<E>> mItemRequests = new SingleFlight<>();
+
+  /**
+   * In-flight loads of pages, keyed by the query, page number and the refresh state it was made in
+   */
+  @NonNull
+  private final SingleFlight<Page<E>> mPageRequests = new SingleFlight<>();
+
   /**
    * Marks the cache as invalid, to force an update the next time data is requested. This variable
    * has package local visibility so it can be accessed from tests.
    * Note: default set flag to false, so at init (with mCachedItems empty),
    * repository will always try local-first
+   * <p>
+   * Written only while holding {@link #mRefreshLock}, volatile so reads don't need the lock.
    */
   @VisibleForTesting
-  boolean mCacheIsDirty = false;
+  volatile boolean mCacheIsDirty = false;
+
+  /**
+   * Guards {@link #mCacheIsDirty} writes together with {@link #mRefreshCount}
+   */
+  @NonNull
+  private final Object mRefreshLock = new Object();
+
+  /**
+   * Number of times {@link #refresh()} was called, a remote load only marks the cache clean if
+   * no other refresh was requested after the load started. Guarded by {@link #mRefreshLock}.
+   */
+  private long mRefreshCount = 0;
+
+  /**
+   * Time an item stays fresh after it was fetched, or {@link RepositoryConfig#NEVER_STALE}
+   */
+  private final long mFreshnessTtlMillis;
+
+  @NonNull
+  private final Clock mClock;
+
+  /**
+   * Pending mutations to write behind, or null if mutations are written through
+   */
+  @Nullable
+  private final WriteBehindQueue<E> mWriteBehindQueue;
+
+  /**
+   * Persisted copy of the in-memory cache, or null if the cache is not persisted
+   */
+  @Nullable
+  private final CacheSnapshot<E> mSnapshot;
+
+  /**
+   * Whether the {@link #mSnapshot} was already restored or discarded, it is read at most once
+   */
+  @NonNull
+  private final AtomicBoolean mSnapshotRestored = new AtomicBoolean(false);
 
   /**
    * By marking the constructor with {@code @Inject}, Dagger will try to inject the dependencies
@@ -73,13 +204,105 @@ class Repository<E extends Entity> implements DataSource<E> {
    * Dagger strictly enforces that arguments not marked with {@code @Nullable} are not injected
    * with {@code @Nullable} values.
    */
-  @VisibleForTesting
   @Inject
   Repository(@NonNull @Remote DataSource<E> remoteDataSource,
-             @NonNull @Local DataSource<E> localDataSource) {
+             @NonNull @Local DataSource<E> localDataSource,
+             @NonNull RepositoryConfig<E> config,
+             @NonNull BaseSchedulerProvider schedulerProvider) {
     mRemoteDataSource = checkNotNull(remoteDataSource, "remoteDataSource can't be null!");
     mLocalDataSource = checkNotNull(localDataSource, "localDataSource can't be null!");
-    mCachedItems = new LinkedHashMap<>();
+    mSchedulerProvider = checkNotNull(schedulerProvider, "schedulerProvider can't be null!");
+    mCache = buildCache(checkNotNull(config, "config can't be null!"));
+    mCachedItems = mCache.asMap();
+    mCachedUids = new LinkedHashSet<>();
+    mMissingItems = CacheBuilder.newBuilder()
+        .concurrencyLevel(CACHE_CONCURRENCY_LEVEL)
+        .maximumSize(config.getMaxMissingItems())
+        .expireAfterWrite(config.getMissingItemTtlMillis(), TimeUnit.MILLISECONDS)
+        .ticker(config.getTicker())
+        .recordStats()
+        .build();
+    mQueryResults = new QueryResultCache<>(config.getMaxQueryResults(),
+        config.getQueryResultTtlMillis(), TimeUnit.MILLISECONDS, config.getTicker());
+    mFreshnessTtlMillis = config.getFreshnessTtlMillis();
+    mClock = config.getClock();
+    mWriteBehindQueue = config.isWriteBehind()
+        ? new WriteBehindQueue<>(mLocalDataSource, mRemoteDataSource, mSchedulerProvider.io(),
+            config.getWriteBehindDelayMillis(), config.getMaxPendingWrites())
+        : null;
+    mSnapshot = config.getSnapshot();
+  }
+
+  /**
+   * Creates a {@link Repository<E>} with the default {@link RepositoryConfig<E>} that writes to
+   * the local data source synchronously
+   */
+  @VisibleForTesting
+  Repository(@NonNull DataSource<E> remoteDataSource, @NonNull DataSource<E> localDataSource) {
+    this(remoteDataSource, localDataSource, new RepositoryConfig.Builder<E>().build());
+  }
+
+  /**
+   * Creates a {@link Repository<E>} that writes to the local data source synchronously
+   */
+  @VisibleForTesting
+  Repository(@NonNull DataSource<E> remoteDataSource, @NonNull DataSource<E> localDataSource,
+             @NonNull RepositoryConfig<E> config) {
+    this(remoteDataSource, localDataSource, config, new ImmediateSchedulerProvider());
+  }
+
+  @NonNull
+  private Cache<String, E> buildCache(@NonNull RepositoryConfig<E> config) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+        .concurrencyLevel(CACHE_CONCURRENCY_LEVEL)
+        .recordStats();
+
+    if (config.getMaxCacheEntries() != RepositoryConfig.UNBOUNDED) {
+      builder.maximumSize(config.getMaxCacheEntries());
+    } else if (config.getMaxCacheWeightBytes() != RepositoryConfig.UNBOUNDED) {
+      builder.maximumWeight(config.getMaxCacheWeightBytes())
+          .weigher((String uid, E item) -> item.getEstimatedSize());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Gets a snapshot of the in-memory cache's hit, miss and eviction counters
+   *
+   * @return cache statistics accumulated since this {@link Repository<E>} was created
+   */
+  @NonNull
+  CacheStats getCacheStats() {
+    return mCache.stats();
+  }
+
+  /**
+   * Gets a snapshot of the negative cache's hit and miss counters, a hit is a lookup of a uid
+   * known to be missing that was answered from memory
+   *
+   * @return negative cache statistics accumulated since this {@link Repository<E>} was created
+   */
+  @NonNull
+  CacheStats getMissingItemsCacheStats() {
+    return mMissingItems.stats();
+  }
+
+  /**
+   * @return the number of uids currently remembered as missing, including any not yet cleaned up
+   */
+  long getMissingItemsCacheSize() {
+    return mMissingItems.size();
+  }
+
+  /**
+   * Gets the number of requests that shared a load already in flight, instead of loading the
+   * same data again from the local and remote data sources
+   *
+   * @return requests saved since this {@link Repository<E>} was created
+   */
+  long getSavedRequestCount() {
+    return mItemsRequests.getSavedRequestCount() + mItemRequests.getSavedRequestCount()
+        + mPageRequests.getSavedRequestCount();
   }
 
   /**
@@ -89,36 +312,174 @@ class Repository<E extends Entity> implements DataSource<E> {
   @NonNull
   @Override
   public Flowable<List<E>> getItems() {
-    // Respond immediately with cache if available and not dirty
-    if (!mCachedItems.isEmpty() && !mCacheIsDirty) {
-      return Flowable.fromIterable(mCachedItems.values()).toList().toFlowable();
+    // Read the dirty flag once, so the whole request sees the same refresh state
+    final boolean cacheIsDirty = mCacheIsDirty;
+
+    // Respond immediately with cache if available, fresh and not dirty
+    List<E> cachedItems = getItemsFromCache();
+    if (cachedItems != null && !cacheIsDirty && isFresh(cachedItems)) {
+      return Flowable.just(cachedItems);
     }
 
+    // Share the load with any identical request in flight, a refresh starts a new load
+    final long refreshCount = getRefreshCount();
+    return mItemsRequests.share("items?dirty=" + cacheIsDirty + "&refresh=" + refreshCount,
+        () -> loadItems(cacheIsDirty, refreshCount));
+  }
+
+  @NonNull
+  private Flowable<List<E>> loadItems(boolean cacheIsDirty, long refreshCount) {
     // Repository starts with clean cache (mCacheIsDirty = false);
     // Queries local first
-    // if local empty, try remote,
-    // if local has data, add each item to cache, return data.
-    // if remote empty, return no data.
+    // if local empty or stale, try remote,
+    // if local has fresh data, add each item to cache, return data.
+    // if remote empty or fails, return the stale local data if any, otherwise no data.
     // if remote has data, add each item to local and cache, mark cache as clean return data.
 
-    Flowable<List<E>> remoteItems = saveRemoteItems(mRemoteDataSource.getItems());
+    Flowable<List<E>> remoteItems = saveRemoteItems(mRemoteDataSource.getItems())
+        .doOnNext(this::setCachedUids)
+        .doOnComplete(() -> markCacheClean(refreshCount));
 
-    if (mCacheIsDirty) {
-      // refresh local data with remote
-      return remoteItems;
+    if (cacheIsDirty) {
+      // refresh local data with remote, unless the remote endpoint's circuit is open,
+      // then serve the local data right away instead of an error
+      return remoteItems.onErrorResumeNext(error -> error instanceof CircuitOpenException
+          ? cacheLocalItems(mLocalDataSource.getItems()).take(1).doOnNext(this::setCachedUids)
+          : Flowable.error(error));
     } else {
-      // query local and remote data sources, emit the first result
-      Flowable<List<E>> localItems = cacheLocalItems(mLocalDataSource.getItems());
-      return Flowable.concat(localItems, remoteItems)
-          .filter(items -> !items.isEmpty())
-          .firstOrError()
-          .toFlowable();
+      // query local and remote data sources, emit the first fresh result
+      return Flowable.defer(() -> {
+        final AtomicReference<List<E>> staleLocalItems = new AtomicReference<>();
+
+        Flowable<List<E>> freshLocalItems = cacheLocalItems(mLocalDataSource.getItems())
+            .take(1)
+            .filter(items -> {
+              if (isFresh(items)) {
+                return true;
+              }
+              staleLocalItems.set(items);
+              return false;
+            });
+
+        Flowable<List<E>> remoteOrStaleItems = remoteItems
+            .filter(items -> !items.isEmpty())
+            .switchIfEmpty(Flowable.defer(() -> justOrEmpty(staleLocalItems.get())))
+            .onErrorResumeNext(error -> staleLocalItems.get() != null
+                ? Flowable.just(staleLocalItems.get())
+                : Flowable.error(error));
+
+        Flowable<List<E>> freshSnapshotItems = restoreSnapshot().filter(this::isFresh);
+
+        return Flowable.concat(freshSnapshotItems, freshLocalItems, remoteOrStaleItems)
+            .filter(items -> !items.isEmpty())
+            .firstOrError()
+            .doOnSuccess(this::setCachedUids)
+            .toFlowable();
+      });
     }
   }
 
+  @NonNull
+  private static <T> Flowable<T> justOrEmpty(@Nullable T item) {
+    return item != null ? Flowable.just(item) : Flowable.empty();
+  }
+
+  /**
+   * Gets properties from cache or local data source (SQLite) right away, then revalidates them
+   * against the remote data source and emits the remote items as well if they are different.
+   * The revalidation is skipped while the items are fresh, unless {@link #refresh()} was called.
+   * If the revalidation fails after the cached or local items were emitted, the error is
+   * dropped and the stale items are kept.
+   */
+  @NonNull
+  @Override
+  public Flowable<List<E>> getItemsAndRevalidate() {
+    // Share the load with any identical request in flight, a refresh starts a new load
+    final long refreshCount = getRefreshCount();
+    return mItemsRequests.share("items?revalidate&refresh=" + refreshCount,
+        () -> loadItemsAndRevalidate(refreshCount));
+  }
+
+  @NonNull
+  private Flowable<List<E>> loadItemsAndRevalidate(long refreshCount) {
+    return Flowable.defer(() -> {
+      final boolean cacheIsDirty = mCacheIsDirty;
+      final AtomicReference<List<E>> emittedStaleItems = new AtomicReference<>();
+
+      List<E> cachedItems = getItemsFromCache();
+      Flowable<List<E>> staleItems = cachedItems != null
+          ? Flowable.just(cachedItems)
+          : restoreSnapshot().switchIfEmpty(cacheLocalItems(mLocalDataSource.getItems())
+              .take(1)
+              .doOnNext(this::setCachedUids));
+
+      Flowable<List<E>> freshItems = saveRemoteItems(mRemoteDataSource.getItems())
+          .take(1)
+          .filter(items -> !items.isEmpty())
+          .doOnNext(this::setCachedUids)
+          .doOnComplete(() -> markCacheClean(refreshCount))
+          .onErrorResumeNext(error -> emittedStaleItems.get() != null
+              ? Flowable.empty()
+              : Flowable.error(error));
+
+      return staleItems
+          .filter(items -> !items.isEmpty())
+          .doOnNext(emittedStaleItems::set)
+          .concatWith(Flowable.defer(() -> {
+            List<E> items = emittedStaleItems.get();
+            boolean skipRevalidation = items != null && !cacheIsDirty && isFresh(items);
+            return skipRevalidation ? Flowable.<List<E>>empty() : freshItems;
+          }))
+          .distinctUntilChanged();
+    });
+  }
+
+  /**
+   * Restores the in-memory cache from the {@link #mSnapshot} on the first load, reading the file
+   * on the subscribing thread.
+   *
+   * @return the restored items, or empty if there is no snapshot, it was already restored, or it
+   * is missing, corrupt or was written by another version
+   */
+  @NonNull
+  private Flowable<List<E>> restoreSnapshot() {
+    return Flowable.defer(() -> {
+      if (mSnapshot == null || mSnapshotRestored.getAndSet(true)) {
+        return Flowable.empty();
+      }
+
+      List<E> items = mSnapshot.read();
+      if (items == null || items.isEmpty() || getItemsFromCache() != null) {
+        return Flowable.empty();
+      }
+
+      for (E item : items) {
+        saveItemToCache(item);
+      }
+      setCachedUids(items);
+      return Flowable.just(items);
+    });
+  }
+
   @NonNull
   @Override
   public Flowable<List<E>> getItems(@NonNull Map<String, String> options) {
+    checkNotNull(options);
+
+    // Respond immediately with the cached query result if available, refresh() clears them all
+    List<E> cachedItems = getItemsFromQueryCache(options);
+    if (cachedItems != null) {
+      return Flowable.just(cachedItems);
+    }
+
+    // Share the load with any identical query in flight, a refresh starts a new load
+    final long refreshCount = getRefreshCount();
+    String key = "query?" + QueryResultCache.toKey(options) + "&refresh=" + refreshCount;
+    return mItemsRequests.share(key, () -> loadItems(options, refreshCount));
+  }
+
+  @NonNull
+  private Flowable<List<E>> loadItems(@NonNull Map<String, String> options, long refreshCount) {
     // Repository starts with clean cache (mCacheIsDirty = false);
     // Queries local first
     // if local empty, try remote,
@@ -132,9 +493,169 @@ class Repository<E extends Entity> implements DataSource<E> {
     return Flowable.concat(localItems, remoteItems)
         .filter(items -> !items.isEmpty())
         .firstOrError()
+        .doOnSuccess(items -> saveItemsToQueryCache(options, items, refreshCount))
         .toFlowable();
   }
 
+  /**
+   * Gets a page of a query from the cache or local data source (SQLite) right away, then
+   * revalidates it against the remote data source and emits the remote page as well if its items
+   * are different. The revalidation is skipped while the items are fresh, unless
+   * {@link #refresh()} was called. If the revalidation fails after the cached or local page was
+   * emitted, the error is dropped and the stale page is kept. A page missing from the cache and
+   * the local data source is loaded from the remote data source.
+   * <p>
+   * The items of a page loaded from the remote data source are cached and saved to the local data
+   * source, and the page itself is cached with its number.
+   */
+  @NonNull
+  @Override
+  public Flowable<Page<E>> getPage(@NonNull Map<String, String> options, int page) {
+    checkNotNull(options);
+
+    // Respond immediately with the cached page if available and fresh, refresh() clears them all
+    Page<E> cachedPage = getPageFromQueryCache(options, page);
+    if (cachedPage != null && isFresh(cachedPage.getItems())) {
+      return Flowable.just(cachedPage);
+    }
+
+    // Share the load with any request for the same page in flight, a refresh starts a new load
+    final long refreshCount = getRefreshCount();
+    String key = "page?" + QueryResultCache.toPageKey(options, page) + "&refresh=" + refreshCount;
+    return mPageRequests.share(key, () -> loadPage(options, page, refreshCount));
+  }
+
+  @NonNull
+  private Flowable<Page<E>> loadPage(@NonNull Map<String, String> options, int page,
+                                     long refreshCount) {
+    return Flowable.defer(() -> {
+      final boolean cacheIsDirty = mCacheIsDirty;
+      final AtomicReference<Page<E>> emittedStalePage = new AtomicReference<>();
+
+      // the snapshot keeps the items but not the pages they were on, after a cold start it warms
+      // the in-memory cache and the page itself is read from the local data source
+      Page<E> cachedPage = getPageFromQueryCache(options, page);
+      Flowable<Page<E>> stalePage = cachedPage != null
+          ? Flowable.just(cachedPage)
+          : restoreSnapshot().ignoreElements().andThen(mLocalDataSource.getPage(options, page)
+              .take(1)
+              .doOnNext(loaded -> {
+                for (E item : loaded.getItems()) {
+                  saveItemToCache(item);
+                }
+              }));
+
+      Flowable<Page<E>> freshPage = mRemoteDataSource.getPage(options, page)
+          .take(1)
+          .filter(loaded -> !loaded.getItems().isEmpty())
+          .concatMap(loaded -> saveRemoteItems(Flowable.just(loaded.getItems()))
+              .map(items -> loaded))
+          .onErrorResumeNext(error -> emittedStalePage.get() != null
+              ? Flowable.empty()
+              : Flowable.error(error));
+
+      return stalePage
+          .filter(loaded -> !loaded.getItems().isEmpty())
+          .doOnNext(emittedStalePage::set)
+          .concatWith(Flowable.defer(() -> {
+            Page<E> loaded = emittedStalePage.get();
+            boolean skipRevalidation =
+                loaded != null && !cacheIsDirty && isFresh(loaded.getItems());
+            return skipRevalidation ? Flowable.<Page<E>>empty() : freshPage;
+          }))
+          .distinctUntilChanged((previous, next) -> previous.getItems().equals(next.getItems()))
+          .doOnNext(loaded -> saveItemsToQueryCache(options, loaded, refreshCount));
+    });
+  }
+
+  /**
+   * Gets a page of a query from the cache, in the order it was loaded
+   *
+   * @param options query options
+   * @param number  page number
+   * @return the cached page, or null if the page is not cached, expired or some of its items
+   * were evicted
+   */
+  @Nullable
+  private Page<E> getPageFromQueryCache(@NonNull Map<String, String> options, int number) {
+    Page<String> uids = mQueryResults.getPage(options, number);
+    if (uids == null) {
+      return null;
+    }
+
+    List<E> items = new ArrayList<>(uids.getItems().size());
+    for (String uid : uids.getItems()) {
+      E item = mCache.getIfPresent(uid);
+      if (item == null) {
+        // evicted, the page has to be loaded again
+        mQueryResults.invalidatePage(options, number);
+        return null;
+      }
+      items.add(item);
+    }
+    return new Page<>(number, uids.getTotalPages(), uids.getTotalResults(), items);
+  }
+
+  /**
+   * Stores a page of a query, unless {@link #refresh()} was called after the page started loading
+   *
+   * @param options      query options
+   * @param page         the page the query returned
+   * @param refreshCount the {@link #mRefreshCount} when the page started loading
+   */
+  private void saveItemsToQueryCache(@NonNull Map<String, String> options,
+                                     @NonNull Page<E> page, long refreshCount) {
+    synchronized (mRefreshLock) {
+      if (mRefreshCount == refreshCount) {
+        mQueryResults.putPage(options, page);
+      }
+    }
+  }
+
+  /**
+   * Gets the result of a query from the cache, in the order it was loaded
+   *
+   * @param options query options
+   * @return the cached items, or null if the query is not cached, expired or some of its items
+   * were evicted
+   */
+  @Nullable
+  private List<E> getItemsFromQueryCache(@NonNull Map<String, String> options) {
+    List<String> uids = mQueryResults.get(options);
+    if (uids == null) {
+      return null;
+    }
+
+    List<E> items = new ArrayList<>(uids.size());
+    for (String uid : uids) {
+      E item = mCache.getIfPresent(uid);
+      if (item == null) {
+        // evicted, the query has to run again to load the missing items
+        mQueryResults.invalidate(options);
+        return null;
+      }
+      items.add(item);
+    }
+    return items;
+  }
+
+  /**
+   * Stores the result of a query, unless {@link #refresh()} was called after the query started
+   * and the result may already be stale.
+   *
+   * @param options      query options
+   * @param items        the items the query returned, in order
+   * @param refreshCount the {@link #mRefreshCount} when the query started
+   */
+  private void saveItemsToQueryCache(@NonNull Map<String, String> options,
+                                     @NonNull List<E> items, long refreshCount) {
+    synchronized (mRefreshLock) {
+      if (mRefreshCount == refreshCount) {
+        mQueryResults.put(options, items);
+      }
+    }
+  }
+
   @NonNull
   private Flowable<List<E>> cacheLocalItems(@NonNull Flowable<List<E>> localItems) {
     return localItems.flatMap(items -> Flowable.fromIterable(items)
@@ -146,11 +667,33 @@ class Repository<E extends Entity> implements DataSource<E> {
 
   @NonNull
   private Flowable<List<E>> saveRemoteItems(@NonNull Flowable<List<E>> remoteItems) {
-    return remoteItems.flatMap(items -> Flowable.fromIterable(items)
-        .doOnNext(item -> mLocalDataSource.add(item).andThen(saveItemToCache(item)))
-        .toList()
-        .toFlowable()
-    ).doOnComplete(() -> mCacheIsDirty = false);
+    return remoteItems.flatMap(items -> {
+      for (E item : items) {
+        stampFetchedAt(item);
+        saveItemToCache(item);
+      }
+      return saveItemsToLocal(items).andThen(Flowable.just(items));
+    });
+  }
+
+  /**
+   * Saves the items to the local data source as one batch, in a single transaction with a single
+   * change notification, on the io scheduler.
+   * <p>
+   * A failed write doesn't fail the load, the items are already cached in memory and the local
+   * data source logs the failure, the next remote load writes them again.
+   *
+   * @param items the items to save
+   * @return a completable that completes when the batch was written or failed
+   */
+  @NonNull
+  private Completable saveItemsToLocal(@NonNull List<E> items) {
+    if (items.isEmpty()) {
+      return Completable.complete();
+    }
+    return mLocalDataSource.addAll(items)
+        .subscribeOn(mSchedulerProvider.io())
+        .onErrorComplete();
   }
 
   @NonNull
@@ -165,6 +708,17 @@ class Repository<E extends Entity> implements DataSource<E> {
       return Flowable.just(Optional.of(cachedItem));
     }
 
+    // Respond with absent if the item was recently missing from both data sources
+    if (mMissingItems.getIfPresent(itemId) != null) {
+      return Flowable.just(Optional.absent());
+    }
+
+    // Share the load with any request for the same item in flight
+    return mItemRequests.share(itemId, () -> loadItem(itemId));
+  }
+
+  @NonNull
+  private Flowable<Optional<E>> loadItem(@NonNull final String itemId) {
     // Create an Observable to query the item in the local data source
     Flowable<Optional<E>> localItem = getLocalItemById(itemId);
 
@@ -189,30 +743,56 @@ class Repository<E extends Entity> implements DataSource<E> {
   @NonNull
   private Flowable<Optional<E>> getRemoteItemById(@NonNull final String itemId) {
     return mRemoteDataSource.getItem(itemId)
+        // the api answers an id it doesn't know, e.g. of a removed movie, with a 404
+        .onErrorResumeNext(error -> isNotFound(error)
+            ? Flowable.just(Optional.absent())
+            : Flowable.error(error))
         .flatMap(itemOptional -> {
           if (itemOptional.isPresent()) {
             E item = itemOptional.get();
+            stampFetchedAt(item);
             return mLocalDataSource.add(item)
                 .andThen(saveItemToCache(item))
                 .andThen(Flowable.just(itemOptional));
           } else {
+            // missing from local too, remember it so repeated lookups are answered from memory
+            mMissingItems.put(itemId, Boolean.TRUE);
             return Flowable.just(Optional.absent());
           }
         });
   }
 
+  private static boolean isNotFound(@NonNull Throwable error) {
+    return error instanceof HttpException && ((HttpException) error).code() == 404;
+  }
+
   @NonNull
   @Override
   public Completable add(@NonNull E item) {
-    mCachedItems.put(item.getUid(), checkNotNull(item));
+    // any write may change which items a query returns, or their order
+    mQueryResults.invalidateAll();
+    saveItemToCache(checkNotNull(item));
+    addCachedUid(item.getUid());
+    if (mWriteBehindQueue != null) {
+      mWriteBehindQueue.save(item);
+      return Completable.complete();
+    }
     return mLocalDataSource.add(item).andThen(mRemoteDataSource.add(item));
   }
 
   @NonNull
   @Override
   public Completable addAll(@NonNull List<E> items) {
+    mQueryResults.invalidateAll();
     for (E item : items) {
-      mCachedItems.put(item.getUid(), checkNotNull(item));
+      saveItemToCache(checkNotNull(item));
+      addCachedUid(item.getUid());
+    }
+    if (mWriteBehindQueue != null) {
+      for (E item : items) {
+        mWriteBehindQueue.save(item);
+      }
+      return Completable.complete();
     }
     return mLocalDataSource.addAll(items).andThen(mRemoteDataSource.addAll(items));
   }
@@ -220,15 +800,26 @@ class Repository<E extends Entity> implements DataSource<E> {
   @NonNull
   @Override
   public Completable update(@NonNull E item) {
-    mCachedItems.put(item.getUid(), item);
+    mQueryResults.invalidateAll();
+    saveItemToCache(checkNotNull(item));
+    if (mWriteBehindQueue != null) {
+      mWriteBehindQueue.save(item);
+      return Completable.complete();
+    }
     return mLocalDataSource.update(item).andThen(mRemoteDataSource.update(item));
   }
 
   @NonNull
   @Override
   public Completable remove(@NonNull String entityId) {
-    if (!mCachedItems.isEmpty() && mCachedItems.containsKey(entityId)) {
-      mCachedItems.remove(entityId);
+    mQueryResults.invalidateAll();
+    mCache.invalidate(entityId);
+    synchronized (mCachedUids) {
+      mCachedUids.remove(entityId);
+    }
+    if (mWriteBehindQueue != null) {
+      mWriteBehindQueue.remove(entityId);
+      return Completable.complete();
     }
     return mLocalDataSource.remove(entityId).andThen(mRemoteDataSource.remove(entityId));
   }
@@ -236,7 +827,22 @@ class Repository<E extends Entity> implements DataSource<E> {
   @NonNull
   @Override
   public Completable removeAll() {
-    mCachedItems.clear();
+    mQueryResults.invalidateAll();
+    mCache.invalidateAll();
+    synchronized (mCachedUids) {
+      mCachedUids.clear();
+    }
+    if (mWriteBehindQueue != null) {
+      // everything is removed anyway, no need to write the pending mutations
+      mWriteBehindQueue.clear();
+    }
+    if (mSnapshot != null) {
+      // never restore the removed items on the next cold start
+      mSnapshotRestored.set(true);
+      Completable.fromAction(mSnapshot::delete)
+          .subscribeOn(mSchedulerProvider.io())
+          .subscribe();
+    }
     return mLocalDataSource.removeAll().andThen(mRemoteDataSource.removeAll());
   }
 
@@ -244,22 +850,143 @@ class Repository<E extends Entity> implements DataSource<E> {
   private E getItemWithIdFromCache(@NonNull final String itemId) {
     checkNotNull(itemId);
 
-    if (mCachedItems.isEmpty()) {
-      return null;
-    } else {
-      // still might not be able to find the item with id, return a nullable item
-      return mCachedItems.get(itemId);
+    // still might not be able to find the item with id, return a nullable item
+    return mCache.getIfPresent(itemId);
+  }
+
+  /**
+   * Gets the complete collection of items from the cache, in the order they were loaded
+   *
+   * @return the cached items, or null if the cache is empty or some of the items were evicted
+   */
+  @Nullable
+  private List<E> getItemsFromCache() {
+    final List<String> uids;
+    synchronized (mCachedUids) {
+      if (mCachedUids.isEmpty()) {
+        return null;
+      }
+      uids = new ArrayList<>(mCachedUids);
+    }
+
+    List<E> items = new ArrayList<>(uids.size());
+    for (String uid : uids) {
+      E item = mCache.getIfPresent(uid);
+      if (item == null) {
+        // evicted, the cache can no longer answer for all items until they are loaded again
+        synchronized (mCachedUids) {
+          mCachedUids.clear();
+        }
+        return null;
+      }
+      items.add(item);
+    }
+    return items;
+  }
+
+  /**
+   * Replaces the cached order of the complete collection of items in one step, so concurrent
+   * readers never see a partially loaded collection.
+   *
+   * @param items the complete collection of items, in order
+   */
+  private void setCachedUids(@NonNull List<E> items) {
+    synchronized (mCachedUids) {
+      mCachedUids.clear();
+      for (E item : items) {
+        mCachedUids.add(item.getUid());
+      }
     }
   }
 
+  private void addCachedUid(@NonNull String uid) {
+    synchronized (mCachedUids) {
+      mCachedUids.add(uid);
+    }
+  }
+
+  /**
+   * Writes any pending mutations behind and persists the in-memory cache to the snapshot, on the
+   * io scheduler, before the app process is killed
+   */
+  @Override
+  public void onAppBackground() {
+    if (mWriteBehindQueue != null) {
+      mWriteBehindQueue.flush().subscribeOn(mSchedulerProvider.io()).subscribe();
+    }
+
+    final List<E> cachedItems = getItemsFromCache();
+    if (mSnapshot != null && cachedItems != null) {
+      // the cache is already loaded, a later restore would only bring back older items
+      mSnapshotRestored.set(true);
+      Completable.fromAction(() -> mSnapshot.write(cachedItems))
+          .subscribeOn(mSchedulerProvider.io())
+          .onErrorComplete()
+          .subscribe();
+    }
+  }
+
+  private void stampFetchedAt(@NonNull E item) {
+    item.setFetchedAt(mClock.currentTimeMillis());
+  }
+
+  /**
+   * Checks whether all the items are fresh, so they can be served without going to the network.
+   * Items with an unknown fetch time were not fetched from the remote data source and are
+   * treated as fresh.
+   *
+   * @param items the items to check
+   * @return whether none of the items is older than the freshness ttl
+   */
+  private boolean isFresh(@NonNull List<E> items) {
+    if (mFreshnessTtlMillis == RepositoryConfig.NEVER_STALE) {
+      return true;
+    }
+    long now = mClock.currentTimeMillis();
+    for (E item : items) {
+      long fetchedAt = item.getFetchedAt();
+      if (fetchedAt > 0 && now - fetchedAt > mFreshnessTtlMillis) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public void refresh() {
-    mCacheIsDirty = true;
+    synchronized (mRefreshLock) {
+      mRefreshCount++;
+      mCacheIsDirty = true;
+      mQueryResults.invalidateAll();
+    }
+    // the remote loads that follow must not be answered with responses cached before
+    mRemoteDataSource.refresh();
+  }
+
+  private long getRefreshCount() {
+    synchronized (mRefreshLock) {
+      return mRefreshCount;
+    }
+  }
+
+  /**
+   * Marks the cache clean after a remote load, unless {@link #refresh()} was called again after
+   * the load started, in which case the newer refresh request is kept.
+   *
+   * @param refreshCount the {@link #mRefreshCount} when the remote load started
+   */
+  private void markCacheClean(long refreshCount) {
+    synchronized (mRefreshLock) {
+      if (mRefreshCount == refreshCount) {
+        mCacheIsDirty = false;
+      }
+    }
   }
 
   @VisibleForTesting
   private Completable saveItemToCache(@NonNull E item) {
-    mCachedItems.put(item.getUid(), item);
+    mCache.put(item.getUid(), item);
+    mMissingItems.invalidate(item.getUid());
     return Completable.complete();
   }
 
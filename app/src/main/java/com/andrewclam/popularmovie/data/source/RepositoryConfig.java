@@ -0,0 +1,377 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.andrewclam.popularmovie.data.model.Entity;
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Immutable set of tuning parameters for a {@link Repository<E>}. Each entity type gets its own
+ * instance, provided by its repository module, so that the budgets can be sized to the typical
+ * volume and size of the {@link E}s it holds.
+ *
+ * @param <E> type of {@link Entity} the configured {@link Repository<E>} holds
+ */
+final class RepositoryConfig<E extends Entity> {
+
+  /**
+   * Indicates that a budget is not set and should not be enforced
+   */
+  static final long UNBOUNDED = -1;
+
+  /**
+   * Default in-memory cache budget, in bytes, as estimated by {@link Entity#getEstimatedSize()}
+   */
+  static final long DEFAULT_MAX_CACHE_WEIGHT_BYTES = 4 * 1024 * 1024;
+
+  /**
+   * Default number of query results to keep, enough for every sort order and a few pages each
+   */
+  static final long DEFAULT_MAX_QUERY_RESULTS = 32;
+
+  /**
+   * Default time a query result is served from memory before the query is run again
+   */
+  static final long DEFAULT_QUERY_RESULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  /**
+   * Indicates that items never go stale, they are refreshed only on {@link Repository#refresh()}
+   */
+  static final long NEVER_STALE = -1;
+
+  /**
+   * Default number of uids remembered as missing from both the local and remote data sources
+   */
+  static final long DEFAULT_MAX_MISSING_ITEMS = 256;
+
+  /**
+   * Default time a uid is remembered as missing, short so that newly published items show up
+   */
+  static final long DEFAULT_MISSING_ITEM_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final long mMaxCacheEntries;
+
+  private final long mMaxCacheWeightBytes;
+
+  private final long mMaxQueryResults;
+
+  private final long mQueryResultTtlMillis;
+
+  private final long mFreshnessTtlMillis;
+
+  private final long mMaxMissingItems;
+
+  private final long mMissingItemTtlMillis;
+
+  private final long mWriteBehindDelayMillis;
+
+  private final int mMaxPendingWrites;
+
+  @NonNull
+  private final Ticker mTicker;
+
+  @NonNull
+  private final Clock mClock;
+
+  @Nullable
+  private final CacheSnapshot<E> mSnapshot;
+
+  private RepositoryConfig(@NonNull Builder<E> builder) {
+    mMaxCacheEntries = builder.mMaxCacheEntries;
+    mMaxCacheWeightBytes = builder.mMaxCacheWeightBytes;
+    mMaxQueryResults = builder.mMaxQueryResults;
+    mQueryResultTtlMillis = builder.mQueryResultTtlMillis;
+    mFreshnessTtlMillis = builder.mFreshnessTtlMillis;
+    mMaxMissingItems = builder.mMaxMissingItems;
+    mMissingItemTtlMillis = builder.mMissingItemTtlMillis;
+    mWriteBehindDelayMillis = builder.mWriteBehindDelayMillis;
+    mMaxPendingWrites = builder.mMaxPendingWrites;
+    mTicker = builder.mTicker;
+    mClock = builder.mClock;
+    mSnapshot = builder.mSnapshot;
+  }
+
+  /**
+   * @return the maximum number of entries the in-memory cache may hold, or {@link #UNBOUNDED}
+   * if the cache is bounded by weight instead
+   */
+  long getMaxCacheEntries() {
+    return mMaxCacheEntries;
+  }
+
+  /**
+   * @return the maximum total estimated size, in bytes, of the entries the in-memory cache
+   * may hold, or {@link #UNBOUNDED} if the cache is bounded by its number of entries instead
+   */
+  long getMaxCacheWeightBytes() {
+    return mMaxCacheWeightBytes;
+  }
+
+  /**
+   * @return the maximum number of query results the query cache may hold
+   */
+  long getMaxQueryResults() {
+    return mMaxQueryResults;
+  }
+
+  /**
+   * @return the time, in milliseconds, a query result is served from memory after it was stored
+   */
+  long getQueryResultTtlMillis() {
+    return mQueryResultTtlMillis;
+  }
+
+  /**
+   * @return the time, in milliseconds, an item is considered fresh after it was fetched from the
+   * remote data source, or {@link #NEVER_STALE}
+   */
+  long getFreshnessTtlMillis() {
+    return mFreshnessTtlMillis;
+  }
+
+  /**
+   * @return the maximum number of uids the negative cache remembers as missing
+   */
+  long getMaxMissingItems() {
+    return mMaxMissingItems;
+  }
+
+  /**
+   * @return the time, in milliseconds, a uid is remembered as missing
+   */
+  long getMissingItemTtlMillis() {
+    return mMissingItemTtlMillis;
+  }
+
+  /**
+   * @return whether mutations are queued and written behind in batches, instead of being
+   * written through to the data sources one by one
+   */
+  boolean isWriteBehind() {
+    return mWriteBehindDelayMillis > 0;
+  }
+
+  /**
+   * @return the longest time, in milliseconds, a mutation waits in the write-behind queue
+   */
+  long getWriteBehindDelayMillis() {
+    return mWriteBehindDelayMillis;
+  }
+
+  /**
+   * @return the number of pending mutations that triggers a write-behind flush right away
+   */
+  int getMaxPendingWrites() {
+    return mMaxPendingWrites;
+  }
+
+  /**
+   * @return the time source used to expire cached entries
+   */
+  @NonNull
+  Ticker getTicker() {
+    return mTicker;
+  }
+
+  /**
+   * @return the wall clock used to stamp and age fetched items
+   */
+  @NonNull
+  Clock getClock() {
+    return mClock;
+  }
+
+  /**
+   * @return the snapshot the in-memory cache is restored from on a cold start and persisted to
+   * when the app moves to the background, or null if the cache is not persisted
+   */
+  @Nullable
+  CacheSnapshot<E> getSnapshot() {
+    return mSnapshot;
+  }
+
+  /**
+   * Builder for a {@link RepositoryConfig<E>}, any parameter that is not set is left with its
+   * default value.
+   *
+   * @param <E> type of {@link Entity} the configured {@link Repository<E>} holds
+   */
+  static final class Builder<E extends Entity> {
+    private long mMaxCacheEntries = UNBOUNDED;
+    private long mMaxCacheWeightBytes = DEFAULT_MAX_CACHE_WEIGHT_BYTES;
+    private long mMaxQueryResults = DEFAULT_MAX_QUERY_RESULTS;
+    private long mQueryResultTtlMillis = DEFAULT_QUERY_RESULT_TTL_MILLIS;
+    private long mFreshnessTtlMillis = NEVER_STALE;
+    private long mMaxMissingItems = DEFAULT_MAX_MISSING_ITEMS;
+    private long mMissingItemTtlMillis = DEFAULT_MISSING_ITEM_TTL_MILLIS;
+    private long mWriteBehindDelayMillis = 0;
+    private int mMaxPendingWrites = 0;
+    private Ticker mTicker = Ticker.systemTicker();
+    private Clock mClock = Clock.SYSTEM;
+    private CacheSnapshot<E> mSnapshot = null;
+
+    /**
+     * Bounds the in-memory cache by its number of entries, replaces any byte budget
+     *
+     * @param maxEntries maximum number of entries, must be positive
+     * @return this builder
+     */
+    @NonNull
+    Builder<E> setMaxCacheEntries(long maxEntries) {
+      checkArgument(maxEntries > 0, "maxEntries must be positive");
+      mMaxCacheEntries = maxEntries;
+      mMaxCacheWeightBytes = UNBOUNDED;
+      return this;
+    }
+
+    /**
+     * Bounds the in-memory cache by the total estimated size of its entries, replaces any
+     * entry budget
+     *
+     * @param maxWeightBytes maximum total size in bytes, must be positive
+     * @return this builder
+     */
+    @NonNull
+    Builder<E> setMaxCacheWeightBytes(long maxWeightBytes) {
+      checkArgument(maxWeightBytes > 0, "maxWeightBytes must be positive");
+      mMaxCacheWeightBytes = maxWeightBytes;
+      mMaxCacheEntries = UNBOUNDED;
+      return this;
+    }
+
+    /**
+     * Bounds the number of query results kept in memory
+     *
+     * @param maxResults maximum number of query results, must be positive
+     * @return this builder
+     */
+    @NonNull
+    Builder<E> setMaxQueryResults(long maxResults) {
+      checkArgument(maxResults > 0, "maxResults must be positive");
+      mMaxQueryResults = maxResults;
+      return this;
+    }
+
+    /**
+     * Sets how long a query result is served from memory after it was stored
+     *
+     * @param ttl  time to live, must be positive
+     * @param unit unit of the ttl
+     * @return this builder
+     */
+    @NonNull
+    Builder<E> setQueryResultTtl(long ttl, @NonNull TimeUnit unit) {
+      checkArgument(ttl > 0, "ttl must be positive");
+      mQueryResultTtlMillis = checkNotNull(unit).toMillis(ttl);
+      return this;
+    }
+
+    /**
+     * Sets how long an item is served from memory or local storage after it was fetched, before
+     * the repository goes to the remote data source for it again
+     *
+     * @param ttl  time to live, must be positive
+     * @param unit unit of the ttl
+     * @return this builder
+     */
+    @NonNull
+    Builder<E> setFreshnessTtl(long ttl, @NonNull TimeUnit unit) {
+      checkArgument(ttl > 0, "ttl must be positive");
+      mFreshnessTtlMillis = checkNotNull(unit).toMillis(ttl);
+      return this;
+    }
+
+    /**
+     * Sets how many uids of items missing from both the local and remote data sources are
+     * remembered, and for how long, so repeated lookups don't go to the network again
+     *
+     * @param maxItems maximum number of uids to remember, must be positive
+     * @param ttl      time to remember a uid as missing, must be positive
+     * @param unit     unit of the ttl
+     * @return this builder
+     */
+    @NonNull
+    Builder<E> setMissingItemCache(long maxItems, long ttl, @NonNull TimeUnit unit) {
+      checkArgument(maxItems > 0, "maxItems must be positive");
+      checkArgument(ttl > 0, "ttl must be positive");
+      mMaxMissingItems = maxItems;
+      mMissingItemTtlMillis = checkNotNull(unit).toMillis(ttl);
+      return this;
+    }
+
+    /**
+     * Queues mutations in memory and writes them behind to the data sources in batches, instead
+     * of writing each one through as it is made. Multiple mutations of the same item are
+     * coalesced into one write.
+     * <p>
+     * Pending mutations are only kept in memory, and the flush when the app moves to the
+     * background isn't waited on, so mutations still pending when the process is killed are lost.
+     * Only use it for mutations that can afford to be lost.
+     *
+     * @param flushDelay       longest time a mutation waits before it is written, must be positive
+     * @param unit             unit of the flush delay
+     * @param maxPendingWrites number of pending mutations that are written right away, must be
+     *                         positive
+     * @return this builder
+     */
+    @NonNull
+    Builder<E> setWriteBehind(long flushDelay, @NonNull TimeUnit unit, int maxPendingWrites) {
+      checkArgument(flushDelay > 0, "flushDelay must be positive");
+      checkArgument(maxPendingWrites > 0, "maxPendingWrites must be positive");
+      mWriteBehindDelayMillis = checkNotNull(unit).toMillis(flushDelay);
+      mMaxPendingWrites = maxPendingWrites;
+      return this;
+    }
+
+    /**
+     * Persists the in-memory cache to a snapshot when the app moves to the background, and
+     * restores it from the snapshot on the first load, before going to the data sources
+     *
+     * @param snapshot the snapshot to persist the cache to
+     * @return this builder
+     */
+    @NonNull
+    Builder<E> setSnapshot(@NonNull CacheSnapshot<E> snapshot) {
+      mSnapshot = checkNotNull(snapshot);
+      return this;
+    }
+
+    /**
+     * Replaces the system wall clock, so tests can control when fetched items go stale
+     *
+     * @param clock wall clock
+     * @return this builder
+     */
+    @VisibleForTesting
+    @NonNull
+    Builder<E> setClock(@NonNull Clock clock) {
+      mClock = checkNotNull(clock);
+      return this;
+    }
+
+    /**
+     * Replaces the system time source, so tests can control when cached entries expire
+     *
+     * @param ticker time source
+     * @return this builder
+     */
+    @VisibleForTesting
+    @NonNull
+    Builder<E> setTicker(@NonNull Ticker ticker) {
+      mTicker = checkNotNull(ticker);
+      return this;
+    }
+
+    @NonNull
+    RepositoryConfig<E> build() {
+      return new RepositoryConfig<>(this);
+    }
+  }
+}
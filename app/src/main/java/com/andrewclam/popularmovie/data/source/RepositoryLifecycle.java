@@ -0,0 +1,14 @@
+package com.andrewclam.popularmovie.data.source;
+
+/**
+ * Application lifecycle callbacks for repositories that hold state in memory, every
+ * {@link Repository} is bound into a set of these so the application can notify them all.
+ */
+public interface RepositoryLifecycle {
+
+  /**
+   * Called when the app moved to the background and may be killed without further notice, the
+   * repository should persist any state it only holds in memory.
+   */
+  void onAppBackground();
+}
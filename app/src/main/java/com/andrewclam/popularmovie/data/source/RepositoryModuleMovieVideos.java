@@ -1,16 +1,20 @@
 package com.andrewclam.popularmovie.data.source;
 
+import android.content.Context;
 import android.support.annotation.NonNull;
 
 import com.andrewclam.popularmovie.data.DataSource;
 import com.andrewclam.popularmovie.data.model.MovieVideo;
 
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
 import javax.inject.Singleton;
 
 import dagger.Binds;
 import dagger.Module;
 import dagger.Provides;
-import retrofit2.Retrofit;
+import dagger.multibindings.IntoSet;
 
 /**
  * This is used by Dagger to inject the required arguments into the {@link Repository<MovieVideo>}.
@@ -23,6 +27,10 @@ public abstract class RepositoryModuleMovieVideos {
   @Repo
   abstract DataSource<MovieVideo> providesRepository(@NonNull Repository<MovieVideo> repository);
 
+  @Binds
+  @IntoSet
+  abstract RepositoryLifecycle providesRepositoryLifecycle(@NonNull Repository<MovieVideo> repository);
+
   @Binds
   @NonNull
   @Singleton
@@ -38,7 +46,15 @@ public abstract class RepositoryModuleMovieVideos {
   @Provides
   @NonNull
   @Singleton
-  static MovieVideo.ServiceApi provideServiceApi (@NonNull Retrofit retrofit) {
-    return retrofit.create(MovieVideo.ServiceApi.class);
+  static RepositoryConfig<MovieVideo> provideRepositoryConfig(@NonNull Context context,
+                                                              @NonNull EntityCodecMovieVideos codec) {
+    // ~4k videos, videos are only loaded for the movies a user opens,
+    // a movie's trailers rarely change once published
+    File snapshotFile = new File(context.getCacheDir(), "movie_videos.snapshot");
+    return new RepositoryConfig.Builder<MovieVideo>()
+        .setMaxCacheWeightBytes(1024 * 1024)
+        .setFreshnessTtl(1, TimeUnit.DAYS)
+        .setSnapshot(new CacheSnapshot<>(snapshotFile, codec))
+        .build();
   }
 }
@@ -1,15 +1,20 @@
 package com.andrewclam.popularmovie.data.source;
 
+import android.content.Context;
 import android.support.annotation.NonNull;
 
 import com.andrewclam.popularmovie.data.DataSource;
 import com.andrewclam.popularmovie.data.model.Movie;
 
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
 import javax.inject.Singleton;
 
 import dagger.Binds;
 import dagger.Module;
 import dagger.Provides;
+import dagger.multibindings.IntoSet;
 import retrofit2.Retrofit;
 
 /**
@@ -24,6 +29,10 @@ public abstract class RepositoryModuleMovies {
   @Repo
   abstract DataSource<Movie> providesRepository(@NonNull Repository<Movie> repository);
 
+  @Binds
+  @IntoSet
+  abstract RepositoryLifecycle providesRepositoryLifecycle(@NonNull Repository<Movie> repository);
+
   @Binds
   @NonNull
   @Singleton
@@ -36,6 +45,24 @@ public abstract class RepositoryModuleMovies {
   @Remote
   abstract DataSource<Movie> providesRemoteDataSource(@NonNull DataSourceRemoteMovies dataSource);
 
+  @Provides
+  @NonNull
+  @Singleton
+  static RepositoryConfig<Movie> provideRepositoryConfig(@NonNull Context context,
+                                                         @NonNull EntityCodecMovies codec) {
+    // ~2-4k movies, enough for many discover pages across all sort orders,
+    // discover rankings and vote counts drift within hours, the ttl is kept longer than the
+    // forced http cache max age, so revalidations reach the network (see ApiModule),
+    // favorite toggles are written through, a write behind queue is only flushed best-effort
+    // when the app moves to the background and a toggle could be lost with the process
+    File snapshotFile = new File(context.getCacheDir(), "movies.snapshot");
+    return new RepositoryConfig.Builder<Movie>()
+        .setMaxCacheWeightBytes(4 * 1024 * 1024)
+        .setFreshnessTtl(1, TimeUnit.HOURS)
+        .setSnapshot(new CacheSnapshot<>(snapshotFile, codec))
+        .build();
+  }
+
   @Provides
   @NonNull
   @Singleton
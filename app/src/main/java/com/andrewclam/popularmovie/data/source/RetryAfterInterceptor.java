@@ -0,0 +1,62 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link Interceptor} that pauses the {@link RateLimiter} when the api answers a request with
+ * {@code 429 Too Many Requests}, for as long as its {@code Retry-After} header asks, so that the
+ * following requests wait instead of being rejected too.
+ */
+final class RetryAfterInterceptor implements Interceptor {
+
+  @VisibleForTesting
+  static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  /**
+   * Pause when the response doesn't say how long to wait, the length of the api's rate limit window
+   */
+  @VisibleForTesting
+  static final long DEFAULT_RETRY_AFTER_SECONDS = 10;
+
+  @NonNull
+  private final RateLimiter mRateLimiter;
+
+  RetryAfterInterceptor(@NonNull RateLimiter rateLimiter) {
+    mRateLimiter = checkNotNull(rateLimiter);
+  }
+
+  @Override
+  public Response intercept(@NonNull Chain chain) throws IOException {
+    Response response = chain.proceed(chain.request());
+    if (response.code() == HTTP_TOO_MANY_REQUESTS) {
+      mRateLimiter.pause(getRetryAfterSeconds(response.header("Retry-After")), TimeUnit.SECONDS);
+    }
+    return response;
+  }
+
+  /**
+   * @param retryAfter value of the {@code Retry-After} header, in seconds, the http date form is
+   *                   not used by the api
+   * @return the seconds to wait before the next request
+   */
+  @VisibleForTesting
+  static long getRetryAfterSeconds(String retryAfter) {
+    if (retryAfter != null) {
+      try {
+        return Math.max(Long.parseLong(retryAfter.trim()), 0);
+      } catch (NumberFormatException e) {
+        // fall through to the default
+      }
+    }
+    return DEFAULT_RETRY_AFTER_SECONDS;
+  }
+}
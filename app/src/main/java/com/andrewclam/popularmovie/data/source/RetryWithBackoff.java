@@ -0,0 +1,111 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import org.reactivestreams.Publisher;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+import retrofit2.HttpException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Retry handler for {@link Flowable#retryWhen(Function)} that resubscribes to a failed remote
+ * request after an exponentially growing delay, for a bounded number of retries. Only transient
+ * errors are retried, see {@link #isTransient(Throwable)}, and only idempotent GET requests
+ * should be retried at all.
+ * <p>
+ * Each delay is drawn at random between zero and the exponential delay ("full jitter"), so the
+ * clients that failed together don't retry together.
+ */
+final class RetryWithBackoff implements Function<Flowable<Throwable>, Publisher<?>> {
+
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private static final int HTTP_SERVER_ERROR = 500;
+
+  private final int mMaxRetries;
+
+  private final long mBaseDelayMillis;
+
+  private final long mMaxDelayMillis;
+
+  @NonNull
+  private final Random mRandom;
+
+  @NonNull
+  private final Scheduler mScheduler;
+
+  /**
+   * @param maxRetries      retries at most after the first attempt
+   * @param baseDelayMillis delay bound of the first retry, doubled for each following retry
+   * @param maxDelayMillis  delay bound of any retry
+   * @param random          draws the delays
+   * @param scheduler       waits out the delays
+   */
+  RetryWithBackoff(int maxRetries, long baseDelayMillis, long maxDelayMillis,
+                   @NonNull Random random, @NonNull Scheduler scheduler) {
+    checkArgument(maxRetries >= 0, "maxRetries must not be negative");
+    checkArgument(baseDelayMillis > 0, "baseDelayMillis must be positive");
+    checkArgument(maxDelayMillis >= baseDelayMillis, "maxDelayMillis must be at least the base");
+    mMaxRetries = maxRetries;
+    mBaseDelayMillis = baseDelayMillis;
+    mMaxDelayMillis = maxDelayMillis;
+    mRandom = checkNotNull(random);
+    mScheduler = checkNotNull(scheduler);
+  }
+
+  @Override
+  public Publisher<?> apply(@NonNull Flowable<Throwable> errors) {
+    // called once per subscription, so each request counts its own retries
+    final AtomicInteger retries = new AtomicInteger();
+    return errors.flatMap(error -> {
+      int retry = retries.getAndIncrement();
+      if (retry >= mMaxRetries || !isTransient(error)) {
+        return Flowable.error(error);
+      }
+      return Flowable.timer(getDelayMillis(retry), TimeUnit.MILLISECONDS, mScheduler);
+    });
+  }
+
+  /**
+   * @param retry number of the retry, starting at zero
+   * @return a random delay between zero and the exponential delay bound of the retry
+   */
+  @VisibleForTesting
+  long getDelayMillis(int retry) {
+    long bound = mBaseDelayMillis << Math.min(retry, 30);
+    if (bound <= 0 || bound > mMaxDelayMillis) {
+      bound = mMaxDelayMillis;
+    }
+    return (long) (mRandom.nextDouble() * bound);
+  }
+
+  /**
+   * Checks whether a failed request may succeed when made again: network errors, server errors
+   * and {@code 429 Too Many Requests} are transient, client errors such as {@code 404 Not Found}
+   * are not, and neither are requests the client chose not to make.
+   *
+   * @param error the error the request failed with
+   * @return true if the error is transient
+   */
+  static boolean isTransient(@NonNull Throwable error) {
+    if (error instanceof RateLimitExceededException || error instanceof CircuitOpenException) {
+      return false;
+    }
+    if (error instanceof HttpException) {
+      int code = ((HttpException) error).code();
+      return code >= HTTP_SERVER_ERROR || code == HTTP_TOO_MANY_REQUESTS;
+    }
+    return error instanceof IOException;
+  }
+}
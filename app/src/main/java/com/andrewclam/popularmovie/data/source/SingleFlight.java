@@ -0,0 +1,74 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Flowable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Coalesces identical concurrent requests, so that while a request is in flight every other
+ * subscriber asking for the same key shares its upstream {@link Flowable} and receives the same
+ * result, instead of starting another local and remote load.
+ * <p>
+ * A key is released as soon as its request terminates or every subscriber cancels, the next
+ * request for it starts a new load. This class is safe to use from multiple threads.
+ *
+ * @param <T> type of the request result
+ */
+final class SingleFlight<T> {
+
+  @NonNull
+  private final ConcurrentMap<String, Flowable<T>> mInFlight = new ConcurrentHashMap<>();
+
+  @NonNull
+  private final AtomicLong mSavedRequestCount = new AtomicLong();
+
+  /**
+   * Gets a {@link Flowable} that joins the request in flight for the key, or starts a new one
+   * on subscription if there is none.
+   *
+   * @param key     identifies requests that return the same result
+   * @param request creates the upstream of a new request, called only if none is in flight
+   * @return the shared request
+   */
+  @NonNull
+  Flowable<T> share(@NonNull String key, @NonNull Callable<Flowable<T>> request) {
+    checkNotNull(key);
+    checkNotNull(request);
+    return Flowable.defer(() -> {
+      Flowable<T> inFlight = mInFlight.get(key);
+      if (inFlight != null) {
+        mSavedRequestCount.incrementAndGet();
+        return inFlight;
+      }
+
+      @SuppressWarnings("unchecked")
+      final Flowable<T>[] shared = new Flowable[1];
+      shared[0] = request.call()
+          .doFinally(() -> mInFlight.remove(key, shared[0]))
+          .replay(1)
+          .refCount();
+
+      inFlight = mInFlight.putIfAbsent(key, shared[0]);
+      if (inFlight != null) {
+        // lost the race to another subscriber, join its request instead
+        mSavedRequestCount.incrementAndGet();
+        return inFlight;
+      }
+      return shared[0];
+    });
+  }
+
+  /**
+   * @return the number of requests that joined one already in flight instead of starting a load
+   */
+  long getSavedRequestCount() {
+    return mSavedRequestCount.get();
+  }
+}
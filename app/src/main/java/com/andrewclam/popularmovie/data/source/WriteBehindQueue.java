@@ -0,0 +1,239 @@
+package com.andrewclam.popularmovie.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.andrewclam.popularmovie.data.DataSource;
+import com.andrewclam.popularmovie.data.model.Entity;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Queue of pending mutations that are written behind to the local and remote data sources in
+ * batches, instead of one provider call per mutation.
+ * <p>
+ * Mutations are coalesced by uid, only the last mutation of an item is written. Pending
+ * mutations are flushed after a delay from the first one queued, as soon as the number of pending
+ * items reaches a threshold, or when {@link #flush()} is called. A failed batch is queued again,
+ * unless newer mutations of the same items were queued in the meantime, and retried after a
+ * delay that doubles with each consecutive failure.
+ * <p>
+ * This class is safe to use from multiple threads.
+ *
+ * @param <E> type of {@link Entity} the mutations are for
+ */
+final class WriteBehindQueue<E extends Entity> {
+
+  /**
+   * Failed flushes are retried after the flush delay doubled once per consecutive failure, up to
+   * this many times doubled
+   */
+  private static final int MAX_RETRY_BACKOFF_SHIFT = 6;
+
+  @NonNull
+  private final DataSource<E> mLocalDataSource;
+
+  @NonNull
+  private final DataSource<E> mRemoteDataSource;
+
+  @NonNull
+  private final Scheduler mScheduler;
+
+  private final long mFlushDelayMillis;
+
+  private final int mMaxPendingWrites;
+
+  /**
+   * Pending mutations in the order they were first queued, keyed by item uid. A null value marks
+   * the item for removal. Guarded by itself.
+   */
+  @NonNull
+  private final Map<String, E> mPending = new LinkedHashMap<>();
+
+  /**
+   * Delayed flush scheduled for the current pending mutations, guarded by {@link #mPending}
+   */
+  @Nullable
+  private Disposable mScheduledFlush;
+
+  /**
+   * Number of flushes that failed in a row, guarded by {@link #mPending}
+   */
+  private int mFailedFlushes;
+
+  WriteBehindQueue(@NonNull DataSource<E> localDataSource,
+                   @NonNull DataSource<E> remoteDataSource,
+                   @NonNull Scheduler scheduler,
+                   long flushDelayMillis,
+                   int maxPendingWrites) {
+    checkArgument(flushDelayMillis > 0, "flushDelayMillis must be positive");
+    checkArgument(maxPendingWrites > 0, "maxPendingWrites must be positive");
+    mLocalDataSource = checkNotNull(localDataSource);
+    mRemoteDataSource = checkNotNull(remoteDataSource);
+    mScheduler = checkNotNull(scheduler);
+    mFlushDelayMillis = flushDelayMillis;
+    mMaxPendingWrites = maxPendingWrites;
+  }
+
+  /**
+   * Queues an insert or update of the item, replaces any pending mutation of the same item
+   *
+   * @param item the item to save
+   */
+  void save(@NonNull E item) {
+    enqueue(item.getUid(), item);
+  }
+
+  /**
+   * Queues a removal of the item, replaces any pending mutation of the same item
+   *
+   * @param uid uid of the item to remove
+   */
+  void remove(@NonNull String uid) {
+    enqueue(uid, null);
+  }
+
+  /**
+   * Drops all pending mutations, for example when all items are removed anyway
+   */
+  void clear() {
+    synchronized (mPending) {
+      mPending.clear();
+      cancelScheduledFlush();
+    }
+  }
+
+  /**
+   * @return the number of items with a pending mutation
+   */
+  @VisibleForTesting
+  int size() {
+    synchronized (mPending) {
+      return mPending.size();
+    }
+  }
+
+  private void enqueue(@NonNull String uid, @Nullable E item) {
+    checkNotNull(uid);
+    boolean flushNow;
+    synchronized (mPending) {
+      // re-inserting moves the item to the end, so it is written after the ones queued before it
+      mPending.remove(uid);
+      mPending.put(uid, item);
+      flushNow = mPending.size() >= mMaxPendingWrites;
+      if (!flushNow && mScheduledFlush == null) {
+        mScheduledFlush = mScheduler.scheduleDirect(
+            () -> flush().subscribe(), mFlushDelayMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (flushNow) {
+      flush().subscribeOn(mScheduler).subscribe();
+    }
+  }
+
+  /**
+   * Writes all pending mutations, to the local data source as one batch of saves and removals,
+   * and then to the remote data source
+   *
+   * @return a completable that completes when the pending mutations were written, never errors,
+   * failed mutations are queued again for the next flush
+   */
+  @NonNull
+  Completable flush() {
+    return Completable.defer(() -> {
+      final Map<String, E> batch;
+      synchronized (mPending) {
+        cancelScheduledFlush();
+        if (mPending.isEmpty()) {
+          return Completable.complete();
+        }
+        batch = new LinkedHashMap<>(mPending);
+        mPending.clear();
+      }
+
+      List<E> saves = new ArrayList<>();
+      List<String> removals = new ArrayList<>();
+      for (Map.Entry<String, E> mutation : batch.entrySet()) {
+        if (mutation.getValue() != null) {
+          saves.add(mutation.getValue());
+        } else {
+          removals.add(mutation.getKey());
+        }
+      }
+
+      return writeLocal(saves, removals)
+          .andThen(write(mRemoteDataSource, saves, removals))
+          .doOnComplete(this::resetFailedFlushes)
+          .doOnError(error -> requeue(batch))
+          .onErrorComplete();
+    });
+  }
+
+  /**
+   * Writes the batch to the local data source, as one transaction if it supports batches
+   */
+  @SuppressWarnings("unchecked")
+  @NonNull
+  private Completable writeLocal(@NonNull List<E> saves, @NonNull List<String> removals) {
+    if (mLocalDataSource instanceof DataSourceLocal) {
+      return ((DataSourceLocal<E>) mLocalDataSource).applyBatch(saves, removals);
+    }
+    return write(mLocalDataSource, saves, removals);
+  }
+
+  @NonNull
+  private static <E extends Entity> Completable write(@NonNull DataSource<E> dataSource,
+                                                      @NonNull List<E> saves,
+                                                      @NonNull List<String> removals) {
+    Completable writeSaves = saves.isEmpty() ? Completable.complete() : dataSource.addAll(saves);
+    List<Completable> writeRemovals = new ArrayList<>();
+    for (String uid : removals) {
+      writeRemovals.add(dataSource.remove(uid));
+    }
+    return writeSaves.andThen(Completable.concat(writeRemovals));
+  }
+
+  /**
+   * Queues the mutations of a failed batch again, and schedules a retry with exponential backoff,
+   * so they are written even if nothing else is queued
+   */
+  private void requeue(@NonNull Map<String, E> batch) {
+    synchronized (mPending) {
+      for (Map.Entry<String, E> mutation : batch.entrySet()) {
+        if (!mPending.containsKey(mutation.getKey())) {
+          mPending.put(mutation.getKey(), mutation.getValue());
+        }
+      }
+      int backoffShift = Math.min(mFailedFlushes, MAX_RETRY_BACKOFF_SHIFT);
+      mFailedFlushes++;
+      cancelScheduledFlush();
+      mScheduledFlush = mScheduler.scheduleDirect(() -> flush().subscribe(),
+          mFlushDelayMillis << backoffShift, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void resetFailedFlushes() {
+    synchronized (mPending) {
+      mFailedFlushes = 0;
+    }
+  }
+
+  private void cancelScheduledFlush() {
+    if (mScheduledFlush != null) {
+      mScheduledFlush.dispose();
+      mScheduledFlush = null;
+    }
+  }
+}
@@ -4,8 +4,15 @@ import android.app.Application;
 import android.content.Context;
 import android.support.annotation.NonNull;
 
+import com.squareup.picasso.OkHttp3Downloader;
+import com.squareup.picasso.Picasso;
+
+import javax.inject.Singleton;
+
 import dagger.Binds;
 import dagger.Module;
+import dagger.Provides;
+import okhttp3.OkHttpClient;
 
 /**
  * This is a Dagger module. We use this to bind our Application class as a Context in the AppComponent
@@ -21,5 +28,15 @@ public abstract class ApplicationModule {
     @NonNull
     @Binds
     abstract Context bindContext(Application application);
+
+    // image loading shares the api's http client, its disk cache, connection pool and dispatcher
+    @NonNull
+    @Provides
+    @Singleton
+    static Picasso providePicasso(@NonNull Context context, @NonNull OkHttpClient okHttpClient) {
+        return new Picasso.Builder(context)
+            .downloader(new OkHttp3Downloader(okHttpClient))
+            .build();
+    }
 }
 
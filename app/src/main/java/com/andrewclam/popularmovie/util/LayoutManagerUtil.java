@@ -34,4 +34,14 @@ public final class LayoutManagerUtil {
     // Divide the currentWidth by the thumbnail dp width, to get an int number of movie entry that would fit;
     return currentWidth / THUMBNAIL_WIDTH_DP;
   }
+
+  /**
+   * Gets the width of one span of the grid sized by {@link #getSpanSize(Context)}
+   * @param context context to get the screen width and density from
+   * @return the span width in pixels, at the screen's density
+   */
+  public static int getSpanWidthPx(Context context) {
+    int spanSize = Math.max(getSpanSize(context), 1);
+    return context.getResources().getDisplayMetrics().widthPixels / spanSize;
+  }
 }
@@ -20,10 +20,11 @@ import android.util.Log;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Scanner;
 
 /**
  * Created by Andrew Chi Heng Lam on 8/19/2017.
@@ -311,31 +312,40 @@ public class NetworkUtil {
   }
 
   /**
-   * This method returns the entire result from the HTTP response.
-   * Source: Udacity Sunshine App
+   * Parses the HTTP response straight from the connection's input stream, decoded as UTF-8, so
+   * the body is never read into memory as a whole.
    *
-   * @param url The URL to fetch the HTTP response from.
-   * @return The contents of the HTTP response.
-   * @throws IOException Related to network and stream reading
+   * @param url    The URL to fetch the HTTP response from.
+   * @param parser parses the contents of the HTTP response
+   * @param <T>    type of the parsed response
+   * @return The parsed contents of the HTTP response.
+   * @throws IOException Related to network, stream reading and parsing
    */
-  public static String getResponseFromHttpUrl(URL url) throws IOException {
+  public static <T> T getResponseFromHttpUrl(@NonNull URL url, @NonNull ResponseParser<T> parser)
+      throws IOException {
     HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
     try {
       InputStream in = urlConnection.getInputStream();
-      Scanner scanner = new Scanner(in);
-      scanner.useDelimiter("\\A");
-
-      boolean hasInput = scanner.hasNext();
-      if (hasInput) {
-        return scanner.next();
-      } else {
-        return null;
+      Reader reader = new InputStreamReader(in, "UTF-8");
+      try {
+        return parser.parse(reader);
+      } finally {
+        reader.close();
       }
     } finally {
       urlConnection.disconnect();
     }
   }
 
+  /**
+   * Parses the contents of a HTTP response as they are read from the connection.
+   *
+   * @param <T> type of the parsed response
+   */
+  public interface ResponseParser<T> {
+    T parse(@NonNull Reader response) throws IOException;
+  }
+
   /**
    * detectInternetConnection() uses the system service to see if the device is connected
    * to any network with internet access
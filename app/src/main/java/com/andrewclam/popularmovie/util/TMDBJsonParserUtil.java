@@ -10,17 +10,17 @@
 
 package com.andrewclam.popularmovie.util;
 
-import android.util.Log;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.andrewclam.popularmovie.data.model.Movie;
 import com.andrewclam.popularmovie.data.model.MovieReview;
 import com.andrewclam.popularmovie.data.model.MovieVideo;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.net.URL;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 
 /**
@@ -28,104 +28,62 @@ import java.util.ArrayList;
  * <p>
  * TMDBJsonParserUtil contain methods to parse the JSON response into individual readable fields,
  * and stores each object in a model class (eg. movie)
+ * <p>
+ * The response is parsed as a stream of tokens straight from the response body, one result at a
+ * time, so neither the body as a whole nor a tree of json objects is ever held in memory.
  */
 
 public final class TMDBJsonParserUtil {
 
-  // Log Tag
-  private static final String TAG = TMDBJsonParserUtil.class.getSimpleName();
+  /* Movie Information. Each movie's info is an element of the "result" array */
+  private static final String TMDB_RESULT = "results";
+
+  // Id - Unique id that identifies the movie, video or review on TMDB
+  private static final String TMDB_ID = "id";
+
+  /* Movie fields */
+  private static final String TMDB_TITLE = "title";
+  private static final String TMDB_RELEASE_DATE = "release_date";
+  private static final String TMDB_POSTER_PATH = "poster_path";
+  private static final String TMDB_VOTE_AVERAGE = "vote_average";
+  private static final String TMDB_VOTE_COUNT = "vote_count";
+  private static final String TMDB_POPULARITY = "popularity";
+  private static final String TMDB_OVERVIEW = "overview";
+
+  /* Video fields */
+  private static final String TMDB_VIDEO_KEY = "key";
+  private static final String TMDB_VIDEO_NAME = "name";
+  private static final String TMDB_VIDEO_PROVIDER_SITE = "site";
+  private static final String TMDB_VIDEO_SIZE = "size";
+  private static final String TMDB_VIDEO_TYPE = "type";
+
+  /* Review fields */
+  private static final String TMDB_REVIEW_AUTHOR = "author";
+  private static final String TMDB_REVIEW_CONTENT = "content";
+  private static final String TMDB_REVIEW_URL = "url";
+
+  /**
+   * Reads a single result object of the response into its model class
+   *
+   * @param <E> type of the model class
+   */
+  private interface EntryReader<E> {
+    E read(@NonNull JsonReader reader) throws IOException;
+  }
+
+  private TMDBJsonParserUtil() {
+  }
 
   /**
    * This method parses JSON from a web response and returns an ArrayList of Movie objects
    *
    * @param jsonResponse JSON response from server
    * @return an ArrayList of Movie Listing objects, each containing the movie general information data
-   * @throws JSONException If JSON data cannot be properly parsed
+   * @throws IOException If JSON data cannot be read or properly parsed
    */
-
-  public static ArrayList<Movie> getMovieListingFromJson(String jsonResponse) throws JSONException {
-    // Test if the response is null, return null if it is
-    if (jsonResponse == null) {
-      Log.w(TAG, "Nothing to parse because jsonResponse is undefined");
-      return null;
-    }
-
-    /* Movie Information. Each movie's info is an element of the "result" array */
-    final String TMDB_RESULT = "results";
-
-    /* Start parsing the JSON into objects by defining the fields that we want to fetch from*/
-
-    // Id - Unique id that identifies the movie on the database, might be of use for local SQLite
-    final String TMDB_ID = "id";
-
-    // Title
-    final String TMDB_TITLE = "title";
-
-    // Release date
-    final String TMDB_RELEASE_DATE = "release_date";
-
-    // Poster Path - The path where to look for the thumbnail image
-    final String TMDB_POSTER_PATH = "poster_path";
-
-    // Vote Average - The Average Ratings given by users
-    final String TMDB_VOTE_AVERAGE = "vote_average";
-
-    // Vote Count - The number of voters
-    final String TMDB_VOTE_COUNT = "vote_count";
-
-    // Popularity - the popularity index given the the TMDB
-    final String TMDB_POPULARITY = "popularity";
-
-    // Overview - A short description of the movie
-    final String TMDB_OVERVIEW = "overview";
-
-    // Initialize an arrayList to store movie objects. This data will back the recycler view adapter.
-    ArrayList<Movie> entries = new ArrayList<>();
-
-    // Create a new JSON object out of the jsonResponse
-    JSONObject resultJSON = new JSONObject(jsonResponse);
-
-    // get the JSON array from the root json object
-    JSONArray resultArray = resultJSON.getJSONArray(TMDB_RESULT);
-
-    // Loop through each element result in the resultArray
-    for (int i = 0; i < resultArray.length(); i++) {
-      /* Get each element of the resultArray as a result element*/
-      JSONObject result = resultArray.getJSONObject(i);
-
-      if (result != null) {
-        /* Create an instance of the model class to store the retrieved elements */
-        Movie entry = new Movie();
-
-        /* Retrieve each element from the result JSONObject */
-        long id = result.getLong(TMDB_ID);
-        String title = result.getString(TMDB_TITLE);
-        String releaseDate = result.getString(TMDB_RELEASE_DATE);
-        String posterPath = result.getString(TMDB_POSTER_PATH).replace("/", "");
-        double voteAverage = result.getDouble(TMDB_VOTE_AVERAGE);
-        long voteCount = result.getInt(TMDB_VOTE_COUNT);
-        double popularity = result.getDouble(TMDB_POPULARITY);
-        String overView = result.getString(TMDB_OVERVIEW);
-
-        /* Store each element into the data model class */
-        entry.setMovieId(id);
-        entry.setTitle(title);
-        entry.setReleaseDate(releaseDate);
-        entry.setPosterPath(posterPath);
-        entry.setVoteAverage(voteAverage);
-        entry.setVoteCount(voteCount);
-        entry.setPopularity(popularity);
-        entry.setOverview(overView);
-
-        /* Add the entry object to the list */
-        entries.add(entry);
-      } else {
-        Log.w(TAG, "Error retrieving the json object at index " + i +
-            ", skipping creating movie entry");
-      }
-    }
-
-    return entries;
+  public static ArrayList<Movie> getMovieListingFromJson(@NonNull Reader jsonResponse)
+      throws IOException {
+    return getResultsFromJson(jsonResponse, TMDBJsonParserUtil::readMovie);
   }
 
   /**
@@ -133,196 +91,188 @@ public final class TMDBJsonParserUtil {
    *
    * @param jsonResponse JSON response from server
    * @return an ArrayList of Movie's video resources objects, each containing a movie's related video's information
-   * @throws JSONException If JSON data cannot be properly parsed
+   * @throws IOException If JSON data cannot be read or properly parsed
    */
-  public static ArrayList<MovieVideo> getRelatedVideoFromJson(String jsonResponse) throws JSONException {
-    // Test if the response is null, return null if it is
-    if (jsonResponse == null) {
-      Log.w(TAG, "Nothing to parse because jsonResponse is undefined");
-      return null;
-    }
-
-    /* Movie Information. Each movie's info is an element of the "result" array */
-    final String TMDB_RESULT = "results";
-
-    /* Start parsing the JSON into objects by defining the fields that we want to fetch from*/
-
-    // Id - Unique id that identifies the video resource on TMDB
-    final String TMDB_VIDEO_ID = "id";
-
-    // Video Key, identifies the video at the video provider
-    final String TMDB_VIDEO_KEY = "key";
-
-    // Video name
-    final String TMDB_VIDEO_NAME = "name";
-
-    // Provider Site - The site where to look for the video with the key
-    final String TMDB_VIDEO_PROVIDER_SITE = "site";
-
-    // Size - the size of the video asset
-    final String TMDB_VIDEO_SIZE = "size";
-
-    // Type - the video resource type as classified by TMDB
-    final String TMDB_VIDEO_TYPE = "type";
-
-    // Initialize an arrayList to store associated video info objects.
-    // This data will back the recycler view adapter.
-    ArrayList<MovieVideo> entries = new ArrayList<>();
-
-    // Create a new JSON object out of the jsonResponse
-    JSONObject resultJSON = new JSONObject(jsonResponse);
-
-    // get the JSON array from the root json object
-    JSONArray resultArray = resultJSON.getJSONArray(TMDB_RESULT);
-
-    // Loop through each element result in the resultArray
-    for (int i = 0; i < resultArray.length(); i++) {
-      /* Get each element of the resultArray as a result element*/
-      JSONObject result = resultArray.getJSONObject(i);
-
-      if (result != null) {
-        /* Create an instance of the model class to store the retrieved elements */
-        MovieVideo entry = new MovieVideo();
-
-        /* Retrieve each element from the result JSONObject */
-        String movieId = result.getString(TMDB_VIDEO_ID);
-        String providerKey = result.getString(TMDB_VIDEO_KEY);
-        String name = result.getString(TMDB_VIDEO_NAME);
-        String providerSite = result.getString(TMDB_VIDEO_PROVIDER_SITE);
-        int size = result.getInt(TMDB_VIDEO_SIZE);
-        String type = result.getString(TMDB_VIDEO_TYPE);
-
-        /* Store each element into the data model class */
-        entry.setMovieVideoId(movieId);
-        entry.setKey(providerKey);
-        entry.setName(name);
-        entry.setSite(providerSite);
-        entry.setSize(size);
-        entry.setType(type);
-
-        /************************
-         * VIDEO URL GENERATION *
-         ************************/
-        // Use networkUtility to build the provider video url and set the url in the
-        // entry object
-        URL videoURL = NetworkUtil.buildProviderVideoUrl(providerKey);
-//        entry.setVideoUrl(videoURL);
-
-        /**********************************
-         * VIDEO THUMBNAIL URL GENERATION *
-         **********************************/
-        // Use networkUtility to build the provider video's thumbnail url and set the url in the
-        // entry object
-        URL thumbnailUrl = NetworkUtil.buildProviderVideoThumbnailUrl(providerKey);
-//        entry.setThumbnailUrl(thumbnailUrl);
-
-        /* Add the entry object to the list */
-        entries.add(entry);
-      } else {
-        Log.w(TAG, "Error retrieving the json object at index " + i +
-            ", skipping creating movie video info entry");
-      }
-    }
-
-    // Return the successfully retrieved and parsed entries
-    return entries;
+  public static ArrayList<MovieVideo> getRelatedVideoFromJson(@NonNull Reader jsonResponse)
+      throws IOException {
+    return getResultsFromJson(jsonResponse, TMDBJsonParserUtil::readMovieVideo);
   }
 
-
   /**
    * This method parses JSON from a web response and returns an ArrayList of MovieReview objects
    *
    * @param jsonResponse JSON response from server
    * @return an ArrayList of Movie's user review objects, each containing a movie's user review
    * on TMDB
-   * @throws JSONException If JSON data cannot be properly parsed
+   * @throws IOException If JSON data cannot be read or properly parsed
    */
-  public static ArrayList<MovieReview> getUserReviewsFromJson(String jsonResponse) throws JSONException {
-    // Test if the response is null, return null if it is
-    if (jsonResponse == null) {
-      Log.w(TAG, "Nothing to parse because jsonResponse is undefined");
-      return null;
-    }
-
-    /* Movie Information. Each movie's info is an element of the "result" array */
-    final String TMDB_RESULT = "results";
-
-    /* Start parsing the JSON into objects by defining the fields that we want to fetch from*/
-
-    // Id - Unique id that identifies the movie on the database, might be of use for local SQLite
-    final String TMDB_REVIEW_ID = "id";
-
-    // Author
-    final String TMDB_REVIEW_AUTHOR = "author";
-
-    // Content - review's full text content
-    final String TMDB_REVIEW_CONTENT = "content";
-
-    // Review Url - review provider's web url
-    final String TMDB_REVIEW_URL = "url";
-
-    // Initialize an arrayList to store movie objects. This data will back the recycler view adapter.
-    ArrayList<MovieReview> entries = new ArrayList<>();
-
-    // Create a new JSON object out of the jsonResponse
-    JSONObject resultJSON = new JSONObject(jsonResponse);
-
-    // get the JSON array from the root json object
-    JSONArray resultArray = resultJSON.getJSONArray(TMDB_RESULT);
-
-    // Loop through each element result in the resultArray
-    for (int i = 0; i < resultArray.length(); i++) {
-      /* Get each element of the resultArray as a result element*/
-      JSONObject result = resultArray.getJSONObject(i);
-
-      if (result != null) {
-        /* Create an instance of the model class to store the retrieved elements */
-        MovieReview entry = new MovieReview();
+  public static ArrayList<MovieReview> getUserReviewsFromJson(@NonNull Reader jsonResponse)
+      throws IOException {
+    return getResultsFromJson(jsonResponse, TMDBJsonParserUtil::readMovieReview);
+  }
 
-        /* Retrieve each element from the result JSONObject */
-        String id = result.getString(TMDB_REVIEW_ID);
-        String author = result.getString(TMDB_REVIEW_AUTHOR);
-        String content = result.getString(TMDB_REVIEW_CONTENT);
-        String urlStr = result.getString(TMDB_REVIEW_URL);
+  /**
+   * Parses the "results" array of a response, skipping every other field of the root object
+   *
+   * @param jsonResponse JSON response from server
+   * @param entryReader  reads each element of the "results" array
+   * @param <E>          type of the model class
+   * @return an ArrayList of the parsed results, empty if the response has none
+   * @throws IOException If JSON data cannot be read or properly parsed
+   */
+  private static <E> ArrayList<E> getResultsFromJson(@NonNull Reader jsonResponse,
+                                                     @NonNull EntryReader<E> entryReader)
+      throws IOException {
+    ArrayList<E> entries = new ArrayList<>();
+    JsonReader reader = new JsonReader(jsonResponse);
+    try {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if (!TMDB_RESULT.equals(reader.nextName())) {
+          reader.skipValue();
+          continue;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+          entries.add(entryReader.read(reader));
+        }
+        reader.endArray();
+      }
+      reader.endObject();
+    } catch (IllegalStateException | NumberFormatException e) {
+      // unexpected token, e.g. an array where an object should be
+      throw new IOException("Malformed TMDB response", e);
+    }
+    return entries;
+  }
 
-        /**********************
-         * Content Sanitation *
-         **********************/
-        // remove blanks and empty lines
-        content = content.replaceAll("(?m)^[ \t]*\r?\n", "");
-        content = content.trim();
+  private static Movie readMovie(@NonNull JsonReader reader) throws IOException {
+    Movie entry = new Movie();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case TMDB_ID:
+          entry.setMovieId(reader.nextLong());
+          break;
+        case TMDB_TITLE:
+          entry.setTitle(nextStringOrNull(reader));
+          break;
+        case TMDB_RELEASE_DATE:
+          entry.setReleaseDate(nextStringOrNull(reader));
+          break;
+        case TMDB_POSTER_PATH:
+          String posterPath = nextStringOrNull(reader);
+          entry.setPosterPath(posterPath == null ? null : posterPath.replace("/", ""));
+          break;
+        case TMDB_VOTE_AVERAGE:
+          entry.setVoteAverage(nextDoubleOrNull(reader));
+          break;
+        case TMDB_VOTE_COUNT:
+          entry.setVoteCount(nextLongOrNull(reader));
+          break;
+        case TMDB_POPULARITY:
+          entry.setPopularity(nextDoubleOrNull(reader));
+          break;
+        case TMDB_OVERVIEW:
+          entry.setOverview(nextStringOrNull(reader));
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    return entry;
+  }
 
-        /* Store each element into the data model class */
-        entry.setUserReviewId(id);
-        entry.setAuthor(author);
-        entry.setContent(content);
-        entry.setUrl(urlStr);
+  private static MovieVideo readMovieVideo(@NonNull JsonReader reader) throws IOException {
+    MovieVideo entry = new MovieVideo();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case TMDB_ID:
+          entry.setMovieVideoId(nextStringOrNull(reader));
+          break;
+        case TMDB_VIDEO_KEY:
+          entry.setKey(nextStringOrNull(reader));
+          break;
+        case TMDB_VIDEO_NAME:
+          entry.setName(nextStringOrNull(reader));
+          break;
+        case TMDB_VIDEO_PROVIDER_SITE:
+          entry.setSite(nextStringOrNull(reader));
+          break;
+        case TMDB_VIDEO_SIZE:
+          Long size = nextLongOrNull(reader);
+          entry.setSize(size == null ? 0 : size.intValue());
+          break;
+        case TMDB_VIDEO_TYPE:
+          entry.setType(nextStringOrNull(reader));
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    return entry;
+  }
 
-        /********************
-         * CREATE A SNIPPET *
-         ********************/
-        // only create snippet of the review if it more than a certain length
-        // 140 character seems like a good number
-        if (content.length() > 100) {
-          // create shorten version of the full review (snippet) and store it
-          StringBuilder contentSnippet = new StringBuilder(content);
-          contentSnippet = contentSnippet.delete(100, contentSnippet.length()).append(" ... ");
-//          entry.setContentSnippet(contentSnippet.toString());
+  private static MovieReview readMovieReview(@NonNull JsonReader reader) throws IOException {
+    MovieReview entry = new MovieReview();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case TMDB_ID:
+          entry.setUserReviewId(nextStringOrNull(reader));
+          break;
+        case TMDB_REVIEW_AUTHOR:
+          entry.setAuthor(nextStringOrNull(reader));
+          break;
+        case TMDB_REVIEW_CONTENT:
+          String content = nextStringOrNull(reader);
+          if (content != null) {
+            // remove blanks and empty lines
+            content = content.replaceAll("(?m)^[ \t]*\r?\n", "").trim();
+          }
+          entry.setContent(content);
+          break;
+        case TMDB_REVIEW_URL:
+          entry.setUrl(nextStringOrNull(reader));
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    return entry;
+  }
 
-        } else {
-          // Use full content for the snippet
-//          entry.setContentSnippet(content);
-        }
+  @Nullable
+  private static String nextStringOrNull(@NonNull JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    return reader.nextString();
+  }
 
-        /* Add the entry object to the list */
-        entries.add(entry);
-      } else {
-        Log.w(TAG, "Error retrieving the json object at index " + i +
-            ", skipping entry");
-      }
+  @Nullable
+  private static Double nextDoubleOrNull(@NonNull JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
     }
+    return reader.nextDouble();
+  }
 
-    // Return the successfully retrieved and parsed entries
-    return entries;
+  @Nullable
+  private static Long nextLongOrNull(@NonNull JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    return reader.nextLong();
   }
 }
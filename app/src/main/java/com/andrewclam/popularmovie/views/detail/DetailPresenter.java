@@ -83,7 +83,8 @@ class DetailPresenter implements DetailContract.Presenter {
 
     mView.setLoadingIndicator(true);
 
-    mRepository.refresh();
+    // The movie is served from the repository's cache while fresh, refresh() is left to
+    // explicit user actions so opening a movie doesn't drop the grid's cached pages
 
     Log.e(LOG_TAG,"Start loading movie with id: " + mMovieId);
 
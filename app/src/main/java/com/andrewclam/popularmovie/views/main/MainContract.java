@@ -1,6 +1,8 @@
 package com.andrewclam.popularmovie.views.main;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
 
 import com.andrewclam.popularmovie.views.BasePresenter;
 import com.andrewclam.popularmovie.views.BaseView;
@@ -27,8 +29,10 @@ interface MainContract {
     /**
      * Allow the View to handle adapter notification
      * when the underlying data set is changed
+     * @param diffResult the granular changes from the previous data set, computed off the
+     *                   main thread, to dispatch to the adapter
      */
-    void onDataSetChanged();
+    void onDataSetChanged(@NonNull DiffUtil.DiffResult diffResult);
 
     /**
      * Allow the View to handle launching item detail ui screen(s)
@@ -56,6 +60,19 @@ interface MainContract {
      */
     void loadItems();
 
+    /**
+     * Allow client to load the next page of {@link Entity}s when the user nears the end of the
+     * loaded ones, ignored while a page is loading or after the last page
+     */
+    void loadNextPage();
+
+    /**
+     * Allow the View to set the width of a grid cell, so that posters are loaded in the
+     * smallest size that covers it
+     * @param widthPx width of a grid cell, in pixels
+     */
+    void setPosterWidth(int widthPx);
+
     /**
      * Enum that defines the filter types
      */
@@ -157,6 +174,22 @@ interface MainContract {
      * @return the current count of items
      */
     int onAdapterRequestItemCount();
+
+    /**
+     * Method called when the adapter requests the stable id of an item
+     * @param position the corresponding absolute position of the data within the list.
+     * @return the id of the item, unique and unchanged across data set changes
+     */
+    long onAdapterRequestItemId(int position);
+
+    /**
+     * Method called when the adapter requests the poster url of an item, to prefetch it
+     * @param position the corresponding absolute position of the data within the list.
+     * @return the url of the item's poster, or null if the position is out of range or the
+     * item has no poster
+     */
+    @Nullable
+    String onAdapterRequestPosterUrl(int position);
   }
 
 }
@@ -6,6 +6,7 @@ import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
@@ -44,6 +45,12 @@ public class MainFragment extends DaggerFragment implements MainContract.View {
   @Inject
   MoviesRvAdapter mRvAdapter;
 
+  @Inject
+  MainContract.MovieItemPresenter<MainContract.ItemViewHolder> mItemPresenter;
+
+  @Nullable
+  private PosterPrefetcher mPosterPrefetcher;
+
   @Nullable
   private RecyclerView mItemsRv;
 
@@ -82,6 +89,13 @@ public class MainFragment extends DaggerFragment implements MainContract.View {
     mLayoutManager = new GridLayoutManager(getContext(), spanSize);
     mItemsRv.setLayoutManager(mLayoutManager);
     mItemsRv.setAdapter(mRvAdapter);
+    // Load posters no larger than the grid cells they are shown in
+    mPresenter.setPosterWidth(LayoutManagerUtil.getSpanWidthPx(getContext()));
+    // Load the next page ahead of the user, the faster the scroll the further ahead
+    mItemsRv.addOnScrollListener(new PrefetchScrollListener(spanSize, mPresenter::loadNextPage));
+    // Warm the image cache with the posters of the next rows in the scroll direction
+    mPosterPrefetcher = new PosterPrefetcher(spanSize, mItemPresenter);
+    mItemsRv.addOnScrollListener(mPosterPrefetcher);
 
     // Allow fragment to participate in creating menu options
     setHasOptionsMenu(true);
@@ -89,6 +103,15 @@ public class MainFragment extends DaggerFragment implements MainContract.View {
     super.onViewCreated(view, savedInstanceState);
   }
 
+  @Override
+  public void onDestroyView() {
+    if (mPosterPrefetcher != null) {
+      mPosterPrefetcher.cancelAll();
+      mPosterPrefetcher = null;
+    }
+    super.onDestroyView();
+  }
+
   @Override
   public void onSaveInstanceState(@NonNull Bundle outState) {
     // Save Presenter states
@@ -160,9 +183,9 @@ public class MainFragment extends DaggerFragment implements MainContract.View {
   }
 
   @Override
-  public void onDataSetChanged() {
+  public void onDataSetChanged(@NonNull DiffUtil.DiffResult diffResult) {
     if (mRvAdapter != null) {
-      mRvAdapter.notifyDataSetChanged();
+      diffResult.dispatchUpdatesTo(mRvAdapter);
     }
   }
 
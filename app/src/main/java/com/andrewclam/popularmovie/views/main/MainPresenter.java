@@ -2,21 +2,31 @@ package com.andrewclam.popularmovie.views.main;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
 import android.util.Log;
 
 import com.andrewclam.popularmovie.data.DataSource;
 import com.andrewclam.popularmovie.data.model.Movie;
+import com.andrewclam.popularmovie.data.model.Page;
+import com.andrewclam.popularmovie.data.source.RateLimitExceededException;
 import com.andrewclam.popularmovie.data.source.Repo;
 import com.andrewclam.popularmovie.util.schedulers.BaseSchedulerProvider;
 import com.andrewclam.popularmovie.views.detail.DetailActivity;
+import com.google.common.base.Strings;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import io.reactivex.Flowable;
+import io.reactivex.Single;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
 
@@ -29,6 +39,12 @@ import static com.andrewclam.popularmovie.data.modelapi.MovieImageContract.getIm
 @Singleton
 class MainPresenter implements MainContract.Presenter, MainContract.MovieItemPresenter {
 
+  /**
+   * Discover query options of the movie grid, all its pages are loaded with the same options so
+   * that they share the api's default sort order
+   */
+  private static final Map<String, String> DISCOVER_OPTIONS = Collections.emptyMap();
+
   @NonNull
   private final DataSource<Movie> mMovieRepository;
 
@@ -44,6 +60,37 @@ class MainPresenter implements MainContract.Presenter, MainContract.MovieItemPre
   @NonNull
   private List<Movie> mMovies;
 
+  /**
+   * Movies of the first page, loaded by {@link #loadItems()}
+   */
+  @NonNull
+  private List<Movie> mFirstPageMovies;
+
+  /**
+   * Movies of the following pages by page number, loaded by {@link #loadNextPage()}, a page
+   * revalidated after it was shown replaces its stale movies
+   */
+  @NonNull
+  private final SortedMap<Integer, List<Movie>> mNextPagesMovies;
+
+  private int mNextPage = Page.FIRST_PAGE + 1;
+
+  private boolean mHasNextPage = true;
+
+  private boolean mIsLoadingNextPage = false;
+
+  /**
+   * Width of a grid cell in pixels, or 0 until the View sets it
+   */
+  private int mPosterWidthPx = 0;
+
+  /**
+   * Diff of the shown {@link #mMovies} to the latest movies being computed, a newer change
+   * replaces it
+   */
+  @Nullable
+  private Disposable mPendingDiff;
+
   @Inject
   MainPresenter(@NonNull @Repo DataSource<Movie> movieRepository,
                 @NonNull BaseSchedulerProvider schedulerProvider) {
@@ -51,6 +98,8 @@ class MainPresenter implements MainContract.Presenter, MainContract.MovieItemPre
     mSchedulerProvider = schedulerProvider;
     mCompositeDisposable = new CompositeDisposable();
     mMovies = new ArrayList<>(0);
+    mFirstPageMovies = new ArrayList<>(0);
+    mNextPagesMovies = new TreeMap<>();
   }
 
   @Override
@@ -63,29 +112,132 @@ class MainPresenter implements MainContract.Presenter, MainContract.MovieItemPre
   public void dropView() {
     mView = null;
     mCompositeDisposable.clear();
+    mIsLoadingNextPage = false;
   }
 
   @Override
   public void loadItems() {
-    mMovieRepository.refresh();
-
-    Disposable disposable = mMovieRepository.getItems()
-        .flatMap(Flowable::fromIterable)
-        .toList()
+    // The first page loads like the following ones, one page of movies in the api's order
+    // rather than all the stored movies. The stored page is shown first, then the page
+    // revalidated from the api if it changed.
+    Disposable disposable = mMovieRepository.getPage(DISCOVER_OPTIONS, Page.FIRST_PAGE)
         .subscribeOn(mSchedulerProvider.io())
         .observeOn(mSchedulerProvider.ui())
         .subscribe(
-            this::handleOnNext,
+            this::handleOnFirstPage,
             this::handleOnError
         );
 
     mCompositeDisposable.add(disposable);
   }
 
-  private void handleOnNext(@NonNull List<Movie> movies) {
+  @Override
+  public void loadNextPage() {
+    // The first page comes from loadItems(), and only one page loads at a time
+    if (mFirstPageMovies.isEmpty() || !mHasNextPage || mIsLoadingNextPage) {
+      return;
+    }
+    mIsLoadingNextPage = true;
+
+    final int number = mNextPage;
+    Disposable disposable = mMovieRepository.getPage(DISCOVER_OPTIONS, number)
+        .subscribeOn(mSchedulerProvider.io())
+        .observeOn(mSchedulerProvider.ui())
+        .subscribe(
+            this::handleOnNextPage,
+            this::handleOnNextPageError,
+            () -> handleOnNextPageComplete(number)
+        );
+
+    mCompositeDisposable.add(disposable);
+  }
+
+  @Override
+  public void setPosterWidth(int widthPx) {
+    mPosterWidthPx = widthPx;
+  }
+
+  private void handleOnFirstPage(@NonNull Page<Movie> page) {
+    mFirstPageMovies = page.getItems();
+    if (mNextPagesMovies.isEmpty()) {
+      mHasNextPage = page.hasNextPage();
+    }
+    onMoviesChanged();
+  }
+
+  private void handleOnNextPage(@NonNull Page<Movie> page) {
+    mIsLoadingNextPage = false;
+    // a revalidated page may arrive after the pages that follow it were loaded
+    if (page.getNumber() >= mNextPage - 1) {
+      mNextPage = page.getNumber() + 1;
+      mHasNextPage = page.hasNextPage();
+    }
+    mNextPagesMovies.put(page.getNumber(), page.getItems());
+    onMoviesChanged();
+  }
+
+  private void handleOnNextPageError(@NonNull Throwable throwable) {
+    mIsLoadingNextPage = false;
+    if (throwable instanceof RateLimitExceededException) {
+      return; // a prefetch shed to stay within the api rate limit, the next scroll asks again
+    }
+    handleOnError(throwable);
+  }
+
+  private void handleOnNextPageComplete(int number) {
+    if (!mNextPagesMovies.containsKey(number)) {
+      // the page doesn't exist
+      mIsLoadingNextPage = false;
+      mHasNextPage = false;
+    }
+  }
+
+  /**
+   * Joins the first and following pages into the movies to show, rankings can shift between page
+   * loads so a movie already shown on an earlier page is skipped. The movies are shown once
+   * their diff to the shown movies is computed on the computation scheduler.
+   */
+  private void onMoviesChanged() {
+    List<Movie> movies = new ArrayList<>();
+    Set<String> uids = new HashSet<>();
+    for (Movie movie : mFirstPageMovies) {
+      if (uids.add(movie.getUid())) {
+        movies.add(movie);
+      }
+    }
+    for (List<Movie> pageMovies : mNextPagesMovies.values()) {
+      for (Movie movie : pageMovies) {
+        if (uids.add(movie.getUid())) {
+          movies.add(movie);
+        }
+      }
+    }
+
+    // The shown movies only change when a diff is dispatched, a pending diff against them is
+    // outdated by these movies
+    if (mPendingDiff != null) {
+      mCompositeDisposable.remove(mPendingDiff);
+    }
+    final List<Movie> oldMovies = mMovies;
+    mPendingDiff = Single.fromCallable(() ->
+        DiffUtil.calculateDiff(new MoviesDiffCallback(oldMovies, movies)))
+        .subscribeOn(mSchedulerProvider.computation())
+        .observeOn(mSchedulerProvider.ui())
+        .subscribe(
+            diffResult -> handleOnDiff(movies, diffResult),
+            this::handleOnError
+        );
+    mCompositeDisposable.add(mPendingDiff);
+  }
+
+  private void handleOnDiff(@NonNull List<Movie> movies, @NonNull DiffUtil.DiffResult diffResult) {
+    if (mPendingDiff != null) {
+      mCompositeDisposable.delete(mPendingDiff);
+      mPendingDiff = null;
+    }
     mMovies = movies;
     if (mView != null && mView.isActive()) {
-      mView.onDataSetChanged();
+      mView.onDataSetChanged(diffResult);
     }
   }
 
@@ -157,13 +309,10 @@ class MainPresenter implements MainContract.Presenter, MainContract.MovieItemPre
 
   @Override
   public void onAdapterBindViewHolder(MainContract.ItemViewHolder holder, int position) {
-    if (position < 0){
-      return; // invalid position
+    String posterUrl = onAdapterRequestPosterUrl(position);
+    if (posterUrl != null) {
+      holder.loadMoviePoster(posterUrl);
     }
-    Movie movie = mMovies.get(position);
-    String posterPath = movie.getPosterPath();
-    String posterUrl = getImageUrl(posterPath);
-    holder.loadMoviePoster(posterUrl);
   }
 
   @Override
@@ -180,4 +329,22 @@ class MainPresenter implements MainContract.Presenter, MainContract.MovieItemPre
   public int onAdapterRequestItemCount() {
     return mMovies.size();
   }
+
+  @Override
+  public long onAdapterRequestItemId(int position) {
+    return mMovies.get(position).getMovieId();
+  }
+
+  @Nullable
+  @Override
+  public String onAdapterRequestPosterUrl(int position) {
+    if (position < 0 || position >= mMovies.size()) {
+      return null; // invalid position
+    }
+    String posterPath = mMovies.get(position).getPosterPath();
+    if (Strings.isNullOrEmpty(posterPath)) {
+      return null;
+    }
+    return mPosterWidthPx > 0 ? getImageUrl(posterPath, mPosterWidthPx) : getImageUrl(posterPath);
+  }
 }
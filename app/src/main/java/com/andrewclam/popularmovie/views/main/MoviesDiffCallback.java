@@ -0,0 +1,52 @@
+package com.andrewclam.popularmovie.views.main;
+
+import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
+
+import com.andrewclam.popularmovie.data.model.Movie;
+import com.google.common.base.Objects;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link DiffUtil.Callback} between two lists of {@link Movie}s shown in the movie grid. Movies
+ * are the same item if they have the same movie id, and have the same contents if they show the
+ * same poster, the only field a grid cell binds.
+ */
+class MoviesDiffCallback extends DiffUtil.Callback {
+
+  @NonNull
+  private final List<Movie> mOldMovies;
+
+  @NonNull
+  private final List<Movie> mNewMovies;
+
+  MoviesDiffCallback(@NonNull List<Movie> oldMovies, @NonNull List<Movie> newMovies) {
+    mOldMovies = checkNotNull(oldMovies);
+    mNewMovies = checkNotNull(newMovies);
+  }
+
+  @Override
+  public int getOldListSize() {
+    return mOldMovies.size();
+  }
+
+  @Override
+  public int getNewListSize() {
+    return mNewMovies.size();
+  }
+
+  @Override
+  public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+    return Objects.equal(mOldMovies.get(oldItemPosition).getMovieId(),
+        mNewMovies.get(newItemPosition).getMovieId());
+  }
+
+  @Override
+  public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+    return Objects.equal(mOldMovies.get(oldItemPosition).getPosterPath(),
+        mNewMovies.get(newItemPosition).getPosterPath());
+  }
+}
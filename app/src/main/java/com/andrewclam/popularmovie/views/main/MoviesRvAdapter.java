@@ -28,6 +28,8 @@ class MoviesRvAdapter extends RecyclerView.Adapter<MoviesRvAdapter.MovieItemView
   @Inject
   MoviesRvAdapter(@NonNull MainContract.MovieItemPresenter<MainContract.ItemViewHolder> presenter){
     mPresenter = presenter;
+    // movie ids are stable, lets the RecyclerView keep holders and animate moves on changes
+    setHasStableIds(true);
   }
 
   @NonNull
@@ -57,6 +59,11 @@ class MoviesRvAdapter extends RecyclerView.Adapter<MoviesRvAdapter.MovieItemView
     return mPresenter.onAdapterRequestItemCount();
   }
 
+  @Override
+  public long getItemId(int position) {
+    return mPresenter.onAdapterRequestItemId(position);
+  }
+
   /**
    * Concrete implementation of a {@link RecyclerView.ViewHolder}, responsible for
    * setting up View fields and handling data setting methods calls defined in the
@@ -0,0 +1,111 @@
+package com.andrewclam.popularmovie.views.main;
+
+import android.support.annotation.NonNull;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.squareup.picasso.Picasso;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link RecyclerView.OnScrollListener} for the movie grid that warms the image cache with the
+ * posters of the rows just past the viewport in the scroll direction, so that cells show their
+ * poster as soon as they are bound instead of a blank placeholder.
+ * <p>
+ * Prefetches run at low priority, behind the posters of bound cells, and are cancelled once
+ * their position falls out of the prefetch range, e.g. when the scroll direction reverses.
+ */
+class PosterPrefetcher extends RecyclerView.OnScrollListener {
+
+  /**
+   * Number of rows past the viewport to prefetch
+   */
+  private static final int PREFETCH_ROWS = 3;
+
+  private final int mPrefetchCount;
+
+  @NonNull
+  private final MainContract.MovieItemPresenter<?> mPresenter;
+
+  /**
+   * Tags of the prefetches started for the positions in the prefetch range, keyed by position
+   */
+  @NonNull
+  private final Map<Integer, Object> mPrefetchTags = new HashMap<>();
+
+  PosterPrefetcher(int spanCount, @NonNull MainContract.MovieItemPresenter<?> presenter) {
+    checkArgument(spanCount > 0, "spanCount must be positive");
+    mPrefetchCount = spanCount * PREFETCH_ROWS;
+    mPresenter = checkNotNull(presenter);
+  }
+
+  @Override
+  public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+    GridLayoutManager layoutManager = (GridLayoutManager) recyclerView.getLayoutManager();
+    if (dy == 0 || layoutManager == null) {
+      return;
+    }
+
+    int firstVisible = layoutManager.findFirstVisibleItemPosition();
+    int lastVisible = layoutManager.findLastVisibleItemPosition();
+    if (firstVisible == RecyclerView.NO_POSITION) {
+      return;
+    }
+
+    if (dy > 0) {
+      prefetch(lastVisible + 1,
+          Math.min(lastVisible + mPrefetchCount, layoutManager.getItemCount() - 1));
+    } else {
+      prefetch(Math.max(firstVisible - mPrefetchCount, 0), firstVisible - 1);
+    }
+  }
+
+  /**
+   * Cancels all prefetches, for example when the grid is destroyed
+   */
+  void cancelAll() {
+    prefetch(0, -1);
+  }
+
+  /**
+   * Moves the prefetch range, cancels the prefetches out of the range and starts the missing ones
+   *
+   * @param from first position to prefetch
+   * @param to   last position to prefetch, inclusive, an empty range if less than {@code from}
+   */
+  private void prefetch(int from, int to) {
+    Picasso picasso = Picasso.get();
+
+    Iterator<Map.Entry<Integer, Object>> prefetches = mPrefetchTags.entrySet().iterator();
+    while (prefetches.hasNext()) {
+      Map.Entry<Integer, Object> prefetch = prefetches.next();
+      if (prefetch.getKey() < from || prefetch.getKey() > to) {
+        // no-op if the poster was already fetched
+        picasso.cancelTag(prefetch.getValue());
+        prefetches.remove();
+      }
+    }
+
+    for (int position = from; position <= to; position++) {
+      if (mPrefetchTags.containsKey(position)) {
+        continue;
+      }
+      String posterUrl = mPresenter.onAdapterRequestPosterUrl(position);
+      if (posterUrl == null) {
+        continue;
+      }
+      Object tag = new Object();
+      picasso.load(posterUrl)
+          .priority(Picasso.Priority.LOW)
+          .tag(tag)
+          .fetch();
+      mPrefetchTags.put(position, tag);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.andrewclam.popularmovie.views.main;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link RecyclerView.OnScrollListener} for a grid that asks for the next page of items while the
+ * user is still a prefetch distance away from the end, so that the page is usually loaded before
+ * the user gets there.
+ * <p>
+ * The prefetch distance adapts to the scroll velocity: a slow scroll prefetches a couple of rows
+ * ahead, a fling prefetches as many rows as it scrolls through while a page loads. The distance is
+ * counted in rows and converted to items with the span count of the grid.
+ */
+class PrefetchScrollListener extends RecyclerView.OnScrollListener {
+
+  /**
+   * Callback to load the next page, called repeatedly while within the prefetch distance,
+   * implementations must ignore calls while a page is already loading
+   */
+  interface Callback {
+    void onLoadNextPage();
+  }
+
+  /**
+   * Rows prefetched ahead when scrolling slowly
+   */
+  @VisibleForTesting
+  static final int MIN_PREFETCH_ROWS = 2;
+
+  /**
+   * Rows prefetched ahead at most, a few pages worth on a phone grid
+   */
+  @VisibleForTesting
+  static final int MAX_PREFETCH_ROWS = 24;
+
+  /**
+   * Typical time to load a page from the network, the rows scrolled through in this time are
+   * prefetched ahead
+   */
+  @VisibleForTesting
+  static final long PAGE_LOAD_MILLIS = 1000;
+
+  /**
+   * Weight of the latest sample in the smoothed scroll velocity
+   */
+  private static final float VELOCITY_SMOOTHING = 0.3f;
+
+  private final int mSpanCount;
+
+  @NonNull
+  private final Callback mCallback;
+
+  /**
+   * Smoothed downward scroll velocity, in rows per second
+   */
+  private float mRowsPerSecond;
+
+  private long mLastScrollMillis;
+
+  PrefetchScrollListener(int spanCount, @NonNull Callback callback) {
+    checkArgument(spanCount > 0, "spanCount must be positive");
+    mSpanCount = spanCount;
+    mCallback = checkNotNull(callback);
+  }
+
+  @Override
+  public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+    if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+      mRowsPerSecond = 0;
+      mLastScrollMillis = 0;
+    }
+  }
+
+  @Override
+  public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+    GridLayoutManager layoutManager = (GridLayoutManager) recyclerView.getLayoutManager();
+    View firstChild = recyclerView.getChildAt(0);
+    if (dy <= 0 || layoutManager == null || firstChild == null || firstChild.getHeight() == 0) {
+      return; // only scrolling towards the end prefetches
+    }
+
+    long now = SystemClock.uptimeMillis();
+    if (mLastScrollMillis > 0 && now > mLastScrollMillis) {
+      float rows = (float) dy / firstChild.getHeight();
+      float rowsPerSecond = rows * 1000 / (now - mLastScrollMillis);
+      mRowsPerSecond += VELOCITY_SMOOTHING * (rowsPerSecond - mRowsPerSecond);
+    }
+    mLastScrollMillis = now;
+
+    int remainingItems = layoutManager.getItemCount() - 1
+        - layoutManager.findLastVisibleItemPosition();
+    if (remainingItems <= getPrefetchDistance(mSpanCount, mRowsPerSecond)) {
+      mCallback.onLoadNextPage();
+    }
+  }
+
+  /**
+   * Gets the number of items before the end at which the next page is requested
+   *
+   * @param spanCount     number of items per row
+   * @param rowsPerSecond current scroll velocity, in rows per second
+   * @return the prefetch distance, in items
+   */
+  @VisibleForTesting
+  static int getPrefetchDistance(int spanCount, float rowsPerSecond) {
+    int rows = (int) Math.ceil(rowsPerSecond * PAGE_LOAD_MILLIS / 1000);
+    return Math.min(Math.max(rows, MIN_PREFETCH_ROWS), MAX_PREFETCH_ROWS) * spanCount;
+  }
+}
@@ -0,0 +1,149 @@
+package com.andrewclam.popularmovie.data.db;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.andrewclam.popularmovie.data.db.AppDbContract.MovieEntry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Unit tests for the {@link AppContentProvider} and the configuration of its SQLite database,
+ * run with Robolectric
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AppContentProviderTest {
+
+  private AppContentProvider mContentProvider;
+
+  private ContentResolver mContentResolver;
+
+  @Before
+  public final void setupContentProvider() {
+    mContentProvider = Robolectric.buildContentProvider(AppContentProvider.class)
+        .create(MovieEntry.CONTENT_URI_MOVIES.getAuthority())
+        .get();
+    mContentResolver = RuntimeEnvironment.application.getContentResolver();
+  }
+
+  @Test
+  public final void getDatabase_usesWriteAheadLogging() {
+    Assert.assertThat(queryPragma("journal_mode"), is("wal"));
+  }
+
+  @Test
+  public final void getDatabase_syncsNormal() {
+    // 1 is NORMAL
+    Assert.assertThat(queryPragma("synchronous"), is("1"));
+  }
+
+  @Test
+  public final void getDatabase_isKeptOpenAcrossOperations() {
+    SQLiteDatabase database = mContentProvider.getDatabase();
+
+    mContentResolver.insert(MovieEntry.CONTENT_URI_MOVIES, provideMovieValues(1));
+    mContentResolver.bulkInsert(MovieEntry.CONTENT_URI_MOVIES,
+        new ContentValues[]{provideMovieValues(2), provideMovieValues(3)});
+    try (Cursor cursor = mContentResolver.query(MovieEntry.CONTENT_URI_MOVIES,
+        null, null, null, null)) {
+      Assert.assertThat(cursor.getCount(), is(3));
+    }
+    mContentResolver.delete(provideMovieUri(2), null, null);
+
+    Assert.assertThat(database.isOpen(), is(true));
+    Assert.assertThat(mContentProvider.getDatabase(), is(sameInstance(database)));
+  }
+
+  @Test
+  public final void insert_returnsUriOfTheMovie() {
+    Uri uri = mContentResolver.insert(MovieEntry.CONTENT_URI_MOVIES, provideMovieValues(7));
+
+    Assert.assertThat(uri, is(provideMovieUri(7)));
+  }
+
+  @Test
+  public final void applyBatch_updatesStoredRowsInPlace() throws Exception {
+    // Given a stored movie
+    mContentResolver.insert(MovieEntry.CONTENT_URI_MOVIES, provideMovieValues(1));
+    long rowId = queryRowId(1);
+    ShadowContentResolver shadowResolver = Shadows.shadowOf(mContentResolver);
+    shadowResolver.getNotifiedUris().clear();
+
+    // When a batch saves it unchanged, then changed
+    ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+    operations.add(ContentProviderOperation.newInsert(MovieEntry.CONTENT_URI_MOVIES)
+        .withValues(provideMovieValues(1))
+        .build());
+    mContentResolver.applyBatch(AppDbContract.CONTENT_AUTHORITY, operations);
+    Assert.assertThat(shadowResolver.getNotifiedUris().size(), is(0));
+
+    ContentValues changed = provideMovieValues(1);
+    changed.put(MovieEntry.COLUMN_TITLE, "Changed");
+    operations.set(0, ContentProviderOperation.newInsert(MovieEntry.CONTENT_URI_MOVIES)
+        .withValues(changed)
+        .build());
+    mContentResolver.applyBatch(AppDbContract.CONTENT_AUTHORITY, operations);
+
+    // Then the row is updated in place, not replaced, and the change notified once
+    Assert.assertThat(queryRowId(1), is(rowId));
+    Assert.assertThat(shadowResolver.getNotifiedUris().size(), is(1));
+    try (Cursor cursor = mContentResolver.query(provideMovieUri(1), null, null, null, null)) {
+      Assert.assertThat(cursor.moveToFirst(), is(true));
+      Assert.assertThat(cursor.getString(cursor.getColumnIndex(MovieEntry.COLUMN_TITLE)),
+          is("Changed"));
+    }
+  }
+
+  private long queryRowId(long movieId) {
+    try (Cursor cursor = mContentResolver.query(provideMovieUri(movieId),
+        new String[]{MovieEntry._ID}, null, null, null)) {
+      Assert.assertThat(cursor.moveToFirst(), is(true));
+      return cursor.getLong(0);
+    }
+  }
+
+  private static Uri provideMovieUri(long movieId) {
+    return MovieEntry.CONTENT_URI_MOVIES.buildUpon()
+        .appendPath(AppDbContract.PATH_UID)
+        .appendPath(String.valueOf(movieId))
+        .build();
+  }
+
+  private String queryPragma(String pragma) {
+    try (Cursor cursor = mContentProvider.getDatabase().rawQuery("PRAGMA " + pragma, null)) {
+      Assert.assertThat(cursor.moveToFirst(), is(true));
+      return cursor.getString(0);
+    }
+  }
+
+  private static ContentValues provideMovieValues(long movieId) {
+    ContentValues values = new ContentValues();
+    values.put(MovieEntry.COLUMN_MOVIE_TMDB_ID, movieId);
+    values.put(MovieEntry.COLUMN_TITLE, "Title " + movieId);
+    values.put(MovieEntry.COLUMN_RELEASE_DATE, "2018-05-01");
+    values.put(MovieEntry.COLUMN_POSTER_PATH, "/poster.jpg");
+    values.put(MovieEntry.COLUMN_VOTE_AVERAGE, 7.5);
+    values.put(MovieEntry.COLUMN_VOTE_COUNT, 100);
+    values.put(MovieEntry.COLUMN_OVERVIEW, "Overview");
+    values.put(MovieEntry.COLUMN_POPULARITY, 10.5);
+    values.put(MovieEntry.COLUMN_NAME_DELETE_FLAG, 0);
+    return values;
+  }
+}
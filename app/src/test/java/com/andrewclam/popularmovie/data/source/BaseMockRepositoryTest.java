@@ -1,8 +1,12 @@
 package com.andrewclam.popularmovie.data.source;
 
 import com.andrewclam.popularmovie.data.DataSource;
+import com.andrewclam.popularmovie.data.Pager;
 import com.andrewclam.popularmovie.data.model.Entity;
+import com.andrewclam.popularmovie.data.model.Page;
+import com.andrewclam.popularmovie.util.schedulers.BaseSchedulerProvider;
 import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -13,16 +17,33 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.reactivex.Completable;
 import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.TestScheduler;
 import io.reactivex.subscribers.TestSubscriber;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.HttpException;
+import retrofit2.Response;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Matchers.any;
@@ -253,7 +274,7 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
     new ArrangeBuilder()
         .withItemsAvailable(mRemoteDataSource, ITEMS)
         .withItemsNotAvailable(mLocalDataSource)
-        .withItemAddedAny(mLocalDataSource);
+        .withItemsAddedAny(mLocalDataSource);
 
     // When items are requested from the tasks repository
     TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
@@ -310,7 +331,7 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
     new ArrangeBuilder()
         .withItemsAvailable(mRemoteDataSource,ITEMS)
         .withItemsNotAvailable(mLocalDataSource)
-        .withItemAddedAny(mLocalDataSource);
+        .withItemsAddedAny(mLocalDataSource);
 
     // When items are retrieved from the repository
     TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
@@ -318,12 +339,33 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
 
     // Verify the remote getMovies() was called
     Mockito.verify(mRemoteDataSource).getItems();
-    // And that the local add() was called to save each item from remote
-    Mockito.verify(mLocalDataSource, Mockito.times(ITEMS.size())).add(any(ITEM_CLASS));
+    // And that the local addAll() was called once to save the items from remote as a batch
+    Mockito.verify(mLocalDataSource).addAll(ITEMS);
+    Mockito.verify(mLocalDataSource, Mockito.never()).add(any(ITEM_CLASS));
     // And that the subscriber has received the items
     testSubscriber.assertValue(ITEMS);
   }
 
+  @Test
+  public final void getItems_getItemsFromRemoteDataSource_whenSavingItemsToLocalDataSourceFails(){
+    // Given that the local data source has no data available
+    // and that the remote data source has data available
+    // and when the items are saved to local, the operation fails
+    new ArrangeBuilder()
+        .withItemsAvailable(mRemoteDataSource,ITEMS)
+        .withItemsNotAvailable(mLocalDataSource);
+    Mockito.when(mLocalDataSource.addAll(Matchers.anyList()))
+        .thenReturn(Completable.error(new IllegalStateException("disk full")));
+
+    // When items are retrieved from the repository
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getItems().subscribe(testSubscriber);
+
+    // Then the subscriber still receives the items from remote
+    testSubscriber.assertValue(ITEMS);
+    testSubscriber.assertNoErrors();
+  }
+
   @Test
   public final void getItem_cachesItemToLocalDataSource_whenItemAvailableInRemoteDataSource() {
     // Given when a specific item is saved in local, it completes successfully
@@ -354,7 +396,7 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
     // And the local data source has no data available
     // And the remote data source has data available
     new ArrangeBuilder()
-        .withItemAddedAny(mLocalDataSource)
+        .withItemsAddedAny(mLocalDataSource)
         .withItemsNotAvailable(mLocalDataSource)
         .withItemsAvailable(mRemoteDataSource, ITEMS);
 
@@ -364,8 +406,8 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
 
     // Verify items were requested from remote data source
     Mockito.verify(mRemoteDataSource).getItems();
-    // And the local data source was called to save each item
-    Mockito.verify(mLocalDataSource, Mockito.times(ITEMS.size())).add(Matchers.any(ITEM_CLASS));
+    // And the local data source was called once to save the items as a batch
+    Mockito.verify(mLocalDataSource).addAll(ITEMS);
     // And the subscriber has received the items
     testSubscriber1.assertValue(ITEMS);
     // And the cache is not dirty
@@ -418,7 +460,7 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
     new ArrangeBuilder()
         .withItemsAvailable(mRemoteDataSource, ITEMS)
         .withItemsNotAvailable(mLocalDataSource)
-        .withItemAddedAny(mLocalDataSource);
+        .withItemsAddedAny(mLocalDataSource);
 
     // When two subscriptions are set
     TestSubscriber<List<E>> testSubscriber1 = new TestSubscriber<>();
@@ -478,7 +520,7 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
     // and that when add item to local, operation completes successfully
     new ArrangeBuilder()
         .withItemsAvailable(mRemoteDataSource,ITEMS)
-        .withItemAddedAny(mLocalDataSource);
+        .withItemsAddedAny(mLocalDataSource);
 
     // When calling getMovies() in the repository with dirty cache
     mRepository.refresh();
@@ -486,11 +528,31 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
     mRepository.getItems().subscribe(testSubscriber);
 
     // Verify the tasks from the remote data source are returned, not the local
+    // and that the remote data source skips its http cache
     Mockito.verify(mLocalDataSource, Mockito.never()).getItems();
+    Mockito.verify(mRemoteDataSource).refresh();
     Mockito.verify(mRemoteDataSource).getItems();
     testSubscriber.assertValue(ITEMS);
   }
 
+  @Test
+  public final void getItems_itemsAreRetrievedFromLocal_whenCacheIsDirtyAndCircuitOpen() {
+    // Given that the local data source has data available
+    // And that the remote endpoint's circuit is open
+    new ArrangeBuilder().withItemsAvailable(mLocalDataSource, ITEMS);
+    Mockito.when(mRemoteDataSource.getItems())
+        .thenReturn(Flowable.error(new CircuitOpenException("test")));
+
+    // When calling getItems() in the repository with dirty cache
+    mRepository.refresh();
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getItems().subscribe(testSubscriber);
+
+    // Then the local items are returned instead of the error
+    testSubscriber.assertValue(ITEMS);
+    testSubscriber.assertNoErrors();
+  }
+
   @Test
   public final void getItemsWithOptions_getItemsFromRemoteDataSource_whenItemsAvailableInRemoteDataSource(){
     // Given that the remote data source has data available with options
@@ -499,7 +561,7 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
     new ArrangeBuilder()
         .withItemsAvailableWithOptions(mRemoteDataSource, ITEMS, OPTIONS)
         .withItemsNotAvailableWithOptions(mLocalDataSource, OPTIONS)
-        .withItemAddedAny(mLocalDataSource);
+        .withItemsAddedAny(mLocalDataSource);
 
     // When getMovies(Options) are requested from the repository
     TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
@@ -629,6 +691,921 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
     testObserver.assertNoErrors();
   }
 
+  /**
+   * Tests - Model Cache
+   */
+  @Test
+  public final void saveItems_evictsItemsFromCache_whenCacheOverEntryBudget() {
+    // Given when any items are saved in local and remote, they complete successfully
+    // And a repository with a cache budget of fewer entries than the test items
+    new ArrangeBuilder()
+        .withItemsAddedAny(mLocalDataSource)
+        .withItemsAddedAny(mRemoteDataSource);
+    int maxEntries = ITEMS.size() / 3;
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>().setMaxCacheEntries(maxEntries).build());
+
+    // When the items are added to the repository
+    TestObserver testObserver = new TestObserver();
+    repository.addAll(ITEMS).subscribe(testObserver);
+
+    // Then the cache stays within its budget
+    long cachedCount = repository.mCachedItems.size();
+    Assert.assertTrue(cachedCount <= maxEntries);
+    // And every item that didn't fit is counted as evicted
+    Assert.assertThat(repository.getCacheStats().evictionCount(), is(ITEMS.size() - cachedCount));
+    // And the most recently added item is kept
+    Assert.assertTrue(repository.mCachedItems.containsKey(ITEMS.get(ITEMS.size() - 1).getUid()));
+  }
+
+  @Test
+  public final void saveItems_evictsItemsFromCache_whenCacheOverWeightBudget() {
+    // Given when any items are saved in local and remote, they complete successfully
+    // And a repository with a cache budget that fits only a few of the test items
+    new ArrangeBuilder()
+        .withItemsAddedAny(mLocalDataSource)
+        .withItemsAddedAny(mRemoteDataSource);
+    long maxWeight = 5L * ITEM.getEstimatedSize();
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>().setMaxCacheWeightBytes(maxWeight).build());
+
+    // When the items are added to the repository
+    TestObserver testObserver = new TestObserver();
+    repository.addAll(ITEMS).subscribe(testObserver);
+
+    // Then the total weight of the cached items stays within budget
+    long cachedWeight = 0;
+    for (E item : repository.mCachedItems.values()) {
+      cachedWeight += item.getEstimatedSize();
+    }
+    Assert.assertTrue(cachedWeight <= maxWeight);
+    Assert.assertTrue(repository.getCacheStats().evictionCount() > 0);
+  }
+
+  @Test
+  public final void getItems_getItemsFromLocalDataSource_whenCachedItemsEvicted() {
+    // Given when any items are saved in local and remote, they complete successfully
+    // And the local data source has data available
+    // And a repository with a cache budget of fewer entries than the test items
+    new ArrangeBuilder()
+        .withItemsAddedAny(mLocalDataSource)
+        .withItemsAddedAny(mRemoteDataSource)
+        .withItemsAvailable(mLocalDataSource, ITEMS)
+        .withItemsNotAvailable(mRemoteDataSource);
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>().setMaxCacheEntries(ITEMS.size() / 3).build());
+
+    // When the items are added to the repository, evicting some of them
+    TestObserver testObserver = new TestObserver();
+    repository.addAll(ITEMS).subscribe(testObserver);
+    // And then the items are requested from the repository
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    repository.getItems().subscribe(testSubscriber);
+
+    // Then the complete list of items is loaded from the local data source
+    Mockito.verify(mLocalDataSource).getItems();
+    testSubscriber.assertValue(ITEMS);
+  }
+
+  @Test
+  public final void getItem_recordsCacheHitsAndMisses() {
+    // Given when any item is saved in local and remote, it completes successfully
+    // And another item is available in the local data source only
+    E otherItem = ITEMS.get(1);
+    new ArrangeBuilder()
+        .withItemAddedAny(mLocalDataSource)
+        .withItemAddedAny(mRemoteDataSource)
+        .withItemAvailable(mLocalDataSource, otherItem)
+        .withItemNotAvailable(mRemoteDataSource, otherItem.getUid());
+
+    // When an item is added and then requested from the repository
+    mRepository.add(ITEM).subscribe(new TestObserver());
+    mRepository.getItem(ITEM.getUid()).subscribe(new TestSubscriber<>());
+    // And another item, not in the cache, is requested
+    mRepository.getItem(otherItem.getUid()).subscribe(new TestSubscriber<>());
+
+    // Then the cache recorded a hit for the first item and a miss for the other item
+    Assert.assertThat(mRepository.getCacheStats().hitCount(), is(1L));
+    Assert.assertThat(mRepository.getCacheStats().missCount(), is(1L));
+  }
+
+  @Test
+  public final void getItems_returnsCompleteItems_whenCalledConcurrentlyWithGetItemAndRefresh()
+      throws Exception {
+    // Given that the local and remote data sources have data available and complete
+    // And when any item is saved in local, it completes successfully
+    Mockito.when(mLocalDataSource.getItems()).thenReturn(Flowable.just(ITEMS));
+    Mockito.when(mRemoteDataSource.getItems()).thenReturn(Flowable.just(ITEMS));
+    Mockito.when(mLocalDataSource.getItem(Matchers.anyString()))
+        .thenReturn(Flowable.just(Optional.of(ITEM)));
+    Mockito.when(mRemoteDataSource.getItem(Matchers.anyString()))
+        .thenReturn(Flowable.just(Optional.of(ITEM)));
+    new ArrangeBuilder()
+        .withItemAddedAny(mLocalDataSource)
+        .withItemsAddedAny(mLocalDataSource);
+
+    // When many threads load the items, load single items and refresh the repository at once
+    int threadCount = 8;
+    int iterations = 200;
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    CountDownLatch startSignal = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      final int thread = i;
+      futures.add(executor.submit(() -> {
+        startSignal.await();
+        for (int j = 0; j < iterations; j++) {
+          switch ((thread + j) % 3) {
+            case 0:
+              // Then every list emitted is the complete list of items, in order
+              List<E> items = mRepository.getItems().blockingFirst();
+              Assert.assertEquals(ITEMS, items);
+              break;
+            case 1:
+              E item = ITEMS.get(j % ITEMS.size());
+              Assert.assertTrue(mRepository.getItem(item.getUid()).blockingFirst().isPresent());
+              break;
+            default:
+              mRepository.refresh();
+              break;
+          }
+        }
+        return null;
+      }));
+    }
+    startSignal.countDown();
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    // Then no thread failed
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    // And the cache holds each item exactly once
+    Assert.assertThat(mRepository.mCachedItems.size(), is(ITEMS.size()));
+  }
+
+  /**
+   * Tests - Query Cache
+   */
+  @Test
+  public final void getItemsWithOptions_getItemsFromCache_whenSameOptionsInAnyOrder() {
+    // Given that the local data source has data available with options
+    Map<String, String> options = new LinkedHashMap<>();
+    options.put("sort_by", "popularity.desc");
+    options.put("page", "1");
+    Map<String, String> reorderedOptions = new LinkedHashMap<>();
+    reorderedOptions.put("page", "1");
+    reorderedOptions.put("sort_by", "popularity.desc");
+    new ArrangeBuilder()
+        .withItemsAvailableWithOptions(mLocalDataSource, ITEMS, options)
+        .withItemsNotAvailableWithOptions(mRemoteDataSource, options);
+
+    // When the items are requested twice, with the same options in a different order
+    TestSubscriber<List<E>> testSubscriber1 = new TestSubscriber<>();
+    mRepository.getItems(options).subscribe(testSubscriber1);
+    TestSubscriber<List<E>> testSubscriber2 = new TestSubscriber<>();
+    mRepository.getItems(reorderedOptions).subscribe(testSubscriber2);
+
+    // Then the items are loaded from the local data source only once
+    Mockito.verify(mLocalDataSource).getItems(options);
+    testSubscriber1.assertValue(ITEMS);
+    testSubscriber2.assertValue(ITEMS);
+  }
+
+  @Test
+  public final void getItemsWithOptions_getItemsFromLocalDataSource_whenQueryResultExpired() {
+    // Given that the local data source has data available with options
+    // And a repository with a query result ttl of one minute
+    new ArrangeBuilder()
+        .withItemsAvailableWithOptions(mLocalDataSource, ITEMS, OPTIONS)
+        .withItemsNotAvailableWithOptions(mRemoteDataSource, OPTIONS);
+    AtomicLong nanos = new AtomicLong();
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return nanos.get();
+      }
+    };
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>()
+            .setQueryResultTtl(1, TimeUnit.MINUTES)
+            .setTicker(ticker)
+            .build());
+
+    // When the items are requested, again before the ttl and again after the ttl
+    repository.getItems(OPTIONS).subscribe(new TestSubscriber<>());
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(59));
+    repository.getItems(OPTIONS).subscribe(new TestSubscriber<>());
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    repository.getItems(OPTIONS).subscribe(testSubscriber);
+
+    // Then the items are loaded from the local data source again only after the ttl
+    Mockito.verify(mLocalDataSource, Mockito.times(2)).getItems(OPTIONS);
+    testSubscriber.assertValue(ITEMS);
+  }
+
+  @Test
+  public final void getItemsWithOptions_getItemsFromLocalDataSource_whenRefreshed() {
+    // Given that the local data source has data available with options
+    new ArrangeBuilder()
+        .withItemsAvailableWithOptions(mLocalDataSource, ITEMS, OPTIONS)
+        .withItemsNotAvailableWithOptions(mRemoteDataSource, OPTIONS);
+
+    // When the items are requested, the repository is refreshed and they are requested again
+    mRepository.getItems(OPTIONS).subscribe(new TestSubscriber<>());
+    mRepository.refresh();
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getItems(OPTIONS).subscribe(testSubscriber);
+
+    // Then the cached query result is discarded and the items are loaded again
+    Mockito.verify(mLocalDataSource, Mockito.times(2)).getItems(OPTIONS);
+    testSubscriber.assertValue(ITEMS);
+  }
+
+  /**
+   * Tests - Request Coalescing
+   */
+  @Test
+  public final void getItems_sharesLoadInFlight_whenRequestedConcurrently() {
+    // Given that the local data source is still loading its items
+    PublishProcessor<List<E>> localItems = PublishProcessor.create();
+    Mockito.when(mLocalDataSource.getItems()).thenReturn(localItems);
+    new ArrangeBuilder().withItemsNotAvailable(mRemoteDataSource);
+
+    // When the items are requested twice before the load completes
+    TestSubscriber<List<E>> testSubscriber1 = new TestSubscriber<>();
+    mRepository.getItems().subscribe(testSubscriber1);
+    TestSubscriber<List<E>> testSubscriber2 = new TestSubscriber<>();
+    mRepository.getItems().subscribe(testSubscriber2);
+    localItems.onNext(ITEMS);
+
+    // Then the items are loaded from the local data source only once
+    Mockito.verify(mLocalDataSource).getItems();
+    // And both requests receive the same items
+    testSubscriber1.assertValue(ITEMS);
+    testSubscriber2.assertValue(ITEMS);
+    Assert.assertThat(mRepository.getSavedRequestCount(), is(1L));
+  }
+
+  @Test
+  public final void getItem_sharesLoadInFlight_whenRequestedConcurrently() {
+    // Given that the local data source is still loading the item
+    PublishProcessor<Optional<E>> localItem = PublishProcessor.create();
+    Mockito.when(mLocalDataSource.getItem(ITEM.getUid())).thenReturn(localItem);
+    new ArrangeBuilder().withItemNotAvailable(mRemoteDataSource, ITEM.getUid());
+
+    // When the item is requested twice before the load completes
+    TestSubscriber<Optional<E>> testSubscriber1 = new TestSubscriber<>();
+    mRepository.getItem(ITEM.getUid()).subscribe(testSubscriber1);
+    TestSubscriber<Optional<E>> testSubscriber2 = new TestSubscriber<>();
+    mRepository.getItem(ITEM.getUid()).subscribe(testSubscriber2);
+    localItem.onNext(Optional.of(ITEM));
+
+    // Then the item is loaded from the local data source only once
+    Mockito.verify(mLocalDataSource).getItem(ITEM.getUid());
+    // And both requests receive the same item
+    testSubscriber1.assertValue(Optional.of(ITEM));
+    testSubscriber2.assertValue(Optional.of(ITEM));
+    Assert.assertThat(mRepository.getSavedRequestCount(), is(1L));
+  }
+
+  @Test
+  public final void getItems_startsNewLoad_whenRefreshedWhileLoadInFlight() {
+    // Given that the remote data source is still loading its items
+    PublishProcessor<List<E>> remoteItems = PublishProcessor.create();
+    Mockito.when(mRemoteDataSource.getItems()).thenReturn(remoteItems);
+    new ArrangeBuilder().withItemsAddedAny(mLocalDataSource);
+
+    // When the repository is refreshed and the items requested, twice
+    mRepository.refresh();
+    mRepository.getItems().subscribe(new TestSubscriber<>());
+    mRepository.refresh();
+    mRepository.getItems().subscribe(new TestSubscriber<>());
+
+    // Then the second refresh doesn't join the load started before it
+    Mockito.verify(mRemoteDataSource, Mockito.times(2)).getItems();
+    Assert.assertThat(mRepository.getSavedRequestCount(), is(0L));
+  }
+
+  /**
+   * Tests - Stale While Revalidate
+   */
+  @Test
+  public final void getItemsAndRevalidate_emitsLocalThenRemoteItems_whenRemoteItemsChanged() {
+    // Given that the local data source has data available
+    // And that the remote data source has different data available
+    List<E> remoteItems = ITEMS.subList(0, ITEMS.size() - 1);
+    new ArrangeBuilder()
+        .withItemsAvailable(mLocalDataSource, ITEMS)
+        .withItemsAvailable(mRemoteDataSource, remoteItems)
+        .withItemsAddedAny(mLocalDataSource);
+
+    // When the repository is refreshed and the items are requested with revalidation
+    mRepository.refresh();
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getItemsAndRevalidate().subscribe(testSubscriber);
+
+    // Then the local items are emitted first, followed by the remote items
+    testSubscriber.assertValues(ITEMS, remoteItems);
+    testSubscriber.assertComplete();
+    // And the remote items replace the cached items
+    TestSubscriber<List<E>> cachedSubscriber = new TestSubscriber<>();
+    mRepository.getItems().subscribe(cachedSubscriber);
+    cachedSubscriber.assertValue(remoteItems);
+  }
+
+  @Test
+  public final void getItemsAndRevalidate_emitsLocalItemsOnce_whenRemoteItemsUnchanged() {
+    // Given that the local and remote data sources have the same data available
+    new ArrangeBuilder()
+        .withItemsAvailable(mLocalDataSource, ITEMS)
+        .withItemsAvailable(mRemoteDataSource, ITEMS)
+        .withItemsAddedAny(mLocalDataSource);
+
+    // When the repository is refreshed and the items are requested with revalidation
+    mRepository.refresh();
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getItemsAndRevalidate().subscribe(testSubscriber);
+
+    // Then the remote data source is still checked
+    Mockito.verify(mRemoteDataSource).getItems();
+    // And the items are emitted only once
+    testSubscriber.assertValue(ITEMS);
+    testSubscriber.assertComplete();
+  }
+
+  @Test
+  public final void getItemsAndRevalidate_keepsLocalItems_whenRemoteDataSourceFails() {
+    // Given that the local data source has data available
+    // And that the remote data source fails
+    new ArrangeBuilder().withItemsAvailable(mLocalDataSource, ITEMS);
+    Mockito.when(mRemoteDataSource.getItems())
+        .thenReturn(Flowable.error(new IllegalStateException("offline")));
+
+    // When the repository is refreshed and the items are requested with revalidation
+    mRepository.refresh();
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getItemsAndRevalidate().subscribe(testSubscriber);
+
+    // Then the local items are emitted and the error is dropped
+    testSubscriber.assertValue(ITEMS);
+    testSubscriber.assertNoErrors();
+    testSubscriber.assertComplete();
+  }
+
+  /**
+   * Tests - Freshness
+   */
+  @Test
+  public final void getItems_getItemsFromRemoteDataSource_whenLocalItemsStale() {
+    // Given that the local data source has data fetched two hours ago
+    // And that the remote data source has data available
+    // And a repository with a freshness ttl of one hour
+    final long now = TimeUnit.DAYS.toMillis(1);
+    stampFetchedAt(ITEMS, now - TimeUnit.HOURS.toMillis(2));
+    new ArrangeBuilder()
+        .withItemsAvailable(mLocalDataSource, ITEMS)
+        .withItemsAvailable(mRemoteDataSource, ITEMS)
+        .withItemsAddedAny(mLocalDataSource);
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>()
+            .setFreshnessTtl(1, TimeUnit.HOURS)
+            .setClock(() -> now)
+            .build());
+
+    // When the items are requested
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    repository.getItems().subscribe(testSubscriber);
+
+    // Then the items are loaded from the remote data source and stamped with the fetch time
+    testSubscriber.assertValue(ITEMS);
+    Assert.assertThat(testSubscriber.values().get(0).get(0).getFetchedAt(), is(now));
+  }
+
+  @Test
+  public final void getItems_getStaleItemsFromLocalDataSource_whenRemoteDataSourceFails() {
+    // Given that the local data source has data fetched two hours ago
+    // And that the remote data source fails
+    // And a repository with a freshness ttl of one hour
+    final long now = TimeUnit.DAYS.toMillis(1);
+    stampFetchedAt(ITEMS, now - TimeUnit.HOURS.toMillis(2));
+    new ArrangeBuilder().withItemsAvailable(mLocalDataSource, ITEMS);
+    Mockito.when(mRemoteDataSource.getItems())
+        .thenReturn(Flowable.error(new IllegalStateException("offline")));
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>()
+            .setFreshnessTtl(1, TimeUnit.HOURS)
+            .setClock(() -> now)
+            .build());
+
+    // When the items are requested
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    repository.getItems().subscribe(testSubscriber);
+
+    // Then the stale local items are returned
+    testSubscriber.assertValue(ITEMS);
+    testSubscriber.assertNoErrors();
+  }
+
+  @Test
+  public final void getItemsAndRevalidate_skipsRemoteDataSource_whenLocalItemsFresh() {
+    // Given that the local data source has data fetched ten minutes ago
+    // And a repository with a freshness ttl of one hour
+    final long now = TimeUnit.DAYS.toMillis(1);
+    stampFetchedAt(ITEMS, now - TimeUnit.MINUTES.toMillis(10));
+    PublishProcessor<List<E>> remoteItems = PublishProcessor.create();
+    Mockito.when(mRemoteDataSource.getItems()).thenReturn(remoteItems);
+    new ArrangeBuilder().withItemsAvailable(mLocalDataSource, ITEMS);
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>()
+            .setFreshnessTtl(1, TimeUnit.HOURS)
+            .setClock(() -> now)
+            .build());
+
+    // When the items are requested with revalidation
+    TestSubscriber<List<E>> testSubscriber = new TestSubscriber<>();
+    repository.getItemsAndRevalidate().subscribe(testSubscriber);
+
+    // Then the local items are returned without going to the network
+    Assert.assertFalse(remoteItems.hasSubscribers());
+    testSubscriber.assertValue(ITEMS);
+    testSubscriber.assertComplete();
+  }
+
+  private void stampFetchedAt(List<E> items, long fetchedAt) {
+    for (E item : items) {
+      item.setFetchedAt(fetchedAt);
+    }
+  }
+
+  /**
+   * Tests - Write Behind
+   */
+  @Test
+  public final void updateItem_coalescesWritesToSameItem_whenWriteBehind() {
+    // Given when any items are saved in local and remote, they complete successfully
+    // And a repository that writes behind after one minute
+    new ArrangeBuilder()
+        .withItemsAddedAny(mLocalDataSource)
+        .withItemsAddedAny(mRemoteDataSource);
+    TestScheduler scheduler = new TestScheduler();
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>().setWriteBehind(1, TimeUnit.MINUTES, 10).build(),
+        new TestSchedulerProvider(scheduler));
+
+    // When the same item is updated three times
+    for (int i = 0; i < 3; i++) {
+      TestObserver testObserver = new TestObserver();
+      repository.update(ITEM).subscribe(testObserver);
+      testObserver.assertComplete();
+    }
+
+    // Then nothing is written before the flush delay
+    Mockito.verify(mLocalDataSource, Mockito.never()).update(Matchers.any());
+    Mockito.verify(mLocalDataSource, Mockito.never()).addAll(Matchers.anyList());
+    // And the item is served from memory right away
+    TestSubscriber<Optional<E>> testSubscriber = new TestSubscriber<>();
+    repository.getItem(ITEM.getUid()).subscribe(testSubscriber);
+    testSubscriber.assertValue(Optional.of(ITEM));
+
+    // And after the flush delay, the item is written once in a single batch
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+    Mockito.verify(mLocalDataSource).addAll(Collections.singletonList(ITEM));
+    Mockito.verify(mRemoteDataSource).addAll(Collections.singletonList(ITEM));
+  }
+
+  @Test
+  public final void saveItems_flushesBatch_whenPendingWritesReachLimit() {
+    // Given when any items are saved in local and remote, they complete successfully
+    // And a repository that writes behind once as many items as the test items are pending
+    new ArrangeBuilder()
+        .withItemsAddedAny(mLocalDataSource)
+        .withItemsAddedAny(mRemoteDataSource);
+    TestScheduler scheduler = new TestScheduler();
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>()
+            .setWriteBehind(1, TimeUnit.HOURS, ITEMS.size())
+            .build(),
+        new TestSchedulerProvider(scheduler));
+
+    // When the items are added to the repository
+    repository.addAll(ITEMS).subscribe(new TestObserver());
+    scheduler.triggerActions();
+
+    // Then all the items are written in a single batch without waiting for the flush delay
+    Mockito.verify(mLocalDataSource).addAll(ITEMS);
+    Mockito.verify(mLocalDataSource, Mockito.never()).add(Matchers.any());
+  }
+
+  @Test
+  public final void flush_retriesFailedBatch_withoutNewWrites_whenWriteBehind() {
+    // Given a local data source that fails the first batch and saves the next one
+    // And a repository that writes behind after one minute
+    Mockito.when(mLocalDataSource.addAll(Matchers.anyList()))
+        .thenReturn(Completable.error(new IOException("disk full")), Completable.complete());
+    AtomicInteger remoteWrites = new AtomicInteger();
+    Mockito.when(mRemoteDataSource.addAll(Matchers.anyList()))
+        .thenReturn(Completable.fromAction(remoteWrites::incrementAndGet));
+    TestScheduler scheduler = new TestScheduler();
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>().setWriteBehind(1, TimeUnit.MINUTES, 10).build(),
+        new TestSchedulerProvider(scheduler));
+
+    // When an item is updated, and its first flush fails
+    repository.update(ITEM).subscribe(new TestObserver());
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+    Mockito.verify(mLocalDataSource).addAll(Collections.singletonList(ITEM));
+    Assert.assertThat(remoteWrites.get(), is(0));
+
+    // Then the batch is retried after a backoff, without anything new being queued
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+    Mockito.verify(mLocalDataSource, Mockito.times(2)).addAll(Collections.singletonList(ITEM));
+    Assert.assertThat(remoteWrites.get(), is(1));
+
+    // And once it succeeded, it is not written again
+    scheduler.advanceTimeBy(1, TimeUnit.HOURS);
+    Mockito.verify(mLocalDataSource, Mockito.times(2)).addAll(Matchers.anyList());
+    Assert.assertThat(remoteWrites.get(), is(1));
+  }
+
+  @Test
+  public final void removeItem_flushesPendingWrites_whenAppMovesToBackground() {
+    // Given when any item is removed from local and remote, it completes successfully
+    // And a repository that writes behind after one hour
+    Mockito.when(mLocalDataSource.remove(Matchers.anyString())).thenReturn(Completable.complete());
+    Mockito.when(mRemoteDataSource.remove(Matchers.anyString())).thenReturn(Completable.complete());
+    TestScheduler scheduler = new TestScheduler();
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>().setWriteBehind(1, TimeUnit.HOURS, 10).build(),
+        new TestSchedulerProvider(scheduler));
+
+    // When an item is removed and the app moves to the background
+    repository.remove(ITEM.getUid()).subscribe(new TestObserver());
+    Mockito.verify(mLocalDataSource, Mockito.never()).remove(ITEM.getUid());
+    repository.onAppBackground();
+    scheduler.triggerActions();
+
+    // Then the removal is written without waiting for the flush delay
+    Mockito.verify(mLocalDataSource).remove(ITEM.getUid());
+    Mockito.verify(mRemoteDataSource).remove(ITEM.getUid());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public final void flush_writesSavesAndRemovalsInOneLocalBatch_whenWriteBehind() {
+    // Given a local data source that applies batches, and any remote write completes
+    // And a repository that writes behind after one hour
+    DataSourceLocal<E> localDataSource = Mockito.mock(DataSourceLocal.class);
+    Mockito.when(localDataSource.applyBatch(Matchers.anyList(), Matchers.anyList()))
+        .thenReturn(Completable.complete());
+    Mockito.when(mRemoteDataSource.remove(Matchers.anyString())).thenReturn(Completable.complete());
+    new ArrangeBuilder().withItemsAddedAny(mRemoteDataSource);
+    TestScheduler scheduler = new TestScheduler();
+    Repository<E> repository = new Repository<>(mRemoteDataSource, localDataSource,
+        new RepositoryConfig.Builder<E>().setWriteBehind(1, TimeUnit.HOURS, 10).build(),
+        new TestSchedulerProvider(scheduler));
+
+    // When an item is updated, another is removed, and the app moves to the background
+    E removed = ITEMS.get(1);
+    repository.update(ITEM).subscribe(new TestObserver());
+    repository.remove(removed.getUid()).subscribe(new TestObserver());
+    repository.onAppBackground();
+    scheduler.triggerActions();
+
+    // Then both are written locally in a single batch, instead of one call per mutation
+    Mockito.verify(localDataSource).applyBatch(Collections.singletonList(ITEM),
+        Collections.singletonList(removed.getUid()));
+    Mockito.verify(localDataSource, Mockito.never()).addAll(Matchers.anyList());
+    Mockito.verify(localDataSource, Mockito.never()).remove(Matchers.anyString());
+    // And then remotely
+    Mockito.verify(mRemoteDataSource).addAll(Collections.singletonList(ITEM));
+    Mockito.verify(mRemoteDataSource).remove(removed.getUid());
+  }
+
+  /**
+   * {@link BaseSchedulerProvider} that runs io work on a {@link TestScheduler}, so tests control
+   * when delayed work runs
+   */
+  private static class TestSchedulerProvider implements BaseSchedulerProvider {
+    private final TestScheduler mScheduler;
+
+    TestSchedulerProvider(TestScheduler scheduler) {
+      mScheduler = scheduler;
+    }
+
+    @Override
+    public Scheduler computation() {
+      return mScheduler;
+    }
+
+    @Override
+    public Scheduler io() {
+      return mScheduler;
+    }
+
+    @Override
+    public Scheduler ui() {
+      return mScheduler;
+    }
+  }
+
+  /**
+   * Tests - Negative Cache
+   */
+  @Test
+  public final void getItem_getsAbsentFromMemory_whenItemKnownMissing() {
+    // Given that the item is available in neither the local nor the remote data source
+    new ArrangeBuilder()
+        .withItemNotAvailable(mLocalDataSource, ITEM.getUid())
+        .withItemNotAvailable(mRemoteDataSource, ITEM.getUid());
+
+    // When the item is requested twice
+    mRepository.getItem(ITEM.getUid()).subscribe(new TestSubscriber<>());
+    TestSubscriber<Optional<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getItem(ITEM.getUid()).subscribe(testSubscriber);
+
+    // Then the data sources are only queried once
+    Mockito.verify(mLocalDataSource).getItem(ITEM.getUid());
+    Mockito.verify(mRemoteDataSource).getItem(ITEM.getUid());
+    // And the second request is answered with absent from the negative cache
+    testSubscriber.assertValue(Optional.absent());
+    Assert.assertThat(mRepository.getMissingItemsCacheSize(), is(1L));
+    Assert.assertThat(mRepository.getMissingItemsCacheStats().hitCount(), is(1L));
+  }
+
+  @Test
+  public final void getItem_getsAbsentFromMemory_whenItemKnownMissingBeforeRefresh() {
+    // Given that the item is available in neither the local nor the remote data source
+    new ArrangeBuilder()
+        .withItemNotAvailable(mLocalDataSource, ITEM.getUid())
+        .withItemNotAvailable(mRemoteDataSource, ITEM.getUid());
+
+    // When the item is requested, the repository refreshed, and the item requested again
+    mRepository.getItem(ITEM.getUid()).subscribe(new TestSubscriber<>());
+    mRepository.refresh();
+    TestSubscriber<Optional<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getItem(ITEM.getUid()).subscribe(testSubscriber);
+
+    // Then the second request is still answered with absent from the negative cache
+    testSubscriber.assertValue(Optional.absent());
+    Mockito.verify(mRemoteDataSource).getItem(ITEM.getUid());
+    Assert.assertThat(mRepository.getMissingItemsCacheStats().hitCount(), is(1L));
+  }
+
+  @Test
+  public final void getItem_getsAbsentFromMemory_whenRemoteAnswersNotFound() {
+    // Given that the item is not in the local data source, and the remote answers with a 404
+    new ArrangeBuilder().withItemNotAvailable(mLocalDataSource, ITEM.getUid());
+    Mockito.when(mRemoteDataSource.getItem(ITEM.getUid())).thenReturn(Flowable.error(
+        new HttpException(Response.error(404,
+            ResponseBody.create(MediaType.parse("application/json"), "{}")))));
+
+    // When the item is requested twice
+    TestSubscriber<Optional<E>> firstSubscriber = new TestSubscriber<>();
+    mRepository.getItem(ITEM.getUid()).subscribe(firstSubscriber);
+    TestSubscriber<Optional<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getItem(ITEM.getUid()).subscribe(testSubscriber);
+
+    // Then both requests are answered with absent, the second one from the negative cache
+    firstSubscriber.assertValue(Optional.absent());
+    testSubscriber.assertValue(Optional.absent());
+    Mockito.verify(mLocalDataSource).getItem(ITEM.getUid());
+    Mockito.verify(mRemoteDataSource).getItem(ITEM.getUid());
+    Assert.assertThat(mRepository.getMissingItemsCacheStats().hitCount(), is(1L));
+  }
+
+  @Test
+  public final void getItem_queriesDataSourcesAgain_whenMissingItemExpired() {
+    // Given that the item is available in neither the local nor the remote data source
+    // And a repository that remembers missing items for one minute
+    new ArrangeBuilder()
+        .withItemNotAvailable(mLocalDataSource, ITEM.getUid())
+        .withItemNotAvailable(mRemoteDataSource, ITEM.getUid());
+    AtomicLong nanos = new AtomicLong();
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return nanos.get();
+      }
+    };
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>()
+            .setMissingItemCache(10, 1, TimeUnit.MINUTES)
+            .setTicker(ticker)
+            .build());
+
+    // When the item is requested, and requested again after a minute
+    repository.getItem(ITEM.getUid()).subscribe(new TestSubscriber<>());
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(1));
+    repository.getItem(ITEM.getUid()).subscribe(new TestSubscriber<>());
+
+    // Then the remote data source is queried again
+    Mockito.verify(mRemoteDataSource, Mockito.times(2)).getItem(ITEM.getUid());
+  }
+
+  @Test
+  public final void getItem_getsAddedItem_whenItemWasKnownMissing() {
+    // Given that the item is available in neither the local nor the remote data source
+    // And when any item is added in local or remote, it completes successfully
+    new ArrangeBuilder()
+        .withItemNotAvailable(mLocalDataSource, ITEM.getUid())
+        .withItemNotAvailable(mRemoteDataSource, ITEM.getUid())
+        .withItemAddedAny(mLocalDataSource)
+        .withItemAddedAny(mRemoteDataSource);
+
+    // When the item is requested, then added, then requested again
+    mRepository.getItem(ITEM.getUid()).subscribe(new TestSubscriber<>());
+    mRepository.add(ITEM).subscribe(new TestObserver());
+    TestSubscriber<Optional<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getItem(ITEM.getUid()).subscribe(testSubscriber);
+
+    // Then the added item is returned and is no longer remembered as missing
+    testSubscriber.assertValue(Optional.of(ITEM));
+    Assert.assertThat(mRepository.getMissingItemsCacheSize(), is(0L));
+  }
+
+  /**
+   * Tests - Paging
+   */
+  @Test
+  public final void getPage_getsPageFromRemoteDataSource_andCachesPage() {
+    // Given that no page is available in the local data source
+    // And the first page of three is available in the remote data source
+    Page<E> page = new Page<>(Page.FIRST_PAGE, 3, ITEMS.size() * 3, ITEMS);
+    new ArrangeBuilder()
+        .withPagesNotAvailable(mLocalDataSource)
+        .withPageAvailable(mRemoteDataSource, OPTIONS, page)
+        .withItemsAddedAny(mLocalDataSource);
+
+    // When the first page is requested twice
+    mRepository.getPage(OPTIONS, Page.FIRST_PAGE).subscribe(new TestSubscriber<>());
+    TestSubscriber<Page<E>> testSubscriber = new TestSubscriber<>();
+    mRepository.getPage(OPTIONS, Page.FIRST_PAGE).subscribe(testSubscriber);
+
+    // Then the page is only loaded once from the remote data source, and its items saved locally
+    Mockito.verify(mRemoteDataSource).getPage(OPTIONS, Page.FIRST_PAGE);
+    Mockito.verify(mLocalDataSource).addAll(ITEMS);
+    // And the second request is answered from the cache with the same page
+    testSubscriber.assertValueCount(1);
+    Page<E> cachedPage = testSubscriber.values().get(0);
+    Assert.assertThat(cachedPage.getItems(), is(ITEMS));
+    Assert.assertThat(cachedPage.getTotalPages(), is(3));
+    Assert.assertTrue(cachedPage.hasNextPage());
+  }
+
+  @Test
+  public final void getPage_getsPageFromRemoteDataSourceAgain_afterRefresh() {
+    // Given that no page is available in the local data source
+    // And the first page is available in the remote data source
+    Page<E> page = new Page<>(Page.FIRST_PAGE, 1, ITEMS.size(), ITEMS);
+    new ArrangeBuilder()
+        .withPagesNotAvailable(mLocalDataSource)
+        .withPageAvailable(mRemoteDataSource, OPTIONS, page)
+        .withItemsAddedAny(mLocalDataSource);
+
+    // When the page is requested, the repository refreshed, and the page requested again
+    mRepository.getPage(OPTIONS, Page.FIRST_PAGE).subscribe(new TestSubscriber<>());
+    mRepository.refresh();
+    mRepository.getPage(OPTIONS, Page.FIRST_PAGE).subscribe(new TestSubscriber<>());
+
+    // Then the page is loaded from the remote data source again
+    Mockito.verify(mRemoteDataSource, Mockito.times(2)).getPage(OPTIONS, Page.FIRST_PAGE);
+  }
+
+  @Test
+  public final void getPage_getsStalePageFromLocal_thenRevalidatesFromRemote() {
+    // Given that the first page in the local data source was fetched two hours ago
+    // And that a different first page is available in the remote data source
+    // And a repository with a freshness ttl of one hour
+    final long now = TimeUnit.DAYS.toMillis(1);
+    stampFetchedAt(ITEMS, now - TimeUnit.HOURS.toMillis(2));
+    List<E> remoteItems = new ArrayList<>(ITEMS.subList(0, ITEMS.size() - 1));
+    new ArrangeBuilder()
+        .withPageAvailable(mLocalDataSource, OPTIONS,
+            new Page<>(Page.FIRST_PAGE, 2, Page.UNKNOWN_TOTAL_RESULTS, ITEMS))
+        .withPageAvailable(mRemoteDataSource, OPTIONS,
+            new Page<>(Page.FIRST_PAGE, 3, remoteItems.size() * 3, remoteItems))
+        .withItemsAddedAny(mLocalDataSource);
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>()
+            .setFreshnessTtl(1, TimeUnit.HOURS)
+            .setClock(() -> now)
+            .build());
+
+    // When the first page is requested, twice
+    TestSubscriber<Page<E>> testSubscriber = new TestSubscriber<>();
+    repository.getPage(OPTIONS, Page.FIRST_PAGE).subscribe(testSubscriber);
+    TestSubscriber<Page<E>> cachedSubscriber = new TestSubscriber<>();
+    repository.getPage(OPTIONS, Page.FIRST_PAGE).subscribe(cachedSubscriber);
+
+    // Then the local page is emitted first, then the remote page it was revalidated with
+    testSubscriber.assertValueCount(2);
+    testSubscriber.assertComplete();
+    Assert.assertThat(testSubscriber.values().get(0).getItems(), is(ITEMS));
+    Assert.assertThat(testSubscriber.values().get(1).getItems(), is(remoteItems));
+    Assert.assertThat(testSubscriber.values().get(1).getTotalPages(), is(3));
+    // And the second request is answered from the cache with the fresh remote page
+    Mockito.verify(mRemoteDataSource).getPage(OPTIONS, Page.FIRST_PAGE);
+    cachedSubscriber.assertValueCount(1);
+    Assert.assertThat(cachedSubscriber.values().get(0).getItems(), is(remoteItems));
+  }
+
+  @Test
+  public final void getPage_skipsRemoteDataSource_whenLocalPageFresh() {
+    // Given that the first page in the local data source was fetched ten minutes ago
+    // And a repository with a freshness ttl of one hour
+    final long now = TimeUnit.DAYS.toMillis(1);
+    stampFetchedAt(ITEMS, now - TimeUnit.MINUTES.toMillis(10));
+    PublishProcessor<Page<E>> remotePage = PublishProcessor.create();
+    Mockito.when(mRemoteDataSource.getPage(OPTIONS, Page.FIRST_PAGE)).thenReturn(remotePage);
+    new ArrangeBuilder().withPageAvailable(mLocalDataSource, OPTIONS,
+        new Page<>(Page.FIRST_PAGE, 2, Page.UNKNOWN_TOTAL_RESULTS, ITEMS));
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>()
+            .setFreshnessTtl(1, TimeUnit.HOURS)
+            .setClock(() -> now)
+            .build());
+
+    // When the first page is requested
+    TestSubscriber<Page<E>> testSubscriber = new TestSubscriber<>();
+    repository.getPage(OPTIONS, Page.FIRST_PAGE).subscribe(testSubscriber);
+
+    // Then the local page is returned without going to the network
+    Assert.assertFalse(remotePage.hasSubscribers());
+    testSubscriber.assertValueCount(1);
+    testSubscriber.assertComplete();
+    Assert.assertThat(testSubscriber.values().get(0).getItems(), is(ITEMS));
+  }
+
+  @Test
+  public final void getPage_keepsStaleLocalPage_whenRemoteDataSourceFails() {
+    // Given that the first page in the local data source was fetched two hours ago
+    // And that the remote data source fails
+    // And a repository with a freshness ttl of one hour
+    final long now = TimeUnit.DAYS.toMillis(1);
+    stampFetchedAt(ITEMS, now - TimeUnit.HOURS.toMillis(2));
+    new ArrangeBuilder().withPageAvailable(mLocalDataSource, OPTIONS,
+        new Page<>(Page.FIRST_PAGE, 2, Page.UNKNOWN_TOTAL_RESULTS, ITEMS));
+    Mockito.when(mRemoteDataSource.getPage(OPTIONS, Page.FIRST_PAGE))
+        .thenReturn(Flowable.error(new IllegalStateException("offline")));
+    Repository<E> repository = new Repository<>(mRemoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<E>()
+            .setFreshnessTtl(1, TimeUnit.HOURS)
+            .setClock(() -> now)
+            .build());
+
+    // When the first page is requested
+    TestSubscriber<Page<E>> testSubscriber = new TestSubscriber<>();
+    repository.getPage(OPTIONS, Page.FIRST_PAGE).subscribe(testSubscriber);
+
+    // Then the stale local page is returned, without the error
+    testSubscriber.assertValueCount(1);
+    testSubscriber.assertNoErrors();
+    Assert.assertThat(testSubscriber.values().get(0).getItems(), is(ITEMS));
+  }
+
+  @Test
+  public final void pages_loadsEachPageOnlyWhenRequested() {
+    // Given that no page is available in the local data source
+    // And three pages are available in the remote data source
+    int pageSize = ITEMS.size() / 3;
+    ArrangeBuilder arrangeBuilder = new ArrangeBuilder()
+        .withPagesNotAvailable(mLocalDataSource)
+        .withItemsAddedAny(mLocalDataSource);
+    for (int number = 1; number <= 3; number++) {
+      List<E> items = ITEMS.subList((number - 1) * pageSize, number * pageSize);
+      arrangeBuilder.withPageAvailable(mRemoteDataSource, OPTIONS,
+          new Page<>(number, 3, pageSize * 3, items));
+    }
+
+    // When the pages are subscribed to without requesting any
+    TestSubscriber<Page<E>> testSubscriber = new TestSubscriber<>(0);
+    Pager.pages(mRepository, OPTIONS).subscribe(testSubscriber);
+
+    // Then no page is loaded
+    Mockito.verify(mRemoteDataSource, Mockito.never()).getPage(Matchers.anyMap(),
+        Matchers.anyInt());
+
+    // When one page is requested
+    testSubscriber.request(1);
+
+    // Then only the first page is loaded
+    Mockito.verify(mRemoteDataSource).getPage(OPTIONS, 1);
+    Mockito.verify(mRemoteDataSource, Mockito.never()).getPage(OPTIONS, 2);
+    testSubscriber.assertValueCount(1);
+    testSubscriber.assertNotComplete();
+
+    // When more pages than remain are requested
+    testSubscriber.request(5);
+
+    // Then the remaining pages are loaded, and the stream completes after the last one
+    Mockito.verify(mRemoteDataSource).getPage(OPTIONS, 3);
+    Mockito.verify(mRemoteDataSource, Mockito.never()).getPage(OPTIONS, 4);
+    testSubscriber.assertValueCount(3);
+    testSubscriber.assertComplete();
+  }
 
   private class ArrangeBuilder {
 
@@ -653,6 +1630,18 @@ public abstract class BaseMockRepositoryTest<E extends Entity> {
       return this;
     }
 
+    ArrangeBuilder withPagesNotAvailable(DataSource<E> dataSource) {
+      Mockito.when(dataSource.getPage(Matchers.anyMap(), Matchers.anyInt()))
+          .thenReturn(Flowable.empty());
+      return this;
+    }
+
+    ArrangeBuilder withPageAvailable(DataSource<E> dataSource, Map<String,String> options,
+                                     Page<E> page) {
+      Mockito.when(dataSource.getPage(options, page.getNumber())).thenReturn(Flowable.just(page));
+      return this;
+    }
+
     ArrangeBuilder withItemNotAvailable(DataSource<E> dataSource, String id) {
       Mockito.when(dataSource.getItem(Matchers.eq(id))).thenReturn(Flowable.just(Optional.absent()));
       return this;
@@ -0,0 +1,88 @@
+package com.andrewclam.popularmovie.data.source;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Unit tests for the {@link CacheRefreshInterceptor}, requests are answered by a terminal
+ * interceptor instead of the network
+ */
+public class CacheRefreshInterceptorTest {
+
+  private AtomicLong mNow;
+
+  private AtomicReference<Request> mSentRequest;
+
+  private OkHttpClient mClient;
+
+  private CacheRefreshInterceptor mCacheRefreshInterceptor;
+
+  @Before
+  public final void setupClient() {
+    mNow = new AtomicLong(1_000_000);
+    mSentRequest = new AtomicReference<>();
+    mCacheRefreshInterceptor = new CacheRefreshInterceptor(mNow::get);
+    mClient = new OkHttpClient.Builder()
+        .addInterceptor(mCacheRefreshInterceptor)
+        .addInterceptor(chain -> {
+          mSentRequest.set(chain.request());
+          return new Response.Builder()
+              .request(chain.request())
+              .protocol(Protocol.HTTP_1_1)
+              .code(200)
+              .message("OK")
+              .body(ResponseBody.create(MediaType.parse("application/json"), "{}"))
+              .build();
+        })
+        .build();
+  }
+
+  @Test
+  public final void intercept_leavesRequest_whenNeverRefreshed() throws IOException {
+    execute(new Request.Builder().url("https://api.themoviedb.org/3/movie/1").build());
+
+    Assert.assertThat(mSentRequest.get().header("Cache-Control"), is(nullValue()));
+  }
+
+  @Test
+  public final void intercept_limitsMaxAgeToTimeSinceRefresh() throws IOException {
+    mCacheRefreshInterceptor.refresh();
+
+    execute(new Request.Builder().url("https://api.themoviedb.org/3/movie/1").build());
+    Assert.assertThat(mSentRequest.get().header("Cache-Control"), is("max-age=0"));
+
+    mNow.addAndGet(90_500);
+    execute(new Request.Builder().url("https://api.themoviedb.org/3/movie/1").build());
+    Assert.assertThat(mSentRequest.get().header("Cache-Control"), is("max-age=90"));
+  }
+
+  @Test
+  public final void intercept_keepsCacheControlSetByRequest() throws IOException {
+    mCacheRefreshInterceptor.refresh();
+
+    execute(new Request.Builder().url("https://api.themoviedb.org/3/movie/1")
+        .header("Cache-Control", "no-store")
+        .build());
+
+    Assert.assertThat(mSentRequest.get().header("Cache-Control"), is("no-store"));
+  }
+
+  private void execute(Request request) throws IOException {
+    mClient.newCall(request).execute().close();
+  }
+}
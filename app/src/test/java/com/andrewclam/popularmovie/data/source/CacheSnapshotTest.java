@@ -0,0 +1,94 @@
+package com.andrewclam.popularmovie.data.source;
+
+import com.andrewclam.popularmovie.data.model.Movie;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Unit tests for the implementation of the {@link CacheSnapshot<>} persisted cache
+ */
+public class CacheSnapshotTest {
+
+  @Rule
+  public final TemporaryFolder mFolder = new TemporaryFolder();
+
+  private File mFile;
+
+  private List<Movie> ITEMS;
+
+  @Before
+  public final void setupSnapshot() throws IOException {
+    mFile = new File(mFolder.getRoot(), "movies.snapshot");
+
+    ITEMS = new ArrayList<>();
+    for (long movieId = 1; movieId <= 30; movieId++) {
+      Movie item = new Movie();
+      item.setMovieId(movieId);
+      item.setTitle("Movie " + movieId);
+      item.setPosterPath(movieId % 2 == 0 ? UUID.randomUUID().toString() + ".jpg" : null);
+      item.setVoteAverage(movieId / 10.0);
+      item.setFetchedAt(1000 + movieId);
+      ITEMS.add(item);
+    }
+  }
+
+  @Test
+  public final void read_returnsWrittenItemsInOrder() throws IOException {
+    new CacheSnapshot<>(mFile, new EntityCodecMovies()).write(ITEMS);
+
+    List<Movie> items = new CacheSnapshot<>(mFile, new EntityCodecMovies()).read();
+
+    Assert.assertThat(items, is(ITEMS));
+    for (int i = 0; i < ITEMS.size(); i++) {
+      Assert.assertThat(items.get(i).getTitle(), is(ITEMS.get(i).getTitle()));
+      Assert.assertThat(items.get(i).getFetchedAt(), is(ITEMS.get(i).getFetchedAt()));
+    }
+  }
+
+  @Test
+  public final void read_returnsNull_whenSnapshotIsMissing() {
+    Assert.assertNull(new CacheSnapshot<>(mFile, new EntityCodecMovies()).read());
+  }
+
+  @Test
+  public final void read_returnsNull_whenPayloadIsCorrupt() throws IOException {
+    new CacheSnapshot<>(mFile, new EntityCodecMovies()).write(ITEMS);
+
+    // Flip a byte of the payload, the checksum no longer matches
+    RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+    file.seek(CacheSnapshot.HEADER_BYTES + 5);
+    int value = file.read();
+    file.seek(CacheSnapshot.HEADER_BYTES + 5);
+    file.write(value ^ 0xFF);
+    file.close();
+
+    Assert.assertNull(new CacheSnapshot<>(mFile, new EntityCodecMovies()).read());
+  }
+
+  @Test
+  public final void read_returnsNull_whenWrittenByAnotherCodecVersion() throws IOException {
+    new CacheSnapshot<>(mFile, new EntityCodecMovies()).write(ITEMS);
+
+    EntityCodecMovies newerCodec = new EntityCodecMovies() {
+      @Override
+      int getVersion() {
+        return super.getVersion() + 1;
+      }
+    };
+
+    Assert.assertNull(new CacheSnapshot<>(mFile, newerCodec).read());
+  }
+}
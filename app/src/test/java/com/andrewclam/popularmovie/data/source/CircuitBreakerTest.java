@@ -0,0 +1,192 @@
+package com.andrewclam.popularmovie.data.source;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Unit tests for the {@link CircuitBreaker} and the {@link RetryWithBackoff} of remote requests,
+ * time is advanced with a {@link TestScheduler}
+ */
+public class CircuitBreakerTest {
+
+  private static final int FAILURE_THRESHOLD = 2;
+
+  private static final long OPEN_MILLIS = 30000;
+
+  private TestScheduler mScheduler;
+
+  private CircuitBreakers mCircuitBreakers;
+
+  @Before
+  public final void setupCircuitBreakers() {
+    mScheduler = new TestScheduler();
+    mCircuitBreakers = new CircuitBreakers(FAILURE_THRESHOLD, OPEN_MILLIS, mScheduler);
+  }
+
+  @Test
+  public final void guard_opensCircuit_afterConsecutiveTransientFailures() {
+    CircuitBreaker circuitBreaker = mCircuitBreakers.get("discover/movie");
+    AtomicInteger requests = new AtomicInteger();
+    Flowable<String> failing = Flowable.defer(() -> {
+      requests.incrementAndGet();
+      return Flowable.<String>error(new IOException("offline"));
+    });
+
+    circuitBreaker.guard(failing).test().assertError(IOException.class);
+    circuitBreaker.guard(failing).test().assertError(IOException.class);
+    TestSubscriber<String> shortCircuited = circuitBreaker.guard(failing).test();
+
+    shortCircuited.assertError(CircuitOpenException.class);
+    Assert.assertThat(requests.get(), is(FAILURE_THRESHOLD));
+    Assert.assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+    // the other endpoints keep their own circuit
+    Assert.assertThat(mCircuitBreakers.get("movie").getState(), is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  public final void guard_keepsCircuitClosed_whenFailuresAreNotTransient() {
+    CircuitBreaker circuitBreaker = mCircuitBreakers.get("movie");
+    Flowable<String> notFound = Flowable.error(httpException(404));
+
+    for (int i = 0; i <= FAILURE_THRESHOLD; i++) {
+      circuitBreaker.guard(notFound).test().assertError(HttpException.class);
+    }
+
+    Assert.assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  public final void guard_closesCircuit_whenTrialSucceedsAfterOpenPeriod() {
+    CircuitBreaker circuitBreaker = mCircuitBreakers.get("discover/movie");
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      circuitBreaker.guard(Flowable.error(httpException(503))).test();
+    }
+
+    mScheduler.advanceTimeBy(OPEN_MILLIS, TimeUnit.MILLISECONDS);
+    Assert.assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+    circuitBreaker.guard(Flowable.just("movies")).test().assertValue("movies");
+
+    Assert.assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  public final void guard_reopensCircuit_whenTrialFails() {
+    CircuitBreaker circuitBreaker = mCircuitBreakers.get("discover/movie");
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      circuitBreaker.guard(Flowable.error(new IOException("offline"))).test();
+    }
+
+    mScheduler.advanceTimeBy(OPEN_MILLIS, TimeUnit.MILLISECONDS);
+    circuitBreaker.guard(Flowable.error(new IOException("offline"))).test();
+
+    Assert.assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+  }
+
+  @Test
+  public final void guard_keepsCircuitHalfOpen_whenTrialShedByRateLimiter() {
+    CircuitBreaker circuitBreaker = mCircuitBreakers.get("discover/movie");
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      circuitBreaker.guard(Flowable.error(new IOException("offline"))).test();
+    }
+
+    mScheduler.advanceTimeBy(OPEN_MILLIS, TimeUnit.MILLISECONDS);
+    circuitBreaker.guard(Flowable.error(new RateLimitExceededException())).test()
+        .assertError(RateLimitExceededException.class);
+
+    // the shed trial neither closes the circuit nor keeps the next trial out
+    Assert.assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+    circuitBreaker.guard(Flowable.error(new IOException("offline"))).test()
+        .assertError(IOException.class);
+    Assert.assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+  }
+
+  @Test
+  public final void call_countsSingleFailurePerRequest_acrossItsRetries() {
+    DataSourceRemoteMovies remoteDataSource = new DataSourceRemoteMovies(
+        Mockito.mock(DataSourceRemoteMovies.ApiServiceMovies.class), new MovieDetailsCache());
+    remoteDataSource.mRateLimiter = new RateLimiter(100, 100, mScheduler);
+    remoteDataSource.mCircuitBreakers = mCircuitBreakers;
+    remoteDataSource.mRetryWithBackoff =
+        new RetryWithBackoff(3, 500, 8000, new Random(1), mScheduler);
+    AtomicInteger attempts = new AtomicInteger();
+    Flowable<String> unavailable = Flowable.defer(() -> {
+      attempts.incrementAndGet();
+      return Flowable.<String>error(httpException(503));
+    });
+
+    TestSubscriber<String> testSubscriber = remoteDataSource.call("discover/movie",
+        RateLimiter.Priority.PAGE, unavailable).test();
+    mScheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+
+    // the first attempt and its three retries fail a single request
+    testSubscriber.assertError(HttpException.class);
+    Assert.assertThat(attempts.get(), is(4));
+    Assert.assertThat(mCircuitBreakers.get("discover/movie").getState(),
+        is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  public final void retryWithBackoff_retriesTransientErrors_untilSuccess() {
+    RetryWithBackoff retry = new RetryWithBackoff(3, 500, 8000, new Random(1), mScheduler);
+    AtomicInteger attempts = new AtomicInteger();
+    Flowable<String> flaky = Flowable.defer(() -> attempts.incrementAndGet() < 3
+        ? Flowable.<String>error(httpException(502))
+        : Flowable.just("movies"));
+
+    TestSubscriber<String> testSubscriber = flaky.retryWhen(retry).test();
+    mScheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+
+    testSubscriber.assertValue("movies");
+    Assert.assertThat(attempts.get(), is(3));
+  }
+
+  @Test
+  public final void retryWithBackoff_doesNotRetry_whenErrorNotTransient() {
+    RetryWithBackoff retry = new RetryWithBackoff(3, 500, 8000, new Random(1), mScheduler);
+    AtomicInteger attempts = new AtomicInteger();
+    Flowable<String> notFound = Flowable.defer(() -> {
+      attempts.incrementAndGet();
+      return Flowable.<String>error(httpException(404));
+    });
+
+    TestSubscriber<String> testSubscriber = notFound.retryWhen(retry).test();
+    mScheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+
+    testSubscriber.assertError(HttpException.class);
+    Assert.assertThat(attempts.get(), is(1));
+  }
+
+  @Test
+  public final void retryWithBackoff_delaysStayWithinExponentialBound() {
+    RetryWithBackoff retry = new RetryWithBackoff(10, 500, 8000, new Random(1), mScheduler);
+
+    for (int i = 0; i < 100; i++) {
+      Assert.assertThat(retry.getDelayMillis(0), lessThan(500L));
+      Assert.assertThat(retry.getDelayMillis(2), lessThan(2000L));
+      Assert.assertThat(retry.getDelayMillis(9), lessThan(8000L));
+    }
+  }
+
+  private static HttpException httpException(int code) {
+    return new HttpException(Response.error(code,
+        ResponseBody.create(MediaType.parse("application/json"), "{}")));
+  }
+}
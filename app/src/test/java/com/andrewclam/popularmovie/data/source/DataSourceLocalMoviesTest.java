@@ -0,0 +1,119 @@
+package com.andrewclam.popularmovie.data.source;
+
+import com.andrewclam.popularmovie.data.DataSource;
+import com.andrewclam.popularmovie.data.db.AppContentProvider;
+import com.andrewclam.popularmovie.data.db.AppDbContract;
+import com.andrewclam.popularmovie.data.model.Movie;
+import com.andrewclam.popularmovie.data.model.Page;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Unit tests for the {@link DataSourceLocalMovies} against the {@link AppContentProvider} and
+ * its SQLite database, run with Robolectric
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DataSourceLocalMoviesTest {
+
+  private DataSourceLocalMovies mLocalDataSource;
+
+  @Before
+  public final void setupLocalDataSource() {
+    Robolectric.buildContentProvider(AppContentProvider.class)
+        .create(AppDbContract.MovieEntry.CONTENT_URI_MOVIES.getAuthority());
+    mLocalDataSource = new DataSourceLocalMovies();
+    mLocalDataSource.mContentResolver = RuntimeEnvironment.application.getContentResolver();
+    mLocalDataSource.mBriteContentResolver = new SqlBrite.Builder().build()
+        .wrapContentProvider(mLocalDataSource.mContentResolver, Schedulers.trampoline());
+  }
+
+  @Test
+  public final void getItems_returnsItemsEqualToTheSavedOnes() {
+    List<Movie> movies = provideMovies();
+
+    mLocalDataSource.addAll(movies).test().assertComplete();
+
+    Assert.assertThat(mLocalDataSource.getItems().blockingFirst(), is(movies));
+  }
+
+  @Test
+  public final void getPage_returnsStoredMoviesOfThePage_inSortOrder() {
+    mLocalDataSource.addAll(provideMovies()).test().assertComplete();
+
+    Page<Movie> firstPage = mLocalDataSource.getPage(Collections.emptyMap(), Page.FIRST_PAGE)
+        .blockingFirst();
+    Page<Movie> secondPage = mLocalDataSource.getPage(Collections.emptyMap(), Page.FIRST_PAGE + 1)
+        .blockingFirst();
+
+    // most popular first, by default
+    Assert.assertThat(firstPage.getItems().size(), is(3));
+    Assert.assertThat(firstPage.getItems().get(0).getMovieId(), is(3L));
+    Assert.assertThat(firstPage.getItems().get(2).getMovieId(), is(1L));
+    Assert.assertTrue(firstPage.hasNextPage());
+    Assert.assertTrue(secondPage.getItems().isEmpty());
+    Assert.assertFalse(secondPage.hasNextPage());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public final void getItemsAndRevalidate_emitsOnce_whenRemoteItemsDidNotChange() {
+    // Given stale items stored in the local data source, and the same items in the remote one
+    List<Movie> movies = provideMovies();
+    mLocalDataSource.addAll(movies).test().assertComplete();
+    DataSource<Movie> remoteDataSource = Mockito.mock(DataSource.class);
+    Mockito.when(remoteDataSource.getItems()).thenReturn(Flowable.just(provideMovies()));
+    Repository<Movie> repository = new Repository<>(remoteDataSource, mLocalDataSource,
+        new RepositoryConfig.Builder<Movie>().setFreshnessTtl(1, TimeUnit.MINUTES).build());
+
+    // When the items are loaded and revalidated
+    TestSubscriber<List<Movie>> testSubscriber = repository.getItemsAndRevalidate().test();
+
+    // Then the local items are emitted, and not again after revalidating them
+    testSubscriber.assertValueCount(1);
+    testSubscriber.assertComplete();
+    Mockito.verify(remoteDataSource).getItems();
+  }
+
+  private static List<Movie> provideMovies() {
+    List<Movie> movies = new ArrayList<>();
+    for (long id = 1; id <= 3; id++) {
+      Movie movie = new Movie();
+      movie.setMovieId(id);
+      movie.setTitle("Title " + id);
+      movie.setOriginalTitle("Original Title " + id);
+      movie.setOriginalLanguage("en");
+      movie.setReleaseDate("2018-05-0" + id);
+      movie.setPosterPath("/poster" + id + ".jpg");
+      movie.setBackdropPath("/backdrop" + id + ".jpg");
+      movie.setOverview("Overview " + id);
+      movie.setVoteAverage(7.5 + id);
+      movie.setVoteCount(100 * id);
+      movie.setPopularity(10.25 * id);
+      movie.setAdult(false);
+      movie.setVideo(id == 2);
+      // fetched long ago, so the items are revalidated
+      movie.setFetchedAt(1);
+      movies.add(movie);
+    }
+    return movies;
+  }
+}
@@ -0,0 +1,139 @@
+package com.andrewclam.popularmovie.data.source;
+
+import com.andrewclam.popularmovie.data.model.Movie;
+import com.andrewclam.popularmovie.data.model.MovieResponse;
+import com.google.common.io.Resources;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Micro-benchmark of the streaming adapters of the {@link EntityTypeAdapterFactory} against the
+ * reflective decoding they replace, on a discover page in the shape the api answers with.
+ * <p>
+ * Both adapters are warmed up, then measured in alternating rounds so neither profits from
+ * running last, the fastest round and the bytes allocated per decoded page are printed. Timings
+ * on a shared build machine are too noisy to assert on, so it is kept out of the unit tests and
+ * run by hand, the decoded pages are checked to be equal by {@link EntityTypeAdapterFactoryTest}.
+ */
+@Ignore("benchmark, run by hand")
+public class EntityTypeAdapterFactoryBenchmarkTest {
+
+  private static final String DISCOVER_PAGE_RESOURCE = "discover_movies_page.json";
+
+  private static final int WARMUP_ITERATIONS = 2_000;
+
+  private static final int MEASURED_ITERATIONS = 5_000;
+
+  private static final int ROUNDS = 5;
+
+  private static final Type MOVIE_RESPONSE_TYPE =
+      new TypeToken<MovieResponse<Movie>>() {}.getType();
+
+  private String mDiscoverPageJson;
+
+  private Gson mStreamingGson;
+
+  private Gson mReflectiveGson;
+
+  @Before
+  public final void setupGson() throws IOException {
+    mDiscoverPageJson = Resources.toString(
+        Resources.getResource(DISCOVER_PAGE_RESOURCE), StandardCharsets.UTF_8);
+    mStreamingGson = new GsonBuilder()
+        .registerTypeAdapterFactory(new EntityTypeAdapterFactory())
+        .create();
+    mReflectiveGson = new Gson();
+  }
+
+  @Test
+  public final void read_discoverPage_streamingVsReflective() {
+    warmUp(mReflectiveGson);
+    warmUp(mStreamingGson);
+    Result reflective = null;
+    Result streaming = null;
+    for (int round = 0; round < ROUNDS; round++) {
+      reflective = Result.fastest(reflective, measure(mReflectiveGson));
+      streaming = Result.fastest(streaming, measure(mStreamingGson));
+    }
+
+    System.out.println(String.format(
+        "discover page (%d bytes, %d movies), fastest of %d rounds of %d pages:%n"
+            + "  reflective: %.1f us, %d bytes allocated%n"
+            + "  streaming:  %.1f us, %d bytes allocated",
+        mDiscoverPageJson.length(), decode(mStreamingGson).getResults().size(), ROUNDS,
+        MEASURED_ITERATIONS,
+        reflective.mMicrosPerPage, reflective.mBytesPerPage,
+        streaming.mMicrosPerPage, streaming.mBytesPerPage));
+  }
+
+  private MovieResponse<Movie> decode(Gson gson) {
+    return gson.fromJson(new StringReader(mDiscoverPageJson), MOVIE_RESPONSE_TYPE);
+  }
+
+  private void warmUp(Gson gson) {
+    int results = 0;
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      results += decode(gson).getResults().size();
+    }
+    Assert.assertThat(results, is(20 * WARMUP_ITERATIONS));
+  }
+
+  private Result measure(Gson gson) {
+    int results = 0;
+    long allocatedBefore = getAllocatedBytes();
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      results += decode(gson).getResults().size();
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    long allocated = getAllocatedBytes() - allocatedBefore;
+    // keeps the decoding from being optimized away
+    Assert.assertThat(results, is(20 * MEASURED_ITERATIONS));
+    return new Result(elapsedNanos / 1000.0 / MEASURED_ITERATIONS,
+        allocated < 0 ? -1 : allocated / MEASURED_ITERATIONS);
+  }
+
+  /**
+   * @return the bytes allocated by the current thread so far, or a negative number if the jvm
+   * doesn't count them
+   */
+  private static long getAllocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadMXBean)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  private static final class Result {
+
+    private final double mMicrosPerPage;
+
+    private final long mBytesPerPage;
+
+    private Result(double microsPerPage, long bytesPerPage) {
+      mMicrosPerPage = microsPerPage;
+      mBytesPerPage = bytesPerPage;
+    }
+
+    private static Result fastest(Result fastest, Result result) {
+      return fastest == null || result.mMicrosPerPage < fastest.mMicrosPerPage ? result : fastest;
+    }
+  }
+}
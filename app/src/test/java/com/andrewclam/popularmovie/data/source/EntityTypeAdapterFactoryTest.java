@@ -0,0 +1,148 @@
+package com.andrewclam.popularmovie.data.source;
+
+import com.andrewclam.popularmovie.data.model.Movie;
+import com.andrewclam.popularmovie.data.model.MovieDetails;
+import com.andrewclam.popularmovie.data.model.MovieResponse;
+import com.andrewclam.popularmovie.data.model.MovieVideo;
+import com.google.common.io.Resources;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Unit tests for the streaming adapters of the {@link EntityTypeAdapterFactory}, checked against
+ * the reflective decoding they replace
+ */
+public class EntityTypeAdapterFactoryTest {
+
+  private static final String MOVIES_JSON = "{\"page\":2,\"total_results\":19629,"
+      + "\"total_pages\":982,\"results\":["
+      + "{\"vote_count\":1733,\"id\":299536,\"video\":false,\"vote_average\":8.7,"
+      + "\"title\":\"Avengers: Infinity War\",\"popularity\":641.2,"
+      + "\"poster_path\":\"/7WsyChQLEftFiDOVTGkv3hFpyyt.jpg\",\"original_language\":\"en\","
+      + "\"original_title\":\"Avengers: Infinity War\",\"genre_ids\":[12,878,14,28],"
+      + "\"backdrop_path\":\"/bOGkgRGdhrBYJSLpXaxhXVstddV.jpg\",\"adult\":false,"
+      + "\"overview\":\"As the Avengers and their allies...\",\"release_date\":\"2018-04-25\"},"
+      + "{\"vote_count\":0,\"id\":1,\"video\":true,\"vote_average\":0,\"title\":\"Untitled\","
+      + "\"popularity\":null,\"poster_path\":null,\"original_language\":\"fr\","
+      + "\"original_title\":\"Sans titre\",\"genre_ids\":[],\"backdrop_path\":null,"
+      + "\"adult\":true,\"overview\":\"\",\"release_date\":\"\"}]}";
+
+  private static final String VIDEOS_JSON = "{\"id\":299536,\"results\":["
+      + "{\"id\":\"5a200baa925141033608f5f0\",\"iso_639_1\":\"en\",\"iso_3166_1\":\"US\","
+      + "\"key\":\"6ZfuNTqbHE8\",\"name\":\"Official Trailer\",\"site\":\"YouTube\","
+      + "\"size\":1080,\"type\":\"Trailer\"}]}";
+
+  private static final String DETAILS_JSON = "{\"id\":299536,\"title\":\"Avengers: Infinity War\","
+      + "\"genres\":[{\"id\":12,\"name\":\"Adventure\"}],\"vote_average\":8.7,"
+      + "\"videos\":{\"results\":[{\"id\":\"5a200baa925141033608f5f0\",\"key\":\"6ZfuNTqbHE8\","
+      + "\"name\":\"Official Trailer\",\"site\":\"YouTube\",\"size\":1080,\"type\":\"Trailer\"}]},"
+      + "\"reviews\":{\"page\":1,\"results\":[{\"author\":\"Gimly\",\"content\":\"Great.\","
+      + "\"id\":\"5ae6d4a2c3a36836c8000e41\",\"url\":\"https://www.themoviedb.org/review/1\"}],"
+      + "\"total_pages\":1,\"total_results\":1}}";
+
+  private Gson mStreamingGson;
+
+  private Gson mReflectiveGson;
+
+  @Before
+  public final void setupGson() {
+    mStreamingGson = new GsonBuilder()
+        .registerTypeAdapterFactory(new EntityTypeAdapterFactory())
+        .create();
+    mReflectiveGson = new Gson();
+  }
+
+  @Test
+  public final void read_decodesMovieResponse_likeReflectiveAdapter() {
+    Type type = new TypeToken<MovieResponse<Movie>>() {}.getType();
+
+    MovieResponse<Movie> streamed = mStreamingGson.fromJson(MOVIES_JSON, type);
+    MovieResponse<Movie> reflected = mReflectiveGson.fromJson(MOVIES_JSON, type);
+
+    Assert.assertThat(streamed.getPage(), is(2));
+    Assert.assertThat(streamed.getTotalPages(), is(982));
+    Assert.assertThat(streamed.getTotalResults(), is(19629));
+    Assert.assertThat(streamed.getResults().size(), is(2));
+    // the reflective adapter bypasses the setter that assigns the uid
+    for (Movie movie : reflected.getResults()) {
+      movie.setMovieId(movie.getMovieId());
+    }
+    Assert.assertThat(streamed.getResults(), is(reflected.getResults()));
+    Assert.assertThat(streamed.getResults().get(0).getUid(), is("299536"));
+  }
+
+  @Test
+  public final void read_decodesDiscoverPage_likeReflectiveAdapter() throws IOException {
+    Type type = new TypeToken<MovieResponse<Movie>>() {}.getType();
+    String json = Resources.toString(
+        Resources.getResource("discover_movies_page.json"), StandardCharsets.UTF_8);
+
+    MovieResponse<Movie> streamed = mStreamingGson.fromJson(json, type);
+    MovieResponse<Movie> reflected = mReflectiveGson.fromJson(json, type);
+
+    Assert.assertThat(streamed.getResults().size(), is(20));
+    for (Movie movie : reflected.getResults()) {
+      movie.setMovieId(movie.getMovieId());
+    }
+    Assert.assertThat(streamed.getResults(), is(reflected.getResults()));
+  }
+
+  @Test
+  public final void read_decodesMovieVideoResponse_likeReflectiveAdapter() {
+    MovieVideo.Response streamed = mStreamingGson.fromJson(VIDEOS_JSON, MovieVideo.Response.class);
+    MovieVideo.Response reflected =
+        mReflectiveGson.fromJson(VIDEOS_JSON, MovieVideo.Response.class);
+
+    Assert.assertThat(streamed.getMovieVideoResponseId(), is(299536));
+    List<MovieVideo> reflectedVideos = reflected.getResults();
+    for (MovieVideo video : reflectedVideos) {
+      video.setMovieVideoId(video.getMovieVideoId());
+    }
+    Assert.assertThat(streamed.getResults(), is(reflectedVideos));
+    Assert.assertThat(streamed.getResults().get(0).getUid(), is("5a200baa925141033608f5f0"));
+  }
+
+  @Test
+  public final void read_decodesMovieVideo_withNullId() {
+    MovieVideo.Response streamed = mStreamingGson.fromJson(
+        "{\"id\":299536,\"results\":[{\"id\":null,\"key\":\"6ZfuNTqbHE8\"}]}",
+        MovieVideo.Response.class);
+
+    Assert.assertThat(streamed.getResults().size(), is(1));
+    Assert.assertNull(streamed.getResults().get(0).getMovieVideoId());
+    Assert.assertThat(streamed.getResults().get(0).getKey(), is("6ZfuNTqbHE8"));
+  }
+
+  @Test
+  public final void read_decodesMovieDetails_withAppendedResponses() {
+    MovieDetails details = mStreamingGson.fromJson(DETAILS_JSON, MovieDetails.class);
+
+    Assert.assertThat(details.getMovie().getUid(), is("299536"));
+    Assert.assertThat(details.getMovie().getTitle(), is("Avengers: Infinity War"));
+    Assert.assertThat(details.getMovie().getVoteAverage(), is(8.7));
+    Assert.assertThat(details.getVideos().getResults().size(), is(1));
+    Assert.assertThat(details.getVideos().getResults().get(0).getKey(), is("6ZfuNTqbHE8"));
+    Assert.assertThat(details.getReviews().getResults().size(), is(1));
+    Assert.assertThat(details.getReviews().getResults().get(0).getUid(),
+        is("5ae6d4a2c3a36836c8000e41"));
+  }
+
+  @Test
+  public final void read_decodesNullResponse() {
+    Type type = new TypeToken<MovieResponse<Movie>>() {}.getType();
+
+    Assert.assertNull(mStreamingGson.fromJson("null", type));
+  }
+}
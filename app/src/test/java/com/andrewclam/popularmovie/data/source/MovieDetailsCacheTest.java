@@ -0,0 +1,85 @@
+package com.andrewclam.popularmovie.data.source;
+
+import com.andrewclam.popularmovie.data.model.MovieDetails;
+import com.google.common.base.Ticker;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Unit tests for the {@link MovieDetailsCache}, which hands a combined details response over
+ * between the remote data sources
+ */
+public class MovieDetailsCacheTest {
+
+  private static final String MOVIE_ID = "299536";
+
+  private final AtomicLong mNanos = new AtomicLong();
+
+  private MovieDetailsCache mDetailsCache;
+
+  private AtomicInteger mRequestCount;
+
+  private Flowable<MovieDetails> mRequest;
+
+  @Before
+  public final void setupDetailsCache() {
+    mDetailsCache = new MovieDetailsCache(new Ticker() {
+      @Override
+      public long read() {
+        return mNanos.get();
+      }
+    });
+    mRequestCount = new AtomicInteger();
+    mRequest = Flowable.defer(() -> {
+      mRequestCount.incrementAndGet();
+      return Flowable.just(new MovieDetails());
+    });
+  }
+
+  @Test
+  public final void get_servesCachedResponse_insteadOfAnotherRequest() {
+    MovieDetails first = mDetailsCache.get(MOVIE_ID, mRequest).blockingFirst();
+    MovieDetails second = mDetailsCache.get(MOVIE_ID, mRequest).blockingFirst();
+
+    Assert.assertThat(second, is(first));
+    Assert.assertThat(mRequestCount.get(), is(1));
+  }
+
+  @Test
+  public final void get_makesNewRequest_whenCachedResponseExpired() {
+    mDetailsCache.get(MOVIE_ID, mRequest).blockingFirst();
+
+    mNanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+    mDetailsCache.get(MOVIE_ID, mRequest).blockingFirst();
+
+    Assert.assertThat(mRequestCount.get(), is(2));
+  }
+
+  @Test
+  public final void get_joinsRequestInFlight() {
+    PublishProcessor<MovieDetails> response = PublishProcessor.create();
+    Flowable<MovieDetails> request = response.doOnSubscribe(s -> mRequestCount.incrementAndGet());
+
+    TestSubscriber<MovieDetails> movie = mDetailsCache.get(MOVIE_ID, request).test();
+    TestSubscriber<MovieDetails> videos = mDetailsCache.get(MOVIE_ID, request).test();
+    MovieDetails details = new MovieDetails();
+    response.onNext(details);
+    response.onComplete();
+
+    movie.assertValue(details);
+    videos.assertValue(details);
+    Assert.assertThat(mRequestCount.get(), is(1));
+  }
+}
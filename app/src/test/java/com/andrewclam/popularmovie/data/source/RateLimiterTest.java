@@ -0,0 +1,144 @@
+package com.andrewclam.popularmovie.data.source;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Unit tests for the {@link RateLimiter}, time is advanced with a {@link TestScheduler}
+ */
+public class RateLimiterTest {
+
+  private static final int BURST = 2;
+
+  private static final double PERMITS_PER_SECOND = 1;
+
+  private TestScheduler mScheduler;
+
+  private RateLimiter mRateLimiter;
+
+  @Before
+  public final void setupRateLimiter() {
+    mScheduler = new TestScheduler();
+    mRateLimiter = new RateLimiter(BURST, PERMITS_PER_SECOND, mScheduler);
+  }
+
+  @Test
+  public final void acquire_withinBurst_grantsRightAway() {
+    TestObserver<Void> first = mRateLimiter.acquire(RateLimiter.Priority.PAGE).test();
+    TestObserver<Void> second = mRateLimiter.acquire(RateLimiter.Priority.PAGE).test();
+
+    first.assertComplete();
+    second.assertComplete();
+    Assert.assertThat(mRateLimiter.getQueueDepth(), is(0));
+  }
+
+  @Test
+  public final void acquire_bucketEmpty_waitsForRefill() {
+    drainBucket();
+
+    TestObserver<Void> waiting = mRateLimiter.acquire(RateLimiter.Priority.PAGE).test();
+    waiting.assertNotComplete();
+    Assert.assertThat(mRateLimiter.getQueueDepth(), is(1));
+
+    mScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    waiting.assertComplete();
+    Assert.assertThat(mRateLimiter.getQueueDepth(), is(0));
+    Assert.assertThat(mRateLimiter.getMaxWaitMillis(), is(1000L));
+  }
+
+  @Test
+  public final void acquire_bucketEmpty_grantsInPriorityOrder() {
+    drainBucket();
+    List<String> order = new ArrayList<>();
+
+    mRateLimiter.acquire(RateLimiter.Priority.PREFETCH).subscribe(() -> order.add("prefetch"));
+    mRateLimiter.acquire(RateLimiter.Priority.PAGE).subscribe(() -> order.add("page"));
+    mRateLimiter.acquire(RateLimiter.Priority.DETAIL).subscribe(() -> order.add("detail"));
+    mScheduler.advanceTimeBy(3, TimeUnit.SECONDS);
+
+    Assert.assertThat(order.size(), is(3));
+    Assert.assertThat(order.get(0), is("detail"));
+    Assert.assertThat(order.get(1), is("page"));
+    Assert.assertThat(order.get(2), is("prefetch"));
+  }
+
+  @Test
+  public final void acquire_prefetchQueueFull_shedsPrefetch() {
+    drainBucket();
+
+    mRateLimiter.acquire(RateLimiter.Priority.PREFETCH).test();
+    mRateLimiter.acquire(RateLimiter.Priority.PREFETCH).test();
+    TestObserver<Void> shed = mRateLimiter.acquire(RateLimiter.Priority.PREFETCH).test();
+    TestObserver<Void> page = mRateLimiter.acquire(RateLimiter.Priority.PAGE).test();
+
+    shed.assertError(RateLimitExceededException.class);
+    page.assertNotTerminated();
+    Assert.assertThat(mRateLimiter.getShedCount(), is(1L));
+    Assert.assertThat(mRateLimiter.getQueueDepth(RateLimiter.Priority.PREFETCH), is(2));
+  }
+
+  @Test
+  public final void acquire_disposedWhileWaiting_leavesQueue() {
+    drainBucket();
+
+    TestObserver<Void> waiting = mRateLimiter.acquire(RateLimiter.Priority.PAGE).test();
+    waiting.dispose();
+
+    Assert.assertThat(mRateLimiter.getQueueDepth(), is(0));
+  }
+
+  @Test
+  public final void pause_holdsPermitsUntilRetryAfterPassed() {
+    mRateLimiter.pause(5, TimeUnit.SECONDS);
+
+    List<TestObserver<Void>> waiting = new ArrayList<>();
+    for (int i = 0; i < BURST + 1; i++) {
+      waiting.add(mRateLimiter.acquire(RateLimiter.Priority.DETAIL).test());
+    }
+    mScheduler.advanceTimeBy(4, TimeUnit.SECONDS);
+    Assert.assertThat(countCompleted(waiting), is(0));
+
+    // the pause didn't refill the bucket, a single request goes out when it ends
+    mScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    Assert.assertThat(countCompleted(waiting), is(1));
+
+    mScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    Assert.assertThat(countCompleted(waiting), is(2));
+  }
+
+  @Test
+  public final void getRetryAfterSeconds_parsesDeltaSeconds_elseDefault() {
+    Assert.assertThat(RetryAfterInterceptor.getRetryAfterSeconds("3"), is(3L));
+    Assert.assertThat(RetryAfterInterceptor.getRetryAfterSeconds(null),
+        is(RetryAfterInterceptor.DEFAULT_RETRY_AFTER_SECONDS));
+    Assert.assertThat(RetryAfterInterceptor.getRetryAfterSeconds("Wed, 21 Oct 2015 07:28:00 GMT"),
+        is(RetryAfterInterceptor.DEFAULT_RETRY_AFTER_SECONDS));
+  }
+
+  private static int countCompleted(List<TestObserver<Void>> observers) {
+    int completed = 0;
+    for (TestObserver<Void> observer : observers) {
+      if (observer.completions() > 0) {
+        completed++;
+      }
+    }
+    return completed;
+  }
+
+  private void drainBucket() {
+    for (int i = 0; i < BURST; i++) {
+      mRateLimiter.acquire(RateLimiter.Priority.PAGE).test().assertComplete();
+    }
+  }
+}